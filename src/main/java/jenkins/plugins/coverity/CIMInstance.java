@@ -32,7 +32,6 @@ import org.kohsuke.stapler.DataBoundSetter;
 
 import com.cloudbees.plugins.credentials.common.StandardCredentials;
 import com.cloudbees.plugins.credentials.common.UsernamePasswordCredentials;
-import com.cloudbees.plugins.credentials.domains.DomainRequirement;
 import com.coverity.ws.v9.ConfigurationService;
 import com.coverity.ws.v9.CovRemoteServiceException_Exception;
 import com.coverity.ws.v9.DefectService;
@@ -49,10 +48,12 @@ import com.coverity.ws.v9.UserDataObj;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSortedMap;
 
-import hudson.security.ACL;
 import hudson.util.FormValidation;
 import hudson.util.FormValidation.Kind;
 import jenkins.model.Jenkins;
+import jenkins.plugins.coverity.ws.AdaptivePager;
+import jenkins.plugins.coverity.ws.AsyncWebServices;
+import jenkins.plugins.coverity.ws.ConnectionPool;
 import jenkins.plugins.coverity.ws.ViewContents;
 import jenkins.plugins.coverity.ws.ViewsService;
 import jenkins.plugins.coverity.ws.WebServiceFactory;
@@ -88,6 +89,11 @@ public class CIMInstance {
      */
     private boolean useSSL;
 
+    /**
+     * Request compressed (gzip) web service responses
+     */
+    private boolean useCompression;
+
     /**
      * Credential ID from configured Credentials to use
      */
@@ -142,6 +148,15 @@ public class CIMInstance {
         this.useSSL = useSSL;
     }
 
+    public boolean isUseCompression() {
+        return useCompression;
+    }
+
+    @DataBoundSetter
+    public void setUseCompression(boolean useCompression){
+        this.useCompression = useCompression;
+    }
+
     public String getCredentialId() { return credentialId; }
 
     /**
@@ -158,6 +173,13 @@ public class CIMInstance {
         return WebServiceFactory.getInstance().getConfigurationService(this);
     }
 
+    /**
+     * Returns asynchronous access to the v9 Defect and Configuration services.
+     */
+    public AsyncWebServices getAsyncWebServices() {
+        return WebServiceFactory.getInstance().getAsyncWebServices(this);
+    }
+
     public ProjectDataObj getProject(String projectId) throws IOException, CovRemoteServiceException_Exception {
         List<ProjectDataObj> projects = new ArrayList<>();
         try {
@@ -292,16 +314,31 @@ public class CIMInstance {
 
         try {
             final ViewsService viewService = WebServiceFactory.getInstance().getViewService(this);
-            int pageSize, defectSize;
-            pageSize = defectSize = 1000; // Size of page to be pulled
-            for(int pageStart = 0; pageStart < defectSize; pageStart += pageSize){
-                if (pageStart >= pageSize) {
+            // the size of each page depends on the response times of previous pages
+            final AdaptivePager pager = WebServiceFactory.getInstance().getPager(this);
+            int pageStart = 0;
+            int defectSize = 0;
+            do {
+                if (pageStart > 0) {
                     outputLogger.println(MessageFormat.format("[Coverity] Retrieving issues for project \"{0}\" and view \"{1}\" (fetched {2} of {3})", projectId, connectView, pageStart, defectSize));
                 } else {
                     outputLogger.println(MessageFormat.format("[Coverity] Retrieving issues for project \"{0}\" and view \"{1}\"", projectId, connectView));
                 }
 
-                final ViewContents viewContents = viewService.getViewContents(projectId, connectView, pageSize, pageStart);
+                final int pageSize = pager.getPageSize();
+                final long pageRequested = System.currentTimeMillis();
+                final long waitedBefore = ConnectionPool.getThreadWaitMillis();
+                final ViewContents viewContents;
+                try {
+                    viewContents = viewService.getViewContents(projectId, connectView, pageSize, pageStart);
+                } catch (RuntimeException e) {
+                    pager.recordFailure();
+                    throw e;
+                }
+                // the time spent waiting for a connection does not depend on the page size
+                final long waited = ConnectionPool.getThreadWaitMillis() - waitedBefore;
+                pager.recordPage(pageSize, viewContents.getRows().size(), System.currentTimeMillis() - pageRequested - waited, viewContents.getPayloadSize());
+
                 if (!viewContents.getColumns().contains("cid")) {
                     outputLogger.println(MessageFormat.format("[Coverity] Warning: Issues view \"{0}\" is missing column \"cid\"", connectView));
                 }
@@ -327,7 +364,8 @@ public class CIMInstance {
                 }
 
                 defectSize = viewContents.getTotalRows().intValue();
-            }
+                pageStart += pageSize;
+            } while (pageStart < defectSize);
 
             outputLogger.println(MessageFormat.format("[Coverity] Found {0} issues for project \"{1}\" and view \"{2}\"", coverityDefects.size(), projectId, connectView));
 
@@ -480,22 +518,15 @@ public class CIMInstance {
     }
 
     private StandardCredentials retrieveCredential(String credentialId) {
-        if (StringUtils.isNotEmpty(credentialId)) {
-            return CredentialsMatchers.firstOrNull(
-                    CredentialsProvider.lookupCredentials(
-                            StandardCredentials.class, Jenkins.getInstance(), ACL.SYSTEM, Collections.<DomainRequirement>emptyList()
-                    ), CredentialsMatchers.withId(credentialId)
-            );
-        }
-
-        return null;
+        return CredentialsCache.getInstance().getCredentials(credentialId);
     }
 
     private String createCredentials(String username, String password) {
         String credentialId = name + "_" + username;
         try{
 
-            StandardCredentials credential = retrieveCredential(credentialId);
+            // migration happens while loading the configuration, do not cache credentials this early
+            StandardCredentials credential = CredentialsCache.lookupCredentials(credentialId);
             if (credential != null) {
                 return StringUtils.EMPTY;
             }
@@ -517,6 +548,7 @@ public class CIMInstance {
     public CIMInstance cloneWithCredential(String credentialId) {
         CIMInstance instance = new CIMInstance(name, host, port, credentialId);
         instance.setUseSSL(useSSL);
+        instance.setUseCompression(useCompression);
         return instance;
     }
 
@@ -0,0 +1,393 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Synopsys, Inc
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Synopsys, Inc - initial implementation and documentation
+ *******************************************************************************/
+package jenkins.plugins.coverity;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.google.common.io.ByteStreams;
+import com.google.common.io.CountingInputStream;
+
+import hudson.model.Job;
+import hudson.model.Run;
+
+/**
+ * Index of the builds of a job each CID was present in, so that the history of a CID can be read without loading the
+ * builds. The index consists of two files in the job directory:
+ *
+ * <ul>
+ *     <li>coverity-cid-history.log, one record per build with the CIDs which appeared and disappeared in the build
+ *     compared to the previous build in the index</li>
+ *     <li>coverity-cid-history.last, the CIDs of the last build in the index and the length of the log up to the
+ *     record of that build</li>
+ * </ul>
+ *
+ * Records are appended when a build completes, and CIDs are stored sorted as differences to the previous CID, written
+ * as variable length numbers. A query reads the records once and builds the ranges of builds the CID was present in.
+ * The index is created from the existing builds of the job the first time it is used. Deleted builds remain in the
+ * index.
+ *
+ * A record is appended to the log before the last file is replaced. If adding a build is interrupted in between, the
+ * log has a record after the length recorded in the last file: a complete record is applied to the CIDs of the last
+ * file the next time a build is added, an incomplete record is removed from the log.
+ */
+public class CidHistoryIndex {
+    private static final Logger logger = Logger.getLogger(CidHistoryIndex.class.getName());
+
+    static final String LOG_FILE_NAME = "coverity-cid-history.log";
+    static final String LAST_FILE_NAME = "coverity-cid-history.last";
+
+    private static final int MAGIC = 0x43494448; // "CIDH"
+    private static final int VERSION = 2;
+    private static final int HEADER_LENGTH = 5;
+
+    private static final Map<Job<?, ?>, CidHistoryIndex> indexes = new WeakHashMap<>();
+
+    // not a strong reference, the index is the value of a weak map keyed by the job
+    private final WeakReference<Job<?, ?>> job;
+
+    CidHistoryIndex(Job<?, ?> job) {
+        this.job = new WeakReference<Job<?, ?>>(job);
+    }
+
+    public static CidHistoryIndex get(Job<?, ?> job) {
+        synchronized (indexes) {
+            CidHistoryIndex index = indexes.get(job);
+            if (index == null) {
+                index = new CidHistoryIndex(job);
+                indexes.put(job, index);
+            }
+            return index;
+        }
+    }
+
+    /**
+     * The builds a CID was present in, as ranges of builds in the index. A range from build 3 to build 7 means that
+     * the CID was present in every build from 3 to 7 which has Coverity defects.
+     */
+    public static class CidHistory {
+        private final long cid;
+        private final List<int[]> ranges;
+        private final int lastBuildNumber;
+
+        public CidHistory(long cid, List<int[]> ranges, int lastBuildNumber) {
+            this.cid = cid;
+            this.ranges = ranges;
+            this.lastBuildNumber = lastBuildNumber;
+        }
+
+        public long getCid() {
+            return cid;
+        }
+
+        /**
+         * The ranges of builds, the oldest range first, each as the first and the last build number of the range
+         */
+        public List<int[]> getRanges() {
+            return ranges;
+        }
+
+        /**
+         * The build the CID first appeared in, or -1 if the CID never appeared
+         */
+        public int getFirstBuildNumber() {
+            return ranges.isEmpty() ? -1 : ranges.get(0)[0];
+        }
+
+        /**
+         * Whether the CID is present in the last build of the index
+         */
+        public boolean isPresent() {
+            return !ranges.isEmpty() && ranges.get(ranges.size() - 1)[1] == lastBuildNumber;
+        }
+
+        public int getLastBuildNumber() {
+            return lastBuildNumber;
+        }
+    }
+
+    /**
+     * Records the CIDs of a completed build. Builds which are not newer than the last build of the index are ignored.
+     */
+    public synchronized void add(Run<?, ?> run) {
+        try {
+            if (!isCreated()) {
+                // the build is still running while it completes, so it is not part of the builds the index is created from
+                createIndex();
+            }
+            addBuild(run);
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Unable to update the Coverity CID history of " + run, e);
+        }
+    }
+
+    /**
+     * Reads the history of a CID
+     */
+    public synchronized CidHistory getHistory(long cid) throws IOException {
+        if (!isCreated()) {
+            createIndex();
+        }
+
+        final List<int[]> ranges = new ArrayList<>();
+        int previousBuildNumber = -1;
+        int[] openRange = null;
+        try (DataInputStream in = openLog()) {
+            while (true) {
+                final int buildNumber;
+                final long[] added;
+                final long[] removed;
+                try {
+                    buildNumber = (int)CoverityDefectsFile.readVarLong(in);
+                    added = DefectDiff.readCids(in);
+                    removed = DefectDiff.readCids(in);
+                } catch (EOFException e) {
+                    // the end of the log, or a record which was not written completely
+                    break;
+                }
+
+                if (openRange != null && Arrays.binarySearch(removed, cid) >= 0) {
+                    // the range ended with the previous build
+                    openRange = null;
+                }
+                if (openRange == null && Arrays.binarySearch(added, cid) >= 0) {
+                    openRange = new int[] {buildNumber, buildNumber};
+                    ranges.add(openRange);
+                }
+                if (openRange != null) {
+                    openRange[1] = buildNumber;
+                }
+                previousBuildNumber = buildNumber;
+            }
+        } catch (FileNotFoundException e) {
+            return new CidHistory(cid, Collections.<int[]>emptyList(), -1);
+        }
+        return new CidHistory(cid, ranges, previousBuildNumber);
+    }
+
+    private Job<?, ?> getJob() {
+        Job<?, ?> job = this.job.get();
+        if (job == null) {
+            throw new IllegalStateException("The job of the Coverity CID history no longer exists");
+        }
+        return job;
+    }
+
+    private File getLogFile() {
+        return new File(getJob().getRootDir(), LOG_FILE_NAME);
+    }
+
+    private File getLastFile() {
+        return new File(getJob().getRootDir(), LAST_FILE_NAME);
+    }
+
+    /**
+     * Whether the log exists and was written in the current format, otherwise the index is created again
+     */
+    private boolean isCreated() {
+        try (DataInputStream in = openLog()) {
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Creates the index from the completed builds of the job, this loads every build once
+     */
+    private void createIndex() throws IOException {
+        final List<Run<?, ?>> runs = new ArrayList<>();
+        for (Run<?, ?> run = getJob().getLastCompletedBuild(); run != null; run = run.getPreviousBuild()) {
+            if (run.getAction(CoverityBuildAction.class) != null) {
+                runs.add(run);
+            }
+        }
+        Collections.reverse(runs);
+
+        getLastFile().delete();
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(getLogFile())))) {
+            out.writeInt(MAGIC);
+            out.writeByte(VERSION);
+        }
+        for (Run<?, ?> run : runs) {
+            addBuild(run);
+        }
+    }
+
+    private void addBuild(Run<?, ?> run) throws IOException {
+        final long[] cids = getCids(run);
+        if (cids == null) {
+            return;
+        }
+
+        final LastBuild lastBuild = readLastBuild();
+        if (run.getNumber() <= lastBuild.number) {
+            return;
+        }
+
+        final File logFile = getLogFile();
+        final DefectDiff diff = DefectDiff.compare(lastBuild.cids, cids);
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(logFile, true)))) {
+            CoverityDefectsFile.writeVarLong(out, run.getNumber());
+            DefectDiff.writeCids(out, diff.getNewCids());
+            DefectDiff.writeCids(out, diff.getFixedCids());
+        }
+
+        final File lastFile = getLastFile();
+        final File tempFile = new File(lastFile.getPath() + ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)))) {
+                CoverityDefectsFile.writeVarLong(out, run.getNumber());
+                CoverityDefectsFile.writeVarLong(out, logFile.length());
+                DefectDiff.writeCids(out, cids);
+            }
+            Files.move(tempFile.toPath(), lastFile.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            if (tempFile.exists()) {
+                tempFile.delete();
+            }
+        }
+    }
+
+    /**
+     * Reads the last build of the index, including the record which was appended to the log after the last file was
+     * written if adding that build was interrupted
+     */
+    private LastBuild readLastBuild() throws IOException {
+        int number = -1;
+        long logLength = HEADER_LENGTH;
+        long[] cids = new long[0];
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(getLastFile())))) {
+            number = (int)CoverityDefectsFile.readVarLong(in);
+            logLength = CoverityDefectsFile.readVarLong(in);
+            cids = DefectDiff.readCids(in);
+        } catch (FileNotFoundException e) {
+            // no build in the index yet
+        }
+
+        final File logFile = getLogFile();
+        if (logFile.length() < logLength) {
+            throw new IOException("The Coverity CID history " + logFile + " is shorter than its last build " + number);
+        }
+        if (logFile.length() == logLength) {
+            return new LastBuild(number, cids);
+        }
+
+        final CountingInputStream counter = new CountingInputStream(new BufferedInputStream(new FileInputStream(logFile)));
+        try (DataInputStream in = new DataInputStream(counter)) {
+            ByteStreams.skipFully(in, logLength);
+            long recordEnd = logLength;
+            try {
+                while (true) {
+                    final int recordNumber = (int)CoverityDefectsFile.readVarLong(in);
+                    final long[] added = DefectDiff.readCids(in);
+                    final long[] removed = DefectDiff.readCids(in);
+                    number = recordNumber;
+                    cids = apply(cids, added, removed);
+                    recordEnd = counter.getCount();
+                }
+            } catch (EOFException e) {
+                if (recordEnd < logFile.length()) {
+                    logger.warning("Removing an incomplete record from the Coverity CID history " + logFile);
+                    try (FileOutputStream out = new FileOutputStream(logFile, true)) {
+                        out.getChannel().truncate(recordEnd);
+                    }
+                }
+            }
+        }
+        return new LastBuild(number, cids);
+    }
+
+    /**
+     * Applies a record of the log to the sorted CIDs of the previous build
+     */
+    private static long[] apply(long[] cids, long[] added, long[] removed) {
+        final long[] result = new long[cids.length + added.length];
+        int count = 0;
+        for (long cid : cids) {
+            if (Arrays.binarySearch(removed, cid) < 0) {
+                result[count++] = cid;
+            }
+        }
+        for (long cid : added) {
+            if (Arrays.binarySearch(cids, cid) < 0) {
+                result[count++] = cid;
+            }
+        }
+        Arrays.sort(result, 0, count);
+        return Arrays.copyOf(result, count);
+    }
+
+    /**
+     * The CIDs of all streams of a build, or null if the build has no Coverity defects or they cannot be read
+     */
+    private static long[] getCids(Run<?, ?> run) {
+        final List<CoverityBuildAction> actions = run.getActions(CoverityBuildAction.class);
+        if (actions.isEmpty()) {
+            return null;
+        }
+
+        long[] cids = new long[0];
+        for (CoverityBuildAction action : actions) {
+            try {
+                final long[] actionCids = DefectDiff.getCids(action);
+                final DefectDiff diff = DefectDiff.compare(cids, actionCids);
+                // the union of the CIDs of the streams
+                final long[] union = Arrays.copyOf(cids, cids.length + diff.getNewCount());
+                System.arraycopy(diff.getNewCids(), 0, union, cids.length, diff.getNewCount());
+                Arrays.sort(union);
+                cids = union;
+            } catch (IOException e) {
+                logger.log(Level.WARNING, "Unable to read the Coverity defects of " + run, e);
+                return null;
+            }
+        }
+        return cids;
+    }
+
+    private DataInputStream openLog() throws IOException {
+        final DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(getLogFile())));
+        if (in.readInt() != MAGIC || in.readUnsignedByte() != VERSION) {
+            in.close();
+            throw new IOException("Unsupported Coverity CID history " + getLogFile());
+        }
+        return in;
+    }
+
+    private static class LastBuild {
+        private final int number;
+        private final long[] cids;
+
+        LastBuild(int number, long[] cids) {
+            this.number = number;
+            this.cids = cids;
+        }
+    }
+}
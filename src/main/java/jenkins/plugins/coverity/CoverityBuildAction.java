@@ -10,31 +10,67 @@
  *******************************************************************************/
 package jenkins.plugins.coverity;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.ref.SoftReference;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Locale;
+import java.util.UUID;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.servlet.http.HttpServletResponse;
 
 import org.apache.commons.lang.StringUtils;
+import org.kohsuke.stapler.StaplerRequest;
+import org.kohsuke.stapler.StaplerResponse;
 
 import com.coverity.ws.v9.CovRemoteServiceException_Exception;
 
+import hudson.Util;
 import hudson.model.AbstractBuild;
 import hudson.model.AbstractProject;
 import hudson.model.Action;
 import hudson.model.Job;
 import hudson.model.Run;
 import jenkins.model.Jenkins;
+import jenkins.model.RunAction2;
 import jenkins.tasks.SimpleBuildStep.LastBuildAction;
+import net.sf.json.JSONArray;
+import net.sf.json.JSONObject;
 
 /**
  * Captures Coverity information for a single build, including a snapshot of cim instance, project and stream, and a
  * filtered list of defects. This shows a link on the left side of each build page, which goes to a list of defects from
  * that build.
+ *
+ * The defects are stored in a {@link CoverityDefectsFile binary file} in the build directory instead of build.xml, so
+ * that loading the build records (for example for the trend graph) does not read every defect. Builds which still
+ * have the defects in build.xml keep reading them from there, they are moved to the binary file the next time the
+ * build is saved.
  */
-public class CoverityBuildAction implements LastBuildAction {
+public class CoverityBuildAction implements LastBuildAction, RunAction2 {
     public static final String BUILD_ACTION_IDENTIFIER = "coverity_defects";
+    public static final int DEFAULT_PAGE_SIZE = 100;
+    public static final int MAX_PAGE_SIZE = 1000;
+
+    private static final Logger logger = Logger.getLogger(CoverityBuildAction.class.getName());
 
     // deprecated defectIds field
     private transient List<Long> defectIds;
@@ -43,7 +79,33 @@ public class CoverityBuildAction implements LastBuildAction {
     private final String projectId;
     private final String streamId;
     private final String cimInstance;
-    private final List<CoverityDefect> defects;
+
+    // defects stored in build.xml, only used by older builds and when there is no build directory
+    private List<CoverityDefect> defects;
+
+    // the file in the build directory the defects are stored in, named after the id of the action so that several
+    // actions of a build (for example for the same stream) use different files
+    private String actionId;
+    private String defectsFile;
+    private int defectCount;
+
+    private transient Run<?, ?> owner;
+    private transient SoftReference<List<CoverityDefect>> loadedDefects;
+
+    // the snapshot the defects were read from and the key of the defect filters, null for defects read from a view
+    private Long snapshotId;
+    private String filterKey;
+
+    // the number of defects which are new, fixed or persisting compared to the previous build, null if unknown
+    private Integer newDefectCount;
+    private Integer fixedDefectCount;
+    private Integer persistingDefectCount;
+
+    // the new and fixed CIDs are stored in a file in the build directory next to the defects, they are only kept in
+    // build.xml when there is no build directory
+    private DefectDiff defectDiff;
+    private String defectDiffFile;
+    private transient SoftReference<DefectDiff> loadedDefectDiff;
 
     public CoverityBuildAction(Run<?, ?> build, String projectId, String streamId, String cimInstance, List<CoverityDefect> defects) {
         this.build = build;
@@ -51,6 +113,82 @@ public class CoverityBuildAction implements LastBuildAction {
         this.streamId = streamId;
         this.cimInstance = cimInstance;
         this.defects = defects;
+        storeDefects(build);
+    }
+
+    public void onAttached(Run<?, ?> r) {
+        owner = r;
+    }
+
+    public void onLoad(Run<?, ?> r) {
+        owner = r;
+    }
+
+    /**
+     * Moves the defects of builds which were recorded with an older version of the plugin out of build.xml when the
+     * build is saved. Loading a build does not write anything, so that viewing old builds leaves them unchanged.
+     */
+    protected Object writeReplace() {
+        if (defects != null && defectsFile == null) {
+            storeDefects(owner != null ? owner : build);
+        }
+        if (defectDiff != null && defectDiffFile == null) {
+            storeDefectDiff(owner != null ? owner : build);
+        }
+        return this;
+    }
+
+    /**
+     * Writes the defects to the build directory, they are kept in build.xml if this is not possible
+     */
+    private void storeDefects(Run<?, ?> run) {
+        File rootDir = run != null ? run.getRootDir() : null;
+        if (defects == null || rootDir == null) {
+            return;
+        }
+
+        if (actionId == null) {
+            actionId = UUID.randomUUID().toString();
+        }
+        String fileName = "coverity-defects-" + actionId + ".bin";
+        try {
+            CoverityDefectsFile.write(new File(rootDir, fileName), defects);
+            defectsFile = fileName;
+            defectCount = defects.size();
+            loadedDefects = new SoftReference<>(defects);
+            defects = null;
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Unable to write the Coverity defects of " + run + " to " + fileName, e);
+        }
+    }
+
+    /**
+     * Writes the new and fixed CIDs to the build directory, they are kept in build.xml if this is not possible
+     */
+    private void storeDefectDiff(Run<?, ?> run) {
+        File rootDir = run != null ? run.getRootDir() : null;
+        if (defectDiff == null || rootDir == null) {
+            return;
+        }
+
+        if (actionId == null) {
+            actionId = UUID.randomUUID().toString();
+        }
+        String fileName = "coverity-diff-" + actionId + ".bin";
+        File file = new File(rootDir, fileName);
+        File tempFile = new File(file.getPath() + ".tmp");
+        try {
+            try (OutputStream out = new BufferedOutputStream(new FileOutputStream(tempFile))) {
+                defectDiff.write(out);
+            }
+            Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            defectDiffFile = fileName;
+            loadedDefectDiff = new SoftReference<>(defectDiff);
+            defectDiff = null;
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Unable to write the Coverity defect changes of " + run + " to " + fileName, e);
+            tempFile.delete();
+        }
     }
 
     /**
@@ -72,15 +210,149 @@ public class CoverityBuildAction implements LastBuildAction {
                 covDefects.add(new CoverityDefect(defectId, "---", "View in Coverity Connect", StringUtils.EMPTY));
             }
             return covDefects;
-        }  else {
+        }  else if (defectsFile != null) {
+            return loadDefects();
+        } else {
             return defects != null ? defects : new ArrayList<CoverityDefect>();
         }
     }
 
+    /**
+     * The number of defects captured for this build, without reading the defects
+     */
+    public int getDefectCount() {
+        if (defectIds != null && !defectIds.isEmpty()) {
+            return defectIds.size();
+        } else if (defectsFile != null) {
+            return defectCount;
+        } else {
+            return defects != null ? defects.size() : 0;
+        }
+    }
+
+    private synchronized List<CoverityDefect> loadDefects() {
+        List<CoverityDefect> loaded = loadedDefects != null ? loadedDefects.get() : null;
+        if (loaded != null) {
+            return loaded;
+        }
+
+        Run<?, ?> run = owner != null ? owner : build;
+        File file = new File(run.getRootDir(), defectsFile);
+        try {
+            loaded = CoverityDefectsFile.read(file);
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Unable to read the Coverity defects of " + run + " from " + file, e);
+            loaded = new ArrayList<>();
+        }
+        loadedDefects = new SoftReference<>(loaded);
+        return loaded;
+    }
+
+    public String getProjectId() {
+        return projectId;
+    }
+
+    public String getStreamId() {
+        return streamId;
+    }
+
+    public String getCimInstance() {
+        return cimInstance;
+    }
+
+    /**
+     * The id of the snapshot of the stream the defects were read from
+     */
+    public Long getSnapshotId() {
+        return snapshotId;
+    }
+
+    /**
+     * The {@link DefectFilters#getFilterKey() key} of the defect filters the defects were read with
+     */
+    public String getFilterKey() {
+        return filterKey;
+    }
+
+    public void setSnapshot(Long snapshotId, String filterKey) {
+        this.snapshotId = snapshotId;
+        this.filterKey = filterKey;
+    }
+
+    /**
+     * The number of defects of this build which were not present in the previous build
+     */
+    public Integer getNewDefectCount() {
+        return newDefectCount;
+    }
+
+    /**
+     * The number of defects of the previous build which are no longer present in this build
+     */
+    public Integer getFixedDefectCount() {
+        return fixedDefectCount;
+    }
+
+    /**
+     * The number of defects which are present in both this and the previous build
+     */
+    public Integer getPersistingDefectCount() {
+        if (persistingDefectCount == null && defectDiff != null) {
+            return defectDiff.getPersistingCount();
+        }
+        return persistingDefectCount;
+    }
+
+    /**
+     * The CIDs which are new, fixed or persisting compared to the previous build, null if unknown. The CIDs are read
+     * from the build directory when they are not in memory.
+     */
+    public DefectDiff getDefectDiff() {
+        if (defectDiff != null || defectDiffFile == null) {
+            return defectDiff;
+        }
+        return loadDefectDiff();
+    }
+
+    private synchronized DefectDiff loadDefectDiff() {
+        DefectDiff loaded = loadedDefectDiff != null ? loadedDefectDiff.get() : null;
+        if (loaded != null) {
+            return loaded;
+        }
+
+        Run<?, ?> run = owner != null ? owner : build;
+        File file = new File(run.getRootDir(), defectDiffFile);
+        try (InputStream in = new BufferedInputStream(new FileInputStream(file))) {
+            loaded = DefectDiff.read(in);
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Unable to read the Coverity defect changes of " + run + " from " + file, e);
+            return null;
+        }
+        loadedDefectDiff = new SoftReference<>(loaded);
+        return loaded;
+    }
+
+    public void setDefectDiff(DefectDiff defectDiff) {
+        this.defectDiff = defectDiff;
+        this.newDefectCount = defectDiff.getNewCount();
+        this.fixedDefectCount = defectDiff.getFixedCount();
+        this.persistingDefectCount = defectDiff.getPersistingCount();
+        storeDefectDiff(owner != null ? owner : build);
+    }
+
     /**
      * Returns the URL to the page for this defect in the CIM instance.
      */
     public String getURL(CoverityDefect defect) throws IOException, CovRemoteServiceException_Exception {
+        final String prefix = getDefectUrlPrefix();
+        return prefix.isEmpty() ? StringUtils.EMPTY : prefix + defect.getCid();
+    }
+
+    /**
+     * Returns the URL to the page of a defect in the CIM instance without the CID, or an empty string if the instance
+     * no longer exists. Looking up the project key may call the CIM instance, so this is resolved once for all defects.
+     */
+    public String getDefectUrlPrefix() throws IOException, CovRemoteServiceException_Exception {
         CIMInstance instance = Jenkins.getInstance().getDescriptorByType(CoverityPublisher.DescriptorImpl.class).getInstance(cimInstance);
 
         if (instance == null){
@@ -93,8 +365,173 @@ public class CoverityBuildAction implements LastBuildAction {
             header = "https";
         }
 
-        return String.format(header + "://%s:%d/sourcebrowser.htm?projectId=%s&mergedDefectId=%d",
-                instance.getHost(), instance.getPort(), instance.getProjectKey(projectId), defect.getCid());
+        return String.format(header + "://%s:%d/sourcebrowser.htm?projectId=%s&mergedDefectId=",
+                instance.getHost(), instance.getPort(), instance.getProjectKey(projectId));
+    }
+
+    /**
+     * Returns one page of the defects as JSON for the defect table. Parameters:
+     * <ul>
+     *     <li>start: the index of the first defect, defaults to 0</li>
+     *     <li>size: the number of defects, defaults to {@value #DEFAULT_PAGE_SIZE}</li>
+     *     <li>sort: cid, checker, function or file, defaults to cid</li>
+     *     <li>order: asc or desc, defaults to asc</li>
+     *     <li>filter: only return defects which contain this text in the CID, checker, function or file</li>
+     * </ul>
+     */
+    public void doDefects(StaplerRequest req, StaplerResponse rsp) throws IOException {
+        final int start = CoverityUtils.getIntParameter(req, "start", 0, 0, Integer.MAX_VALUE);
+        final int size = CoverityUtils.getIntParameter(req, "size", DEFAULT_PAGE_SIZE, 1, MAX_PAGE_SIZE);
+
+        String urlPrefix;
+        try {
+            urlPrefix = getDefectUrlPrefix();
+        } catch (CovRemoteServiceException_Exception | IOException e) {
+            logger.log(Level.WARNING, "Unable to read the project key of " + projectId + " from " + cimInstance, e);
+            urlPrefix = StringUtils.EMPTY;
+        }
+
+        final JSONObject page = getDefectPage(getDefects(), start, size, req.getParameter("sort"),
+            "desc".equals(req.getParameter("order")), Util.fixEmpty(req.getParameter("filter")));
+        page.put("urlPrefix", urlPrefix);
+        rsp.setContentType("application/json;charset=UTF-8");
+        rsp.getWriter().print(page.toString());
+    }
+
+    /**
+     * Exports the defects in the format of the format parameter (json, csv or sarif). The defects are written to the
+     * response while they are read from the defects file of the build.
+     */
+    public void doExport(StaplerRequest req, StaplerResponse rsp) throws IOException {
+        final DefectExporter.Format format = DefectExporter.Format.fromName(StringUtils.defaultIfEmpty(req.getParameter("format"), "json"));
+        if (format == null) {
+            rsp.sendError(HttpServletResponse.SC_BAD_REQUEST, "Unsupported format, use json, csv or sarif");
+            return;
+        }
+
+        String urlPrefix;
+        try {
+            urlPrefix = getDefectUrlPrefix();
+        } catch (CovRemoteServiceException_Exception | IOException e) {
+            logger.log(Level.WARNING, "Unable to read the project key of " + projectId + " from " + cimInstance, e);
+            urlPrefix = StringUtils.EMPTY;
+        }
+
+        rsp.setContentType(format.getContentType());
+        rsp.setHeader("Content-Disposition", "attachment; filename=\"coverity-defects." + format.getExtension() + '"');
+        final Writer writer = new BufferedWriter(new OutputStreamWriter(rsp.getOutputStream(), StandardCharsets.UTF_8));
+        final DefectExporter exporter = DefectExporter.create(format, writer, this, urlPrefix);
+        exporter.start();
+        forEachDefect(exporter);
+        exporter.finish();
+    }
+
+    /**
+     * Passes the defects to the handler. Defects which are not in memory are read from the defects file one at a time.
+     */
+    public void forEachDefect(CoverityDefectsFile.DefectHandler handler) throws IOException {
+        final List<CoverityDefect> loaded;
+        synchronized (this) {
+            loaded = loadedDefects != null ? loadedDefects.get() : null;
+        }
+
+        if (defectsFile != null && loaded == null && (defectIds == null || defectIds.isEmpty())) {
+            final Run<?, ?> run = owner != null ? owner : build;
+            CoverityDefectsFile.read(new File(run.getRootDir(), defectsFile), handler);
+            return;
+        }
+
+        for (CoverityDefect defect : loaded != null ? loaded : getDefects()) {
+            handler.defect(defect);
+        }
+    }
+
+    static JSONObject getDefectPage(List<CoverityDefect> defects, int start, int size, String sort, boolean descending, String filter) {
+        List<CoverityDefect> matching = defects;
+        if (filter != null) {
+            final String text = filter.toLowerCase(Locale.ENGLISH);
+            matching = new ArrayList<>();
+            for (CoverityDefect defect : defects) {
+                if (contains(String.valueOf(defect.getCid()), text) || contains(defect.getCheckerName(), text) ||
+                    contains(defect.getFunctionDisplayName(), text) || contains(defect.getFilePathname(), text)) {
+                    matching.add(defect);
+                }
+            }
+        }
+
+        final List<CoverityDefect> sorted = new ArrayList<>(matching);
+        Comparator<CoverityDefect> comparator = getComparator(sort);
+        if (descending) {
+            comparator = Collections.reverseOrder(comparator);
+        }
+        Collections.sort(sorted, comparator);
+
+        final JSONArray rows = new JSONArray();
+        for (int i = start; i < Math.min(sorted.size(), start + size); i++) {
+            final CoverityDefect defect = sorted.get(i);
+            final JSONObject row = new JSONObject();
+            row.put("cid", defect.getCid());
+            row.put("checker", StringUtils.defaultString(defect.getCheckerName()));
+            row.put("function", StringUtils.defaultString(defect.getFunctionDisplayName()));
+            row.put("file", StringUtils.defaultString(defect.getFilePathname()));
+            rows.add(row);
+        }
+
+        final JSONObject page = new JSONObject();
+        page.put("total", defects.size());
+        page.put("matching", sorted.size());
+        page.put("start", start);
+        page.put("defects", rows);
+        return page;
+    }
+
+    private static boolean contains(String value, String text) {
+        return value != null && value.toLowerCase(Locale.ENGLISH).contains(text);
+    }
+
+    private static Comparator<CoverityDefect> getComparator(String sort) {
+        if ("checker".equals(sort)) {
+            return new DefectComparator() {
+                String getValue(CoverityDefect defect) {
+                    return defect.getCheckerName();
+                }
+            };
+        } else if ("function".equals(sort)) {
+            return new DefectComparator() {
+                String getValue(CoverityDefect defect) {
+                    return defect.getFunctionDisplayName();
+                }
+            };
+        } else if ("file".equals(sort)) {
+            return new DefectComparator() {
+                String getValue(CoverityDefect defect) {
+                    return defect.getFilePathname();
+                }
+            };
+        }
+        // no text column, sorted by CID only
+        return new DefectComparator() {
+            String getValue(CoverityDefect defect) {
+                return null;
+            }
+        };
+    }
+
+    /**
+     * Compares defects by a text column, then by CID
+     */
+    private abstract static class DefectComparator implements Comparator<CoverityDefect> {
+        abstract String getValue(CoverityDefect defect);
+
+        public int compare(CoverityDefect first, CoverityDefect second) {
+            final int result = StringUtils.defaultString(getValue(first)).compareTo(StringUtils.defaultString(getValue(second)));
+            if (result != 0) {
+                return result;
+            }
+            final long firstCid = first.getCid() != null ? first.getCid() : -1;
+            final long secondCid = second.getCid() != null ? second.getCid() : -1;
+            return firstCid < secondCid ? -1 : (firstCid == secondCid ? 0 : 1);
+        }
     }
 
     public String getIconFileName() {
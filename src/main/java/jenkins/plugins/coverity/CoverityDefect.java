@@ -10,7 +10,17 @@
  *******************************************************************************/
 package jenkins.plugins.coverity;
 
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+
+/**
+ * A defect captured for a build. Builds of a job mostly report the same checkers, functions and files, so these
+ * strings are shared through a weak interner, both for defects read from Coverity Connect and for defects read from
+ * build records. Strings are released once no defect refers to them anymore.
+ */
 public class CoverityDefect {
+    private static final Interner<String> strings = Interners.newWeakInterner();
+
     private final Long cid;
     private final String checkerName;
     private final String functionDisplayName;
@@ -18,9 +28,20 @@ public class CoverityDefect {
 
     public CoverityDefect(Long cid, String checkerName, String functionDisplayName, String filePathname) {
         this.cid = cid;
-        this.checkerName = checkerName;
-        this.functionDisplayName = functionDisplayName;
-        this.filePathname = filePathname;
+        this.checkerName = intern(checkerName);
+        this.functionDisplayName = intern(functionDisplayName);
+        this.filePathname = intern(filePathname);
+    }
+
+    private static String intern(String value) {
+        return value != null ? strings.intern(value) : null;
+    }
+
+    /**
+     * Shares the strings of defects unmarshalled from build records
+     */
+    protected Object readResolve() {
+        return new CoverityDefect(cid, checkerName, functionDisplayName, filePathname);
     }
 
     public Long getCid() {
@@ -0,0 +1,219 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Synopsys, Inc
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Synopsys, Inc - initial implementation and documentation
+ *******************************************************************************/
+package jenkins.plugins.coverity;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compact binary format for a list of {@link CoverityDefect}s. Checker names, functions and file names repeat a lot
+ * across defects, so every distinct string is written once into a dictionary and the defects refer to it by index.
+ * Numbers are written as variable length integers.
+ *
+ * <pre>
+ * magic (int) version (byte)
+ * string count, strings (length and UTF-8 bytes)
+ * defect count, defects (CID + 1 or 0 for no CID, then checker, function and file as string index + 1 or 0 for null)
+ * </pre>
+ */
+public final class CoverityDefectsFile {
+    private static final int MAGIC = 0x434F5644; // "COVD"
+    private static final int VERSION = 1;
+
+    private CoverityDefectsFile() {
+    }
+
+    /**
+     * Receives the defects of a file one at a time, so that they do not need to be kept in memory
+     */
+    public interface DefectHandler {
+        void defect(CoverityDefect defect) throws IOException;
+    }
+
+    /**
+     * Writes the defects to the file, replacing it only after all defects were written. The file is replaced in a
+     * single step, so it always holds either the previous or the new defects.
+     */
+    public static void write(File file, List<CoverityDefect> defects) throws IOException {
+        File tempFile = new File(file.getPath() + ".tmp");
+        try {
+            try (OutputStream out = new BufferedOutputStream(new FileOutputStream(tempFile))) {
+                write(out, defects);
+            }
+            Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            if (tempFile.exists()) {
+                tempFile.delete();
+            }
+        }
+    }
+
+    public static List<CoverityDefect> read(File file) throws IOException {
+        try (InputStream in = new BufferedInputStream(new FileInputStream(file))) {
+            return read(in);
+        }
+    }
+
+    public static void read(File file, DefectHandler handler) throws IOException {
+        try (InputStream in = new BufferedInputStream(new FileInputStream(file))) {
+            read(in, handler);
+        }
+    }
+
+    /**
+     * Writes the defects to the stream, without closing it
+     */
+    public static void write(OutputStream stream, List<CoverityDefect> defects) throws IOException {
+        // collect the distinct strings first, the dictionary is written before the defects
+        Map<String, Integer> indexes = new HashMap<>();
+        List<String> strings = new ArrayList<>();
+        int[] references = new int[defects.size() * 3];
+        int reference = 0;
+        for (CoverityDefect defect : defects) {
+            references[reference++] = getReference(defect.getCheckerName(), indexes, strings);
+            references[reference++] = getReference(defect.getFunctionDisplayName(), indexes, strings);
+            references[reference++] = getReference(defect.getFilePathname(), indexes, strings);
+        }
+
+        DataOutputStream out = new DataOutputStream(stream);
+        out.writeInt(MAGIC);
+        out.writeByte(VERSION);
+
+        writeVarLong(out, strings.size());
+        for (String string : strings) {
+            byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+            writeVarLong(out, bytes.length);
+            out.write(bytes);
+        }
+
+        writeVarLong(out, defects.size());
+        reference = 0;
+        for (CoverityDefect defect : defects) {
+            writeVarLong(out, defect.getCid() != null ? defect.getCid() + 1 : 0);
+            writeVarLong(out, references[reference++]);
+            writeVarLong(out, references[reference++]);
+            writeVarLong(out, references[reference++]);
+        }
+        out.flush();
+    }
+
+    /**
+     * Reads defects written by {@link #write(OutputStream, List)}, without closing the stream
+     */
+    public static List<CoverityDefect> read(InputStream stream) throws IOException {
+        final List<CoverityDefect> defects = new ArrayList<>();
+        read(stream, new DefectHandler() {
+            public void defect(CoverityDefect defect) {
+                defects.add(defect);
+            }
+        });
+        return defects;
+    }
+
+    /**
+     * Reads defects written by {@link #write(OutputStream, List)} and passes them to the handler as they are read,
+     * without closing the stream
+     */
+    public static void read(InputStream stream, DefectHandler handler) throws IOException {
+        DataInputStream in = new DataInputStream(stream);
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not a Coverity defects file");
+        }
+        int version = in.readUnsignedByte();
+        if (version != VERSION) {
+            throw new IOException("Unsupported Coverity defects file version " + version);
+        }
+
+        String[] strings = new String[readCount(in)];
+        for (int i = 0; i < strings.length; i++) {
+            byte[] bytes = new byte[readCount(in)];
+            in.readFully(bytes);
+            strings[i] = new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        int defectCount = readCount(in);
+        for (int i = 0; i < defectCount; i++) {
+            long cid = readVarLong(in);
+            handler.defect(new CoverityDefect(
+                cid > 0 ? Long.valueOf(cid - 1) : null,
+                getString(strings, readVarLong(in)),
+                getString(strings, readVarLong(in)),
+                getString(strings, readVarLong(in))));
+        }
+    }
+
+    private static int getReference(String value, Map<String, Integer> indexes, List<String> strings) {
+        if (value == null) {
+            return 0;
+        }
+
+        Integer index = indexes.get(value);
+        if (index == null) {
+            index = strings.size();
+            indexes.put(value, index);
+            strings.add(value);
+        }
+        return index + 1;
+    }
+
+    private static String getString(String[] strings, long reference) throws IOException {
+        if (reference == 0) {
+            return null;
+        }
+        if (reference > strings.length) {
+            throw new IOException("Invalid string reference " + reference);
+        }
+        return strings[(int)reference - 1];
+    }
+
+    private static int readCount(DataInputStream in) throws IOException {
+        long count = readVarLong(in);
+        if (count > Integer.MAX_VALUE) {
+            throw new IOException("Invalid count " + count);
+        }
+        return (int)count;
+    }
+
+    static void writeVarLong(DataOutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int)((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int)value);
+    }
+
+    static long readVarLong(DataInputStream in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (long)(b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Invalid variable length number");
+    }
+}
@@ -60,13 +60,6 @@ public class CoverityLauncher extends Launcher {
 
     @Override
     public Proc launch(ProcStarter starter) throws IOException {
-        EnvVars buildEnvVars = CoverityUtils.getBuildEnvVars(listener);
-        if (envVars == null || envVars.isEmpty()) {
-            envVars = buildEnvVars;
-        } else if (buildEnvVars != null) {
-            envVars.overrideAll(buildEnvVars);
-        }
-
         AbstractBuild build = CoverityUtils.getBuild();
         AbstractProject project = build.getProject();
 
@@ -74,14 +67,13 @@ public class CoverityLauncher extends Launcher {
         if (publisher == null)
             return decorated.launch(starter);
 
-        // Setup(or resolve) intermediate directory
-        setupIntermediateDirectory(build, this.getListener(), node);
+        final EnvVars launchEnvVars = resolveEnvVars(build);
 
         // Any Coverity Post-build action such as cov-analyze, cov-import-scm, etc will not be wrapped
         // with the cov-build.
         if (CoverityLauncherDecorator.CoverityPostBuildAction.get()) {
             String[] starterEnvVars = starter.envs();
-            starterEnvVars = CoverityUtils.addEnvVars(starterEnvVars, envVars);
+            starterEnvVars = CoverityUtils.addEnvVars(starterEnvVars, launchEnvVars);
             starter = starter.envs(starterEnvVars);
             return decorated.launch(starter);
         }
@@ -109,11 +101,11 @@ public class CoverityLauncher extends Launcher {
 
             List<String> cmds = starter.cmds();
             final InvocationAssistance invocationAssistance = CoverityUtils.getInvocationAssistance();
-            final CoverityToolInstallation installation = CoverityUtils.findToolInstallationForBuild(node, envVars, this.getListener());
+            final CoverityToolInstallation installation = CoverityUtils.findToolInstallationForBuild(node, launchEnvVars, this.getListener());
             if (installation != null) {
                 String home = installation.getHome();
                 if (invocationAssistance != null) {
-                    List<String> args = new CovBuildCompileCommand(build, decorated, decorated.getListener(), publisher, home, envVars).constructArguments();
+                    List<String> args = new CovBuildCompileCommand(build, decorated, decorated.getListener(), publisher, home, launchEnvVars).constructArguments();
                     prefix = args.toArray(new String[args.size()]);
                     cmds.addAll(0, args);
                 } else {
@@ -141,10 +133,10 @@ public class CoverityLauncher extends Launcher {
              * Finally, creates a new ProcStarter object identically to the first one but with overridden variables.
              */
             String[] starterEnvVars = starter.envs();
-            starterEnvVars = CoverityUtils.addEnvVars(starterEnvVars, envVars);
+            starterEnvVars = CoverityUtils.addEnvVars(starterEnvVars, launchEnvVars);
             starter = starter.envs(starterEnvVars);
 
-            cmds = CoverityUtils.prepareCmds(cmds, envVars, useAdvancedParser);
+            cmds = CoverityUtils.prepareCmds(cmds, launchEnvVars, useAdvancedParser);
 
             starter = starter.cmds(cmds);
             boolean[] masks = starter.masks();
@@ -161,6 +153,22 @@ public class CoverityLauncher extends Launcher {
         return decorated.launch(starter);
     }
 
+    /**
+     * Updates the environment variables from the build, sets up (or resolves) the intermediate directory and returns a
+     * copy of the environment variables for one launch. The steps of the analysis launch their processes concurrently.
+     */
+    private synchronized EnvVars resolveEnvVars(AbstractBuild build) {
+        EnvVars buildEnvVars = CoverityUtils.getBuildEnvVars(listener);
+        if (envVars == null || envVars.isEmpty()) {
+            envVars = buildEnvVars;
+        } else if (buildEnvVars != null) {
+            envVars.overrideAll(buildEnvVars);
+        }
+
+        setupIntermediateDirectory(build, this.getListener(), node);
+        return new EnvVars(envVars);
+    }
+
     @Override
     public Channel launchChannel(String[] cmd, OutputStream out, FilePath workDir, Map<String, String> envVars) throws IOException, InterruptedException {
         String lastArg = cmd[cmd.length - 1];
@@ -10,17 +10,22 @@
  *******************************************************************************/
 package jenkins.plugins.coverity;
 
-import hudson.model.AbstractBuild;
+import hudson.Util;
 import hudson.model.Action;
 import hudson.model.Job;
-import hudson.model.Run;
 import hudson.util.DataSetBuilder;
 import hudson.util.Graph;
 import hudson.util.ShiftedCategoryAxis;
 import hudson.util.StackedAreaRenderer2;
 import jenkins.model.Jenkins;
+import net.sf.json.JSONArray;
+import net.sf.json.JSONNull;
+import net.sf.json.JSONObject;
 
+import org.apache.commons.lang.StringUtils;
 import org.jfree.chart.ChartFactory;
+import org.jfree.chart.ChartRenderingInfo;
+import org.jfree.chart.ChartUtilities;
 import org.jfree.chart.JFreeChart;
 import org.jfree.chart.axis.CategoryAxis;
 import org.jfree.chart.axis.CategoryLabelPositions;
@@ -29,15 +34,37 @@ import org.jfree.chart.plot.CategoryPlot;
 import org.jfree.chart.plot.PlotOrientation;
 import org.jfree.data.category.CategoryDataset;
 import org.jfree.ui.RectangleInsets;
+import org.kohsuke.stapler.StaplerRequest;
+import org.kohsuke.stapler.StaplerResponse;
 
+import javax.imageio.ImageIO;
+import javax.servlet.http.HttpServletResponse;
 import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.WeakHashMap;
 
 
 /**
- * Project-level action for Coverity. This is used to to display the history graph.
+ * Project-level action for Coverity. This is used to to display the history graph. The graph is drawn in the browser
+ * from the JSON returned by {@link #doTrend(StaplerRequest, StaplerResponse)}, the image rendered on the controller
+ * is used when JavaScript is not available.
  */
 public class CoverityProjectAction implements Action {
+    public static final int DEFAULT_TREND_BUILDS = 100;
+
+    // the last graph of each job, reused until a build of the job is added to or removed from the trend index
+    private static final Map<Job<?, ?>, GraphImpl> graphs = new WeakHashMap<Job<?, ?>, GraphImpl>();
 
     private final Job<?, ?> project;
 
@@ -62,26 +89,287 @@ public class CoverityProjectAction implements Action {
     }
 
     public Graph getGraph() {
-        return new GraphImpl();
+        final CoverityTrendIndex index = CoverityTrendIndex.get(project);
+        final String key = getTrendKey(index);
+
+        synchronized (graphs) {
+            GraphImpl graph = graphs.get(project);
+            if (graph == null || !graph.key.equals(key)) {
+                graph = new GraphImpl(index, project.getUrl(), key, index.getLastModified());
+                graphs.put(project, graph);
+            }
+            return graph;
+        }
+    }
+
+    /**
+     * Returns the defect counts of the last builds as JSON, the oldest build first. Parameters:
+     * <ul>
+     *     <li>builds: the number of builds, defaults to {@value #DEFAULT_TREND_BUILDS}</li>
+     *     <li>points: the maximum number of builds to return, evenly spaced across the builds, defaults to all</li>
+     *     <li>stream: only return the defect counts of this stream</li>
+     * </ul>
+     */
+    public void doTrend(StaplerRequest req, StaplerResponse rsp) throws IOException {
+        final int builds = CoverityUtils.getIntParameter(req, "builds", DEFAULT_TREND_BUILDS, 1, Integer.MAX_VALUE);
+        final int points = CoverityUtils.getIntParameter(req, "points", 0, 0, Integer.MAX_VALUE);
+        final String stream = Util.fixEmpty(req.getParameter("stream"));
+
+        final CoverityTrendIndex index = CoverityTrendIndex.get(project);
+        final String etag = '"' + getTrendKey(index) + '-' + builds + '-' + points +
+            (stream != null ? '-' + Util.getDigestOf(stream).substring(0, 8) : "") + '"';
+        if (isNotModified(req, rsp, etag, index.getLastModified())) {
+            return;
+        }
+
+        final JSONObject trend = getTrend(index.getEntries(), builds, points, stream);
+        rsp.setContentType("application/json;charset=UTF-8");
+        rsp.getWriter().print(trend.toString());
+    }
+
+    /**
+     * Returns the history of the CID of the cid parameter as JSON: the build it first appeared in, whether it is
+     * present in the last build and the ranges of builds it was present in
+     */
+    public void doCid(StaplerRequest req, StaplerResponse rsp) throws IOException {
+        final long cid;
+        try {
+            cid = Long.parseLong(StringUtils.trim(req.getParameter("cid")));
+        } catch (NumberFormatException e) {
+            rsp.sendError(HttpServletResponse.SC_BAD_REQUEST, "The cid parameter must be a CID");
+            return;
+        }
+
+        final CidHistoryIndex.CidHistory history = CidHistoryIndex.get(project).getHistory(cid);
+        final JSONArray ranges = new JSONArray();
+        for (int[] range : history.getRanges()) {
+            final JSONObject rangeObject = new JSONObject();
+            rangeObject.put("from", range[0]);
+            rangeObject.put("to", range[1]);
+            ranges.add(rangeObject);
+        }
+
+        final JSONObject result = new JSONObject();
+        result.put("cid", cid);
+        result.put("firstBuild", history.getFirstBuildNumber() >= 0 ? history.getFirstBuildNumber() : JSONNull.getInstance());
+        result.put("present", history.isPresent());
+        result.put("lastBuild", history.getLastBuildNumber() >= 0 ? history.getLastBuildNumber() : JSONNull.getInstance());
+        result.put("ranges", ranges);
+        rsp.setContentType("application/json;charset=UTF-8");
+        rsp.getWriter().print(result.toString());
     }
 
-    private class GraphImpl extends Graph {
-        protected GraphImpl() {
-            super(-1, 600, 300); // no caching, because it doesn't deal with deleted builds
+    /**
+     * Creates the trend from the entries of the trend index (the newest build first)
+     */
+    static JSONObject getTrend(List<CoverityTrendIndex.Entry> entries, int builds, int points, String stream) {
+        final Map<Integer, List<CoverityTrendIndex.Entry>> entriesByBuild = new LinkedHashMap<Integer, List<CoverityTrendIndex.Entry>>();
+        final Set<String> streams = new TreeSet<String>();
+        final Set<String> shownStreams = new TreeSet<String>();
+        for (CoverityTrendIndex.Entry entry : entries) {
+            streams.add(entry.getStreamId());
+            if (stream != null && !stream.equals(entry.getStreamId())) {
+                continue;
+            }
+
+            List<CoverityTrendIndex.Entry> buildEntries = entriesByBuild.get(entry.getBuildNumber());
+            if (buildEntries == null) {
+                if (entriesByBuild.size() == builds) {
+                    continue;
+                }
+                buildEntries = new ArrayList<CoverityTrendIndex.Entry>();
+                entriesByBuild.put(entry.getBuildNumber(), buildEntries);
+            }
+            buildEntries.add(entry);
+            shownStreams.add(entry.getStreamId());
+        }
+
+        List<List<CoverityTrendIndex.Entry>> selected = new ArrayList<List<CoverityTrendIndex.Entry>>(entriesByBuild.values());
+        Collections.reverse(selected);
+        if (points > 0 && selected.size() > points) {
+            // keep evenly spaced builds, always including the first and the last build
+            final List<List<CoverityTrendIndex.Entry>> sampled = new ArrayList<List<CoverityTrendIndex.Entry>>(points);
+            for (int i = 0; i < points; i++) {
+                final int position = points == 1 ? selected.size() - 1 : (int)((long)i * (selected.size() - 1) / (points - 1));
+                sampled.add(selected.get(position));
+            }
+            selected = sampled;
+        }
+
+        final JSONArray buildArray = new JSONArray();
+        final Map<String, JSONArray> counts = new LinkedHashMap<String, JSONArray>();
+        for (String streamId : shownStreams) {
+            counts.put(streamId, new JSONArray());
+        }
+        for (List<CoverityTrendIndex.Entry> buildEntries : selected) {
+            final JSONObject build = new JSONObject();
+            build.put("number", buildEntries.get(0).getBuildNumber());
+            build.put("displayName", buildEntries.get(0).getBuildDisplayName());
+            buildArray.add(build);
+
+            final Map<String, Integer> buildCounts = new HashMap<String, Integer>();
+            for (CoverityTrendIndex.Entry entry : buildEntries) {
+                final Integer count = buildCounts.get(entry.getStreamId());
+                buildCounts.put(entry.getStreamId(), (count != null ? count : 0) + entry.getDefectCount());
+            }
+            for (Map.Entry<String, JSONArray> streamCounts : counts.entrySet()) {
+                final Integer count = buildCounts.get(streamCounts.getKey());
+                streamCounts.getValue().add(count != null ? count : JSONNull.getInstance());
+            }
+        }
+
+        final JSONArray streamArray = new JSONArray();
+        for (Map.Entry<String, JSONArray> streamCounts : counts.entrySet()) {
+            final JSONObject streamObject = new JSONObject();
+            streamObject.put("name", streamCounts.getKey());
+            streamObject.put("counts", streamCounts.getValue());
+            streamArray.add(streamObject);
+        }
+
+        final JSONObject trend = new JSONObject();
+        trend.put("builds", buildArray);
+        trend.put("series", streamArray);
+        trend.put("streams", new JSONArray(streams));
+        return trend;
+    }
+
+    private String getTrendKey(CoverityTrendIndex index) {
+        return (project.getNextBuildNumber() - 1) + "-" + index.getModificationCount() + "-" + index.getLastModified();
+    }
+
+    /**
+     * Sets the ETag and Last-Modified headers, and answers with 304 Not Modified if the client has the current response
+     */
+    private static boolean isNotModified(StaplerRequest req, StaplerResponse rsp, String etag, long lastModified) {
+        rsp.setHeader("ETag", etag);
+
+        // the ETag takes precedence, the Last-Modified time has a resolution of one second only
+        final String ifNoneMatch = req.getHeader("If-None-Match");
+        if (ifNoneMatch == null) {
+            return req.checkIfModified(lastModified, rsp);
+        }
+
+        rsp.setDateHeader("Last-Modified", lastModified);
+        if (ifNoneMatch.equals(etag)) {
+            rsp.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Renders the trend graph once per size, keeping the last few sizes which were requested, and answers requests for an unchanged graph with 304 Not Modified, based
+     * on the ETag or the Last-Modified time of the trend index
+     */
+    private static class GraphImpl extends Graph {
+        private static final int MAX_SIZE = 2000;
+        // the size is taken from the request, so only the most recently used sizes are kept
+        private static final int MAX_CACHED_SIZES = 4;
+
+        // no reference to the job, the graph is the value of a weak map keyed by the job
+        private final CoverityTrendIndex index;
+        private final String projectUrl;
+        private final String key;
+        private final long lastModified;
+
+        private JFreeChart chart;
+        private final Map<String, byte[]> images = createCache();
+        private final Map<String, String> maps = createCache();
+
+        protected GraphImpl(CoverityTrendIndex index, String projectUrl, String key, long lastModified) {
+            super(lastModified, 600, 300);
+            this.index = index;
+            this.projectUrl = projectUrl;
+            this.key = key;
+            this.lastModified = lastModified;
+        }
+
+        @Override
+        public void doPng(StaplerRequest req, StaplerResponse rsp) throws IOException {
+            final String size = getSize(req);
+            if (isNotModified(req, rsp, size)) {
+                return;
+            }
+
+            byte[] image;
+            synchronized (this) {
+                image = images.get(size);
+                if (image == null) {
+                    ByteArrayOutputStream out = new ByteArrayOutputStream();
+                    ImageIO.write(render(size, null), "PNG", out);
+                    image = out.toByteArray();
+                    images.put(size, image);
+                }
+            }
+
+            rsp.setContentType("image/png");
+            rsp.setContentLength(image.length);
+            OutputStream os = rsp.getOutputStream();
+            os.write(image);
+            os.close();
+        }
+
+        @Override
+        public void doMap(StaplerRequest req, StaplerResponse rsp) throws IOException {
+            final String size = getSize(req);
+            if (isNotModified(req, rsp, size)) {
+                return;
+            }
+
+            String map;
+            synchronized (this) {
+                map = maps.get(size);
+                if (map == null) {
+                    ChartRenderingInfo info = new ChartRenderingInfo();
+                    render(size, info);
+                    map = ChartUtilities.getImageMap("map", info);
+                    maps.put(size, map);
+                }
+            }
+
+            rsp.setContentType("text/plain;charset=UTF-8");
+            rsp.getWriter().println(map);
+        }
+
+        private boolean isNotModified(StaplerRequest req, StaplerResponse rsp, String size) {
+            return CoverityProjectAction.isNotModified(req, rsp, '"' + key + '-' + size + '"', lastModified);
+        }
+
+        private static <V> Map<String, V> createCache() {
+            return new LinkedHashMap<String, V>(MAX_CACHED_SIZES + 1, 1f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, V> eldest) {
+                    return size() > MAX_CACHED_SIZES;
+                }
+            };
+        }
+
+        private static String getSize(StaplerRequest req) {
+            return CoverityUtils.getIntParameter(req, "width", 600, 1, MAX_SIZE) + "x" + CoverityUtils.getIntParameter(req, "height", 300, 1, MAX_SIZE);
+        }
+
+        private BufferedImage render(String size, ChartRenderingInfo info) {
+            if (chart == null) {
+                chart = createGraph();
+            }
+            final int separator = size.indexOf('x');
+            return chart.createBufferedImage(Integer.parseInt(size.substring(0, separator)), Integer.parseInt(size.substring(separator + 1)), info);
         }
 
         protected DataSetBuilder<String, ChartLabel> createDataSet() {
             DataSetBuilder<String, ChartLabel> data = new DataSetBuilder<String, ChartLabel>();
-            Run<?, ?> build = project.getLastCompletedBuild();
-            while(build != null) {
-                final List<CoverityBuildAction> actions = build.getActions(CoverityBuildAction.class);
-
-                for(CoverityBuildAction action : actions) {
-                    if(action != null && action.getDefects() != null && action.getGraphDisplayName() != null) {
-                        data.add(action.getDefects().size(), action.getGraphDisplayName(), new ChartLabel(build));
-                    }
+            // drawn from the trend index, so that the builds and their defects are not loaded
+            final List<CoverityTrendIndex.Entry> entries = index.getEntries();
+
+            Map<Integer, ChartLabel> labels = new HashMap<Integer, ChartLabel>();
+            for(CoverityTrendIndex.Entry entry : entries) {
+                ChartLabel label = labels.get(entry.getBuildNumber());
+                if(label == null) {
+                    label = new ChartLabel(projectUrl, entry.getBuildNumber(), entry.getBuildDisplayName());
+                    labels.put(entry.getBuildNumber(), label);
                 }
-                build = build.getPreviousBuild();
+                label.defectCount += entry.getDefectCount();
+                data.add(entry.getDefectCount(), entry.getGraphDisplayName(), label);
             }
             return data;
 
@@ -168,11 +456,7 @@ public class CoverityProjectAction implements Action {
         public String generateToolTip(CategoryDataset dataset, int row,
                                       int column) {
             ChartLabel label = (ChartLabel) dataset.getColumnKey(column);
-            int defects = 0;
-            for(CoverityBuildAction a : label.build.getActions(CoverityBuildAction.class)) {
-                defects += a.getDefects().size();
-            }
-            return label.build.getDisplayName() + " has " + defects + " total defects";
+            return label.displayName + " has " + label.defectCount + " total defects";
         }
 
         @Override
@@ -196,18 +480,23 @@ public class CoverityProjectAction implements Action {
     }
 
     private static class ChartLabel implements Comparable<ChartLabel> {
-        private Run build;
-
-        public ChartLabel(Run build) {
-            this.build = build;
+        private final String projectUrl;
+        private final int buildNumber;
+        private final String displayName;
+        private int defectCount;
+
+        public ChartLabel(String projectUrl, int buildNumber, String displayName) {
+            this.projectUrl = projectUrl;
+            this.buildNumber = buildNumber;
+            this.displayName = displayName;
         }
 
         public String getUrl() {
-            return Jenkins.getInstance().getRootUrl() + build.getUrl();
+            return Jenkins.getInstance().getRootUrl() + projectUrl + buildNumber + '/';
         }
 
         public int compareTo(ChartLabel that) {
-            return build.number - that.build.number;
+            return buildNumber - that.buildNumber;
         }
 
         @Override
@@ -216,7 +505,7 @@ public class CoverityProjectAction implements Action {
                 return false;
             }
             ChartLabel that = (ChartLabel) o;
-            return this.build == that.build;
+            return this.buildNumber == that.buildNumber;
         }
 
         public Color getColor() {
@@ -225,19 +514,12 @@ public class CoverityProjectAction implements Action {
 
         @Override
         public int hashCode() {
-            return build.getDisplayName().hashCode();
+            return buildNumber;
         }
 
         @Override
         public String toString() {
-            String l = build.getDisplayName();
-
-            if (build instanceof AbstractBuild) {
-                String s = ((AbstractBuild)build).getBuiltOnStr();
-                if(s != null)
-                    l += ' ' + s;
-            }
-            return l;
+            return displayName;
         }
 
     }
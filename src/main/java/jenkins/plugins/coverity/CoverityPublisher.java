@@ -32,6 +32,7 @@ import hudson.util.ListBoxModel;
 import jenkins.model.Jenkins;
 import jenkins.plugins.coverity.CoverityTool.CoverityToolHandler;
 import jenkins.plugins.coverity.ws.CimCache;
+import jenkins.plugins.coverity.ws.WebServiceFactory;
 import net.sf.json.JSON;
 import net.sf.json.JSONArray;
 import net.sf.json.JSONObject;
@@ -87,6 +88,23 @@ public class CoverityPublisher extends Recorder {
      */
     private boolean unstable;
 
+    /**
+     * The build is marked as failed or unstable only if more defects than this are present
+     */
+    private int defectThreshold;
+
+    /**
+     * Should only the number of matching defects be read, instead of fetching all defects? The build can still be
+     * marked as failed or unstable, but no defects are shown for the build.
+     */
+    private boolean countDefectsOnly;
+
+    /**
+     * Should only the defects which changed since the snapshot of the previous build be fetched? The defects of the
+     * build are derived from the defects of the previous build.
+     */
+    private boolean incrementalDefects;
+
     /**
      * Should the intermediate directory be preserved after each build?
      */
@@ -242,6 +260,33 @@ public class CoverityPublisher extends Recorder {
     public boolean isUnstable(){
         return unstable;
     }
+
+    @DataBoundSetter
+    public void setDefectThreshold(int defectThreshold){
+        this.defectThreshold = defectThreshold;
+    }
+
+    public int getDefectThreshold(){
+        return defectThreshold;
+    }
+
+    @DataBoundSetter
+    public void setCountDefectsOnly(boolean countDefectsOnly){
+        this.countDefectsOnly = countDefectsOnly;
+    }
+
+    public boolean isCountDefectsOnly(){
+        return countDefectsOnly;
+    }
+
+    @DataBoundSetter
+    public void setIncrementalDefects(boolean incrementalDefects){
+        this.incrementalDefects = incrementalDefects;
+    }
+
+    public boolean isIncrementalDefects(){
+        return incrementalDefects;
+    }
     
     public boolean isUnstableBuild(){
             return unstableBuild;
@@ -394,6 +439,9 @@ public class CoverityPublisher extends Recorder {
 
             save();
 
+            // instances which were removed or changed keep no web service clients
+            WebServiceFactory.getInstance().retainInstances(instances);
+
             return true;
         }
 
@@ -25,13 +25,18 @@ import java.io.IOException;
 
 /**
  * CoverityRunListener injects the Coverity pre-build check into all builds where Coverity build/analysis/commit is
- * enabled. The check runs before code is checked out.
+ * enabled. The check runs before code is checked out. It also keeps the {@link CoverityTrendIndex} and the
+ * {@link CidHistoryIndex} of the job up to date when builds complete or are deleted.
  */
 @Extension
 public class CoverityRunListener extends RunListener<Run> {
     @Override
     public void onCompleted(Run run, @Nonnull TaskListener listener) {
         super.onCompleted(run, listener);
+        if (run.getAction(CoverityBuildAction.class) != null) {
+            CoverityTrendIndex.get(run.getParent()).add(run);
+            CidHistoryIndex.get(run.getParent()).add(run);
+        }
     }
 
     @Override
@@ -77,5 +82,8 @@ public class CoverityRunListener extends RunListener<Run> {
     @Override
     public void onDeleted(Run run) {
         super.onDeleted(run);
+        if (run.getAction(CoverityBuildAction.class) != null) {
+            CoverityTrendIndex.get(run.getParent()).remove(run.getNumber());
+        }
     }
 }
@@ -21,6 +21,7 @@ import javax.annotation.Nonnull;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
 
 public abstract class Command {
 
@@ -61,22 +62,39 @@ public abstract class Command {
     }
 
     public int runCommand() throws IOException, InterruptedException {
+        if (canExecute()){
+            return execute();
+        }
+
+        // Need to return 0 to move onto different commands, rather than marking the build to fail.
+        return 0;
+    }
+
+    /**
+     * Prepares and runs the command, once {@link #canExecute()} returned true
+     */
+    protected int execute() throws IOException, InterruptedException {
         boolean useAdvancedParser = false;
         InvocationAssistance invocationAssistance = publisher.getInvocationAssistance();
         if (invocationAssistance != null && invocationAssistance.getUseAdvancedParser()){
             useAdvancedParser = true;
         }
 
-        if (canExecute()){
-            prepareCommand();
-            return CoverityUtils.runCmd(commandLine, build, launcher, listener, envVars, useAdvancedParser);
-        }
-
-        // Need to return 0 to move onto different commands, rather than marking the build to fail.
-        return 0;
+        prepareCommand();
+        return CoverityUtils.runCmd(commandLine, build, launcher, listener, envVars, useAdvancedParser);
     }
 
     protected abstract void prepareCommand();
 
     protected abstract boolean canExecute();
+
+    /**
+     * The data the command reads, the command runs after the commands which write it
+     */
+    public abstract Set<IntermediateData> getInputs();
+
+    /**
+     * The data the command writes
+     */
+    public abstract Set<IntermediateData> getOutputs();
 }
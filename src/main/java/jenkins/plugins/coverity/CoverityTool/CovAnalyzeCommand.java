@@ -18,7 +18,9 @@ import jenkins.plugins.coverity.*;
 import org.apache.commons.lang.StringUtils;
 
 import java.io.File;
+import java.util.EnumSet;
 import java.util.List;
+import java.util.Set;
 
 public class CovAnalyzeCommand extends CoverityCommand {
 
@@ -51,6 +53,16 @@ public class CovAnalyzeCommand extends CoverityCommand {
         return false;
     }
 
+    @Override
+    public Set<IntermediateData> getInputs() {
+        return EnumSet.of(IntermediateData.EMIT, IntermediateData.HISTORY);
+    }
+
+    @Override
+    public Set<IntermediateData> getOutputs() {
+        return EnumSet.of(IntermediateData.ANALYSIS);
+    }
+
     private void addMisraConfiguration(){
         InvocationAssistance invocationAssistance = publisher.getInvocationAssistance();
         if (invocationAssistance != null && invocationAssistance.getIsUsingMisra()){
@@ -20,6 +20,9 @@ import jenkins.plugins.coverity.ParseException;
 import jenkins.plugins.coverity.TaOptionBlock;
 import org.apache.commons.lang.StringUtils;
 
+import java.util.EnumSet;
+import java.util.Set;
+
 public class CovBuildCaptureTestCommand extends CoverityCommand {
 
     private static final String command = "cov-build";
@@ -48,4 +51,14 @@ public class CovBuildCaptureTestCommand extends CoverityCommand {
 
         return true;
     }
+
+    @Override
+    public Set<IntermediateData> getInputs() {
+        return EnumSet.noneOf(IntermediateData.class);
+    }
+
+    @Override
+    public Set<IntermediateData> getOutputs() {
+        return EnumSet.of(IntermediateData.EMIT);
+    }
 }
@@ -19,7 +19,9 @@ import jenkins.plugins.coverity.EnvParser;
 import jenkins.plugins.coverity.InvocationAssistance;
 import org.apache.commons.lang.StringUtils;
 
+import java.util.EnumSet;
 import java.util.List;
+import java.util.Set;
 
 public class CovBuildCompileCommand extends CoverityCommand {
 
@@ -46,6 +48,16 @@ public class CovBuildCompileCommand extends CoverityCommand {
         return true;
     }
 
+    @Override
+    public Set<IntermediateData> getInputs() {
+        return EnumSet.noneOf(IntermediateData.class);
+    }
+
+    @Override
+    public Set<IntermediateData> getOutputs() {
+        return EnumSet.of(IntermediateData.EMIT);
+    }
+
     @Override
     protected void addIntermediateDir() {
         commandLine.add(intermediateDirArguments);
@@ -19,7 +19,9 @@ import jenkins.plugins.coverity.EnvParser;
 import jenkins.plugins.coverity.InvocationAssistance;
 import org.apache.commons.lang.StringUtils;
 
+import java.util.EnumSet;
 import java.util.List;
+import java.util.Set;
 
 public class CovBuildScriptCommand extends CoverityCommand {
 
@@ -50,6 +52,16 @@ public class CovBuildScriptCommand extends CoverityCommand {
         return true;
     }
 
+    @Override
+    public Set<IntermediateData> getInputs() {
+        return EnumSet.noneOf(IntermediateData.class);
+    }
+
+    @Override
+    public Set<IntermediateData> getOutputs() {
+        return EnumSet.of(IntermediateData.EMIT);
+    }
+
     private void addScriptSourcesArgs() {
         addArgument(fileSystemCapture);
         addArgument("$WORKSPACE");
@@ -20,6 +20,9 @@ import jenkins.plugins.coverity.ParseException;
 import jenkins.plugins.coverity.TaOptionBlock;
 import org.apache.commons.lang.StringUtils;
 
+import java.util.EnumSet;
+import java.util.Set;
+
 public class CovCaptureCommand extends CoverityCommand {
 
     private static final String command = "cov-capture";
@@ -47,4 +50,14 @@ public class CovCaptureCommand extends CoverityCommand {
 
         return true;
     }
+
+    @Override
+    public Set<IntermediateData> getInputs() {
+        return EnumSet.noneOf(IntermediateData.class);
+    }
+
+    @Override
+    public Set<IntermediateData> getOutputs() {
+        return EnumSet.of(IntermediateData.EMIT);
+    }
 }
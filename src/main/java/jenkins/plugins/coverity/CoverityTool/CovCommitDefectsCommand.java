@@ -19,6 +19,8 @@ import jenkins.plugins.coverity.ws.CimServiceUrlCache;
 import org.apache.commons.lang.StringUtils;
 
 import java.net.URL;
+import java.util.EnumSet;
+import java.util.Set;
 
 public class CovCommitDefectsCommand extends CoverityCommand {
 
@@ -62,6 +64,16 @@ public class CovCommitDefectsCommand extends CoverityCommand {
         return true;
     }
 
+    @Override
+    public Set<IntermediateData> getInputs() {
+        return EnumSet.of(IntermediateData.EMIT, IntermediateData.SCM, IntermediateData.ANALYSIS);
+    }
+
+    @Override
+    public Set<IntermediateData> getOutputs() {
+        return EnumSet.of(IntermediateData.SNAPSHOTS);
+    }
+
     private void addServerInfo() {
         URL url = CimServiceUrlCache.getInstance().getURL(cimInstance);
         addHost(url, cimInstance);
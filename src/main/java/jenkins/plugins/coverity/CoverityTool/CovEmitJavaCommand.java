@@ -19,7 +19,9 @@ import jenkins.plugins.coverity.CoverityUtils;
 import jenkins.plugins.coverity.InvocationAssistance;
 
 import java.util.ArrayList;
+import java.util.EnumSet;
 import java.util.List;
+import java.util.Set;
 
 public class CovEmitJavaCommand extends CoverityCommand {
 
@@ -55,6 +57,16 @@ public class CovEmitJavaCommand extends CoverityCommand {
         return true;
     }
 
+    @Override
+    public Set<IntermediateData> getInputs() {
+        return EnumSet.noneOf(IntermediateData.class);
+    }
+
+    @Override
+    public Set<IntermediateData> getOutputs() {
+        return EnumSet.of(IntermediateData.EMIT);
+    }
+
     private void addJavaWarFiles(){
         List<String> javaWarFiles = new ArrayList<String>();
         InvocationAssistance invocationAssistance = publisher.getInvocationAssistance();
@@ -22,6 +22,8 @@ import jenkins.plugins.coverity.InvocationAssistance;
 import java.io.File;
 import java.io.FilenameFilter;
 import java.util.Collection;
+import java.util.EnumSet;
+import java.util.Set;
 
 public class CovImportMsvscaCommand extends CoverityCommand {
 
@@ -58,6 +60,16 @@ public class CovImportMsvscaCommand extends CoverityCommand {
         return true;
     }
 
+    @Override
+    public Set<IntermediateData> getInputs() {
+        return EnumSet.noneOf(IntermediateData.class);
+    }
+
+    @Override
+    public Set<IntermediateData> getOutputs() {
+        return EnumSet.of(IntermediateData.ANALYSIS);
+    }
+
     private void addOutputFiles() {
         addArgument(appendFlag);
         for(File outputFile : outputFiles) {
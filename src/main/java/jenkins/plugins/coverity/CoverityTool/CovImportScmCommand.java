@@ -17,6 +17,9 @@ import hudson.model.TaskListener;
 import jenkins.plugins.coverity.*;
 import org.apache.commons.lang.StringUtils;
 
+import java.util.EnumSet;
+import java.util.Set;
+
 public class CovImportScmCommand extends CoverityCommand {
 
     private static final String command = "cov-import-scm";
@@ -69,6 +72,16 @@ public class CovImportScmCommand extends CoverityCommand {
         return true;
     }
 
+    @Override
+    public Set<IntermediateData> getInputs() {
+        return EnumSet.of(IntermediateData.EMIT);
+    }
+
+    @Override
+    public Set<IntermediateData> getOutputs() {
+        return EnumSet.of(IntermediateData.SCM);
+    }
+
     private void addScmTool() {
         addArgument(scmFlag);
         addArgument(scmOptionBlock.getScmSystem());
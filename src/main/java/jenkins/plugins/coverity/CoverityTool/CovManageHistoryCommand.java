@@ -21,7 +21,9 @@ import com.coverity.ws.v9.SnapshotFilterSpecDataObj;
 import jenkins.plugins.coverity.ws.CimServiceUrlCache;
 
 import java.net.URL;
+import java.util.EnumSet;
 import java.util.List;
+import java.util.Set;
 
 public class CovManageHistoryCommand extends CoverityCommand {
 
@@ -68,6 +70,16 @@ public class CovManageHistoryCommand extends CoverityCommand {
         return true;
     }
 
+    @Override
+    public Set<IntermediateData> getInputs() {
+        return EnumSet.of(IntermediateData.SNAPSHOTS);
+    }
+
+    @Override
+    public Set<IntermediateData> getOutputs() {
+        return EnumSet.of(IntermediateData.HISTORY);
+    }
+
     private void addServerInfo(){
         URL url = CimServiceUrlCache.getInstance().getURL(cimInstance);
         addHost(url, cimInstance);
@@ -67,173 +67,61 @@ public class CoverityToolHandler {
             envVars.put("COV_ANALYSIS_ROOT", home);
         }
 
-        //run cov-build for scripting language sources only.
-        try {
-            CoverityLauncherDecorator.CoverityPostBuildAction.set(true);
-
-            Command covBuildScriptCommand = new CovBuildScriptCommand(build, launcher, listener, publisher, home, envVars);
-            int result = covBuildScriptCommand.runCommand();
+        // The order of the steps follows from the data each command reads and writes, so the capture steps run one
+        // after another while the history is downloaded from Coverity Connect. Each step runs with a copy of the
+        // environment variables, the variables it sets are passed on to the steps after it.
+        StepScheduler scheduler = new StepScheduler(listener.getLogger());
 
-            if(result != 0) {
-                listener.getLogger().println("[Coverity] cov-build returned " + result + ", aborting...");
-                build.setResult(Result.FAILURE);
-                return;
-            }
-
-        } finally {
-            CoverityLauncherDecorator.CoverityPostBuildAction.set(false);
-        }
+        //run cov-build for scripting language sources only.
+        scheduler.add(new StepScheduler.CommandStep("cov-build",
+                new CovBuildScriptCommand(build, launcher, listener, publisher, home, envVars)));
 
         //run post cov-build command.
-        try {
-            CoverityLauncherDecorator.CoverityPostBuildAction.set(true);
-            Command postCovBuildCommand = new PostCovBuildCommand(build, launcher, listener, publisher, envVars);
-            int result = postCovBuildCommand.runCommand();
-
-            if(result != 0) {
-                listener.getLogger().println("[Coverity] post cov-build command returned " + result + ", aborting...");
-                build.setResult(Result.FAILURE);
-                return;
-            }
-
-        } finally {
-            CoverityLauncherDecorator.CoverityPostBuildAction.set(false);
-        }
+        scheduler.add(new StepScheduler.CommandStep("post cov-build command",
+                new PostCovBuildCommand(build, launcher, listener, publisher, envVars)));
 
         // Run Cov-Emit-Java
-        try {
-            CoverityLauncherDecorator.CoverityPostBuildAction.set(true);
-            Command covEmitJavaCommand = new CovEmitJavaCommand(build, launcher, listener, publisher, home, envVars, useAdvancedParser);
-            int result = covEmitJavaCommand.runCommand();
-
-            if(result != 0) {
-                listener.getLogger().println("[Coverity] cov-emit-java returned " + result + ", aborting...");
-                build.setResult(Result.FAILURE);
-                return;
-            }
-        } finally {
-            CoverityLauncherDecorator.CoverityPostBuildAction.set(false);
-        }
+        scheduler.add(new StepScheduler.CommandStep("cov-emit-java",
+                new CovEmitJavaCommand(build, launcher, listener, publisher, home, envVars, useAdvancedParser)));
 
         // Capturing TA violations
-        try{
-            CoverityLauncherDecorator.CoverityPostBuildAction.set(true);
-            Command command = null;
-
-            if (version.compareTo(CoverityVersion.VERSION_PACIFIC) < 0) {
-                // Run Cov-Capture since the analysis tool version is older than 2018.12
-                command = new CovCaptureCommand(build, launcher, listener, publisher, home, envVars);
-            } else {
-                // Run Cov-Build since the analysis tool version is equal or greater than 2018.12
-                command = new CovBuildCaptureTestCommand(build, launcher, listener, publisher, home, envVars);
-            }
-
-            int result = command.runCommand();
-
-            if(result != 0) {
-                listener.getLogger().println("[Coverity] Capturing tests returned " + result + ", aborting...");
-                build.setResult(Result.FAILURE);
-                return;
-            }
-        } finally {
-            CoverityLauncherDecorator.CoverityPostBuildAction.set(false);
+        Command captureTestCommand = null;
+        if (version.compareTo(CoverityVersion.VERSION_PACIFIC) < 0) {
+            // Run Cov-Capture since the analysis tool version is older than 2018.12
+            captureTestCommand = new CovCaptureCommand(build, launcher, listener, publisher, home, envVars);
+        } else {
+            // Run Cov-Build since the analysis tool version is equal or greater than 2018.12
+            captureTestCommand = new CovBuildCaptureTestCommand(build, launcher, listener, publisher, home, envVars);
         }
+        scheduler.add(new StepScheduler.CommandStep("Capturing tests", captureTestCommand));
 
         // Run Cov Manage History
-        try {
-            CoverityLauncherDecorator.CoverityPostBuildAction.set(true);
-
-            Command covManageHistoryCommand = new CovManageHistoryCommand(build, launcher, listener, publisher, home, envVars, cimStream, cim);
-            int result = covManageHistoryCommand.runCommand();
-
-            if(result != 0) {
-                listener.getLogger().println("[Coverity] cov-manage-history returned " + result + ", aborting...");
-
-                build.setResult(Result.FAILURE);
-                return;
-            }
-        } finally {
-            CoverityLauncherDecorator.CoverityPostBuildAction.set(false);
-        }
+        scheduler.add(new StepScheduler.CommandStep("cov-manage-history",
+                new CovManageHistoryCommand(build, launcher, listener, publisher, home, envVars, cimStream, cim)));
 
         // Run Cov Import Scm
-        try {
-            CoverityLauncherDecorator.CoverityPostBuildAction.set(true);
-
-            Command covImportScmCommand = new CovImportScmCommand(build, launcher, listener, publisher, home, envVars);
-            int result = covImportScmCommand.runCommand();
-
-            if(result != 0) {
-                listener.getLogger().println("[Coverity] cov-import-scm returned " + result + ", aborting...");
-
-                build.setResult(Result.FAILURE);
-                return;
-            }
-        } finally {
-            CoverityLauncherDecorator.CoverityPostBuildAction.set(false);
-        }
+        scheduler.add(new StepScheduler.CommandStep("cov-import-scm",
+                new CovImportScmCommand(build, launcher, listener, publisher, home, envVars)));
 
         //run cov-analyze
-        try {
-            CoverityLauncherDecorator.CoverityPostBuildAction.set(true);
-            Command covAnalyzeCommand = new CovAnalyzeCommand(build, launcher, listener, publisher, home, envVars);
-            int result = covAnalyzeCommand.runCommand();
-
-            if(result != 0) {
-                listener.getLogger().println("[Coverity] cov-analyze returned " + result + ", aborting...");
-                build.setResult(Result.FAILURE);
-                return;
-            }
-
-        } finally {
-            CoverityLauncherDecorator.CoverityPostBuildAction.set(false);
-        }
+        scheduler.add(new StepScheduler.CommandStep("cov-analyze",
+                new CovAnalyzeCommand(build, launcher, listener, publisher, home, envVars)));
 
         //run post cov-analyze command.
-        try {
-            CoverityLauncherDecorator.CoverityPostBuildAction.set(true);
-            Command postCovAnalyzeCommand = new PostCovAnalyzeCommand(build, launcher, listener, publisher, envVars);
-            int result = postCovAnalyzeCommand.runCommand();
-
-            if(result != 0) {
-                listener.getLogger().println("[Coverity] post cov-analyze command returned " + result + ", aborting...");
-                build.setResult(Result.FAILURE);
-                return;
-            }
-
-        } finally {
-            CoverityLauncherDecorator.CoverityPostBuildAction.set(false);
-        }
+        scheduler.add(new StepScheduler.CommandStep("post cov-analyze command",
+                new PostCovAnalyzeCommand(build, launcher, listener, publisher, envVars)));
 
         // Import Microsoft Visual Studio Code Anaysis results
-        try{
-            CoverityLauncherDecorator.CoverityPostBuildAction.set(true);
-            Command covImportMsvscaCommand = new CovImportMsvscaCommand(build, launcher, listener, publisher, home, envVars, build.getWorkspace());
-            int result = covImportMsvscaCommand.runCommand();
-
-            if(result != 0) {
-                listener.getLogger().println("[Coverity] cov-import-msvsca returned " + result + ", aborting...");
-                build.setResult(Result.FAILURE);
-                return;
-            }
-
-        }finally{
-            CoverityLauncherDecorator.CoverityPostBuildAction.set(false);
-        }
+        scheduler.add(new StepScheduler.CommandStep("cov-import-msvsca",
+                new CovImportMsvscaCommand(build, launcher, listener, publisher, home, envVars, build.getWorkspace())));
 
         //run cov-commit-defects
-        try {
-            CoverityLauncherDecorator.CoverityPostBuildAction.set(true);
-            Command covCommitDefectsCommand = new CovCommitDefectsCommand(build, launcher, listener, publisher, home, envVars, cimStream, cim);
-            int result = covCommitDefectsCommand.runCommand();
-
-            if(result != 0) {
-                listener.getLogger().println("[Coverity] cov-commit-defects returned " + result + ", aborting...");
-                build.setResult(Result.FAILURE);
-                return;
-            }
-        } finally {
-            CoverityLauncherDecorator.CoverityPostBuildAction.set(false);
+        scheduler.add(new StepScheduler.CommandStep("cov-commit-defects",
+                new CovCommitDefectsCommand(build, launcher, listener, publisher, home, envVars, cimStream, cim)));
+
+        if (!scheduler.run()) {
+            build.setResult(Result.FAILURE);
+            return;
         }
 
         if(!publisher.getSkipFetchingDefects()) {
@@ -0,0 +1,45 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Synopsys, Inc
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Synopsys, Inc - initial implementation and documentation
+ *******************************************************************************/
+package jenkins.plugins.coverity.CoverityTool;
+
+/**
+ * The data which Coverity commands read and write, mostly parts of the intermediate directory. The order of the
+ * steps of the analysis follows from the data each command reads and writes. The intermediate directory itself is
+ * created by the Coverity launcher before any step runs, so commands which write different parts of it can run at
+ * the same time.
+ */
+public enum IntermediateData {
+    /**
+     * The captured sources in the emit of the intermediate directory, written by the capture steps
+     */
+    EMIT,
+
+    /**
+     * The analysis history downloaded from Coverity Connect by cov-manage-history, read by cov-analyze
+     */
+    HISTORY,
+
+    /**
+     * The SCM data of the captured sources imported by cov-import-scm, which is only committed with the snapshot and
+     * not used by the analysis
+     */
+    SCM,
+
+    /**
+     * The results of the analysis, including imported third party results
+     */
+    ANALYSIS,
+
+    /**
+     * The snapshots of the stream in Coverity Connect
+     */
+    SNAPSHOTS
+}
@@ -20,6 +20,9 @@ import jenkins.plugins.coverity.InvocationAssistance;
 import jenkins.plugins.coverity.ParseException;
 import org.apache.commons.lang.StringUtils;
 
+import java.util.EnumSet;
+import java.util.Set;
+
 public class PostCovAnalyzeCommand extends Command {
 
     public PostCovAnalyzeCommand(AbstractBuild<?, ?> build, Launcher launcher, TaskListener listener, CoverityPublisher publisher, EnvVars envVars) {
@@ -54,4 +57,14 @@ public class PostCovAnalyzeCommand extends Command {
 
         return true;
     }
+
+    @Override
+    public Set<IntermediateData> getInputs() {
+        return EnumSet.of(IntermediateData.ANALYSIS);
+    }
+
+    @Override
+    public Set<IntermediateData> getOutputs() {
+        return EnumSet.of(IntermediateData.ANALYSIS);
+    }
 }
@@ -17,6 +17,9 @@ import hudson.model.TaskListener;
 import jenkins.plugins.coverity.*;
 import org.apache.commons.lang.StringUtils;
 
+import java.util.EnumSet;
+import java.util.Set;
+
 public class PostCovBuildCommand extends Command {
 
     public PostCovBuildCommand(AbstractBuild<?, ?> build, Launcher launcher, TaskListener listener, CoverityPublisher publisher, EnvVars envVars) {
@@ -51,4 +54,14 @@ public class PostCovBuildCommand extends Command {
 
         return true;
     }
+
+    @Override
+    public Set<IntermediateData> getInputs() {
+        return EnumSet.of(IntermediateData.EMIT);
+    }
+
+    @Override
+    public Set<IntermediateData> getOutputs() {
+        return EnumSet.of(IntermediateData.EMIT);
+    }
 }
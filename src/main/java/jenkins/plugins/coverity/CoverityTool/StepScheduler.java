@@ -0,0 +1,357 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Synopsys, Inc
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Synopsys, Inc - initial implementation and documentation
+ *******************************************************************************/
+package jenkins.plugins.coverity.CoverityTool;
+
+import hudson.EnvVars;
+import hudson.Util;
+import hudson.model.Executor;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+import jenkins.plugins.coverity.CoverityLauncherDecorator;
+import org.apache.commons.lang.StringUtils;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Logger;
+
+/**
+ * Runs the steps of the Coverity analysis as a graph. Each step declares the {@link IntermediateData} it reads and
+ * writes, and runs after the steps added before it which write the data it reads, or which read or write the data it
+ * writes. Whether a step has something to do is checked when its turn comes, and a step which has nothing to do is
+ * skipped.
+ *
+ * A step starts as soon as the steps it depends on have succeeded, so steps which do not depend on each other run
+ * concurrently, up to the parallelism set with the system property {@link #PARALLELISM_PROPERTY}, which is 2 by
+ * default. When more than one step can start, the step which was added first starts first, so with a parallelism of 1
+ * the steps run one after another in the order they were added. The status and duration of each step are recorded,
+ * and the duration is written to the console.
+ *
+ * If a step returns a non-zero exit code or throws an exception, no more steps are started and the steps which are
+ * still running are waited for.
+ */
+public class StepScheduler {
+    private static final Logger logger = Logger.getLogger(StepScheduler.class.getName());
+
+    public static final String PARALLELISM_PROPERTY = StepScheduler.class.getName() + ".parallelism";
+    private static final int DEFAULT_PARALLELISM = 2;
+
+    /**
+     * A step of the analysis
+     */
+    public static abstract class Step {
+        public enum Status {
+            PENDING, SKIPPED, RUNNING, SUCCEEDED, FAILED
+        }
+
+        private final String name;
+        private volatile Status status = Status.PENDING;
+        private volatile long duration = -1;
+
+        protected Step(String name) {
+            this.name = name;
+        }
+
+        /**
+         * The name of the step in the console output, for example "cov-analyze"
+         */
+        public String getName() {
+            return name;
+        }
+
+        public abstract Set<IntermediateData> getInputs();
+
+        public abstract Set<IntermediateData> getOutputs();
+
+        /**
+         * Whether the step has something to do, called when the steps it depends on are done
+         */
+        protected abstract boolean canRun();
+
+        /**
+         * Runs the step and returns its exit code
+         */
+        protected abstract int run() throws IOException, InterruptedException;
+
+        public Status getStatus() {
+            return status;
+        }
+
+        /**
+         * How long the step ran in milliseconds, or -1 if it did not run
+         */
+        public long getDuration() {
+            return duration;
+        }
+
+        /**
+         * Whether the step has to run after a step which was added before it
+         */
+        boolean dependsOn(Step step) {
+            return !Collections.disjoint(step.getOutputs(), getInputs())
+                || !Collections.disjoint(step.getOutputs(), getOutputs())
+                || !Collections.disjoint(step.getInputs(), getOutputs());
+        }
+    }
+
+    /**
+     * Runs a Coverity command as a step, with the data the command declares.
+     *
+     * The environment variables the command was created with are shared by the steps. The command runs with a copy of
+     * them taken when its turn comes, and the variables it sets, such as COVERITY_PASSPHRASE or P4PORT, are added to
+     * the shared variables when it is done, so the steps after it see them as if the commands ran one after another.
+     */
+    public static class CommandStep extends Step {
+        private final Command command;
+        private final EnvVars environment;
+        private EnvVars initialEnvironment;
+
+        public CommandStep(String name, Command command) {
+            super(name);
+            this.command = command;
+            this.environment = command.envVars;
+        }
+
+        @Override
+        public Set<IntermediateData> getInputs() {
+            return command.getInputs();
+        }
+
+        @Override
+        public Set<IntermediateData> getOutputs() {
+            return command.getOutputs();
+        }
+
+        @Override
+        protected boolean canRun() {
+            synchronized (environment) {
+                initialEnvironment = new EnvVars(environment);
+            }
+            command.envVars = new EnvVars(initialEnvironment);
+            return command.canExecute();
+        }
+
+        @Override
+        protected int run() throws IOException, InterruptedException {
+            try {
+                return command.execute();
+            } finally {
+                synchronized (environment) {
+                    for (Map.Entry<String, String> variable : command.envVars.entrySet()) {
+                        if (!StringUtils.equals(variable.getValue(), initialEnvironment.get(variable.getKey()))) {
+                            environment.put(variable.getKey(), variable.getValue());
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private final List<Step> steps = new ArrayList<>();
+    private final PrintStream console;
+    private final int parallelism;
+
+    public StepScheduler(PrintStream console) {
+        this(console, Math.max(1, Integer.getInteger(PARALLELISM_PROPERTY, DEFAULT_PARALLELISM)));
+    }
+
+    public StepScheduler(PrintStream console, int parallelism) {
+        this.console = console;
+        this.parallelism = parallelism;
+    }
+
+    public <T extends Step> T add(T step) {
+        steps.add(step);
+        return step;
+    }
+
+    public List<Step> getSteps() {
+        return Collections.unmodifiableList(steps);
+    }
+
+    /**
+     * Runs the steps and returns whether all of them succeeded or were skipped
+     */
+    public boolean run() throws IOException, InterruptedException {
+        if (parallelism == 1) {
+            for (Step step : steps) {
+                if (!canRun(step)) {
+                    continue;
+                }
+                final int result = runStep(step);
+                if (result != 0) {
+                    logFailure(step, result);
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        final Map<Step, List<Step>> dependencies = getDependencies(steps);
+
+        // the Coverity launcher finds the build through the executor of the current thread
+        final Executor executor = Executor.currentExecutor();
+        final ExecutorService threads = Executors.newFixedThreadPool(parallelism,
+                new NamingThreadFactory(new DaemonThreadFactory(), "Coverity step"));
+        final CompletionService<Integer> completionService = new ExecutorCompletionService<>(threads);
+        final List<Step> pending = new ArrayList<>(steps);
+        // the steps which succeeded or were skipped
+        final Set<Step> done = new HashSet<>();
+        final Map<Future<Integer>, Step> running = new HashMap<>();
+        boolean failed = false;
+        Throwable exception = null;
+        try {
+            while ((!failed && !pending.isEmpty()) || !running.isEmpty()) {
+                if (!failed) {
+                    startSteps(executor, completionService, dependencies, pending, done, running);
+                }
+                if (running.isEmpty()) {
+                    // the remaining steps were skipped
+                    continue;
+                }
+
+                final Future<Integer> future = completionService.take();
+                final Step step = running.remove(future);
+                try {
+                    final int result = future.get();
+                    if (result == 0) {
+                        done.add(step);
+                    } else {
+                        logFailure(step, result);
+                        failed = true;
+                    }
+                } catch (ExecutionException e) {
+                    if (exception == null) {
+                        exception = e.getCause();
+                    }
+                    failed = true;
+                }
+            }
+        } finally {
+            // only left over if the build was interrupted
+            for (Future<Integer> future : running.keySet()) {
+                future.cancel(true);
+            }
+            threads.shutdown();
+        }
+
+        if (exception instanceof IOException) {
+            throw (IOException)exception;
+        } else if (exception instanceof InterruptedException) {
+            throw (InterruptedException)exception;
+        } else if (exception instanceof RuntimeException) {
+            throw (RuntimeException)exception;
+        } else if (exception instanceof Error) {
+            throw (Error)exception;
+        } else if (exception != null) {
+            throw new IOException(exception);
+        }
+        return !failed;
+    }
+
+    /**
+     * The steps each step depends on
+     */
+    static Map<Step, List<Step>> getDependencies(List<Step> steps) {
+        final Map<Step, List<Step>> dependencies = new HashMap<>();
+        for (int i = 0; i < steps.size(); i++) {
+            final List<Step> stepDependencies = new ArrayList<>();
+            for (int j = 0; j < i; j++) {
+                if (steps.get(i).dependsOn(steps.get(j))) {
+                    stepDependencies.add(steps.get(j));
+                }
+            }
+            dependencies.put(steps.get(i), stepDependencies);
+        }
+        return dependencies;
+    }
+
+    /**
+     * Starts the pending steps whose dependencies are done, up to the parallelism. Whether a step can run is checked
+     * when its turn comes, so the skip checks and their output follow the order of the steps. A skipped step counts as
+     * done, which can make the steps after it ready as well.
+     */
+    private void startSteps(Executor executor, CompletionService<Integer> completionService,
+                            Map<Step, List<Step>> dependencies, List<Step> pending, Set<Step> done,
+                            Map<Future<Integer>, Step> running) {
+        boolean skipped;
+        do {
+            skipped = false;
+            // every step depends on steps added before it, so the first pending step can start once nothing is running
+            for (Iterator<Step> iterator = pending.iterator(); iterator.hasNext() && running.size() < parallelism;) {
+                final Step step = iterator.next();
+                if (done.containsAll(dependencies.get(step))) {
+                    iterator.remove();
+                    if (canRun(step)) {
+                        running.put(completionService.submit(createTask(executor, step)), step);
+                    } else {
+                        done.add(step);
+                        skipped = true;
+                    }
+                }
+            }
+        } while (skipped);
+    }
+
+    private boolean canRun(Step step) {
+        if (step.canRun()) {
+            return true;
+        }
+        step.status = Step.Status.SKIPPED;
+        logger.fine("Skipping the Coverity step " + step.getName());
+        return false;
+    }
+
+    private Callable<Integer> createTask(Executor executor, final Step step) {
+        final Callable<Integer> task = new Callable<Integer>() {
+            public Integer call() throws Exception {
+                return runStep(step);
+            }
+        };
+        return executor != null ? executor.newImpersonatingCallable(task) : task;
+    }
+
+    private int runStep(Step step) throws IOException, InterruptedException {
+        final long start = System.currentTimeMillis();
+        step.status = Step.Status.RUNNING;
+        try {
+            CoverityLauncherDecorator.CoverityPostBuildAction.set(true);
+            final int result = step.run();
+            step.status = result == 0 ? Step.Status.SUCCEEDED : Step.Status.FAILED;
+            return result;
+        } finally {
+            CoverityLauncherDecorator.CoverityPostBuildAction.set(false);
+            if (step.status == Step.Status.RUNNING) {
+                step.status = Step.Status.FAILED;
+            }
+            step.duration = System.currentTimeMillis() - start;
+            console.println("[Coverity] " + step.getName() + " took " + Util.getTimeSpanString(step.duration));
+        }
+    }
+
+    private void logFailure(Step step, int result) {
+        console.println("[Coverity] " + step.getName() + " returned " + result + ", aborting...");
+    }
+}
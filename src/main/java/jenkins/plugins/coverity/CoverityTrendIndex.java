@@ -0,0 +1,329 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Synopsys, Inc
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Synopsys, Inc - initial implementation and documentation
+ *******************************************************************************/
+package jenkins.plugins.coverity;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.ref.WeakReference;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.WeakHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.apache.commons.lang.StringUtils;
+
+import hudson.model.Job;
+import hudson.model.Run;
+
+/**
+ * Index of the defect counts of the builds of a job, so that the trend graph can be drawn without loading every build.
+ * The index is a text file in the job directory with one line per build and stream:
+ *
+ * <pre>
+ * build number, defect count, stream, build display name (tab separated)
+ * -build number (the build was deleted)
+ * </pre>
+ *
+ * Lines are appended when a build completes or is deleted, and the file is rewritten once it holds more deleted than
+ * current entries. Readers ignore additional columns, so that further data per build can be appended later. The index
+ * is created from the existing builds of the job the first time it is read.
+ */
+public class CoverityTrendIndex {
+    private static final Logger logger = Logger.getLogger(CoverityTrendIndex.class.getName());
+
+    static final String INDEX_FILE_NAME = "coverity-trend.idx";
+
+    private static final Map<Job<?, ?>, CoverityTrendIndex> indexes = new WeakHashMap<>();
+
+    // not a strong reference, the index is the value of a weak map keyed by the job
+    private final WeakReference<Job<?, ?>> job;
+
+    // the number of lines read with the last read of the file, to decide when deleted entries are removed
+    private int lineCount;
+
+    // bumped whenever a build is added or removed, so that cached graphs of the job can be replaced
+    private long modificationCount;
+    private long lastModified;
+
+    CoverityTrendIndex(Job<?, ?> job) {
+        this.job = new WeakReference<Job<?, ?>>(job);
+        long fileModified = getFile().lastModified();
+        this.lastModified = fileModified > 0 ? fileModified : System.currentTimeMillis();
+    }
+
+    public static CoverityTrendIndex get(Job<?, ?> job) {
+        synchronized (indexes) {
+            CoverityTrendIndex index = indexes.get(job);
+            if (index == null) {
+                index = new CoverityTrendIndex(job);
+                indexes.put(job, index);
+            }
+            return index;
+        }
+    }
+
+    /**
+     * The defect count of one stream in one build
+     */
+    public static class Entry {
+        private final int buildNumber;
+        private final int defectCount;
+        private final String streamId;
+        private final String buildDisplayName;
+
+        public Entry(int buildNumber, int defectCount, String streamId, String buildDisplayName) {
+            this.buildNumber = buildNumber;
+            this.defectCount = defectCount;
+            this.streamId = streamId;
+            this.buildDisplayName = buildDisplayName;
+        }
+
+        public int getBuildNumber() {
+            return buildNumber;
+        }
+
+        public int getDefectCount() {
+            return defectCount;
+        }
+
+        public String getStreamId() {
+            return streamId;
+        }
+
+        public String getBuildDisplayName() {
+            return buildDisplayName;
+        }
+
+        public String getGraphDisplayName() {
+            return "Coverity Defects (" + streamId + ")";
+        }
+
+        private String toLine() {
+            return buildNumber + "\t" + defectCount + "\t" + escape(streamId) + "\t" + escape(buildDisplayName);
+        }
+
+        private static String escape(String value) {
+            return StringUtils.replaceChars(StringUtils.defaultString(value), "\t\r\n", "   ");
+        }
+    }
+
+    /**
+     * Records the defect counts of a completed build, replacing earlier entries of the build
+     */
+    public synchronized void add(Run<?, ?> run) {
+        List<Entry> entries = getEntries(run);
+        if (entries.isEmpty()) {
+            return;
+        }
+
+        modified();
+        if (!getFile().exists()) {
+            // the build is still running while it completes, so it is not part of the builds the index is created from
+            Map<Integer, List<Entry>> allEntries = readBuilds();
+            allEntries.put(run.getNumber(), entries);
+            write(allEntries);
+            return;
+        }
+
+        List<String> lines = new ArrayList<>();
+        lines.add("-" + run.getNumber());
+        for (Entry entry : entries) {
+            lines.add(entry.toLine());
+        }
+        append(lines);
+    }
+
+    /**
+     * Records that a build was deleted
+     */
+    public synchronized void remove(int buildNumber) {
+        File file = getFile();
+        if (!file.exists()) {
+            return;
+        }
+
+        modified();
+        append(Collections.singletonList("-" + buildNumber));
+        Map<Integer, List<Entry>> entries = read();
+        if (entries != null && lineCount > 2 * countEntries(entries)) {
+            write(entries);
+        }
+    }
+
+    /**
+     * The entries of all builds, the newest build first
+     */
+    public synchronized List<Entry> getEntries() {
+        Map<Integer, List<Entry>> entries = read();
+        if (entries == null) {
+            entries = readBuilds();
+            write(entries);
+        }
+
+        List<Entry> result = new ArrayList<>();
+        for (List<Entry> buildEntries : entries.values()) {
+            result.addAll(buildEntries);
+        }
+        return result;
+    }
+
+    /**
+     * The number of builds added to or removed from the index since it was created
+     */
+    public synchronized long getModificationCount() {
+        return modificationCount;
+    }
+
+    /**
+     * The time of the last change of the index
+     */
+    public synchronized long getLastModified() {
+        return lastModified;
+    }
+
+    private void modified() {
+        modificationCount++;
+        lastModified = Math.max(System.currentTimeMillis(), lastModified);
+    }
+
+    private static List<Entry> getEntries(Run<?, ?> run) {
+        List<Entry> entries = new ArrayList<>();
+        for (CoverityBuildAction action : run.getActions(CoverityBuildAction.class)) {
+            if (action != null && action.getStreamId() != null) {
+                entries.add(new Entry(run.getNumber(), action.getDefectCount(), action.getStreamId(), run.getDisplayName()));
+            }
+        }
+        return entries;
+    }
+
+    private Job<?, ?> getJob() {
+        Job<?, ?> job = this.job.get();
+        if (job == null) {
+            throw new IllegalStateException("The job of the Coverity trend index no longer exists");
+        }
+        return job;
+    }
+
+    private File getFile() {
+        return new File(getJob().getRootDir(), INDEX_FILE_NAME);
+    }
+
+    /**
+     * Reads the index, returns null if there is no index yet
+     */
+    private Map<Integer, List<Entry>> read() {
+        Map<Integer, List<Entry>> entries = new TreeMap<>(Collections.reverseOrder());
+        File file = getFile();
+        int lines = 0;
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lines++;
+                try {
+                    if (line.startsWith("-")) {
+                        entries.remove(Integer.valueOf(line.substring(1)));
+                        continue;
+                    }
+
+                    String[] columns = line.split("\t", -1);
+                    if (columns.length < 4) {
+                        continue;
+                    }
+                    Entry entry = new Entry(Integer.parseInt(columns[0]), Integer.parseInt(columns[1]), columns[2], columns[3]);
+                    List<Entry> buildEntries = entries.get(entry.getBuildNumber());
+                    if (buildEntries == null) {
+                        buildEntries = new ArrayList<>();
+                        entries.put(entry.getBuildNumber(), buildEntries);
+                    }
+                    buildEntries.add(entry);
+                } catch (NumberFormatException e) {
+                    logger.log(Level.FINE, "Ignoring invalid line of " + file + ": " + line, e);
+                }
+            }
+        } catch (FileNotFoundException e) {
+            return null;
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Unable to read " + file, e);
+            return null;
+        }
+        lineCount = lines;
+        return entries;
+    }
+
+    /**
+     * Reads the entries of the completed builds of the job to create the index, this loads every build once
+     */
+    private Map<Integer, List<Entry>> readBuilds() {
+        Map<Integer, List<Entry>> entries = new TreeMap<>(Collections.reverseOrder());
+        for (Run<?, ?> run = getJob().getLastCompletedBuild(); run != null; run = run.getPreviousBuild()) {
+            List<Entry> buildEntries = getEntries(run);
+            if (!buildEntries.isEmpty()) {
+                entries.put(run.getNumber(), buildEntries);
+            }
+        }
+        return entries;
+    }
+
+    private void write(Map<Integer, List<Entry>> entries) {
+        File file = getFile();
+        File tempFile = new File(file.getPath() + ".tmp");
+        List<Integer> buildNumbers = new ArrayList<>(entries.keySet());
+        Collections.reverse(buildNumbers);
+        try {
+            try (Writer writer = new OutputStreamWriter(new FileOutputStream(tempFile), StandardCharsets.UTF_8)) {
+                for (Integer buildNumber : buildNumbers) {
+                    for (Entry entry : entries.get(buildNumber)) {
+                        writer.write(entry.toLine());
+                        writer.write('\n');
+                    }
+                }
+            }
+            if (file.exists() && !file.delete() || !tempFile.renameTo(file)) {
+                throw new IOException("Unable to replace " + file);
+            }
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Unable to write " + file, e);
+            tempFile.delete();
+        }
+    }
+
+    private void append(List<String> lines) {
+        File file = getFile();
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(file, true), StandardCharsets.UTF_8)) {
+            for (String line : lines) {
+                writer.write(line);
+                writer.write('\n');
+            }
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Unable to write " + file, e);
+        }
+    }
+
+    private static int countEntries(Map<Integer, List<Entry>> entries) {
+        int count = 0;
+        for (List<Entry> buildEntries : entries.values()) {
+            count += buildEntries.size();
+        }
+        return count;
+    }
+}
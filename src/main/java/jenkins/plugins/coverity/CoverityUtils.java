@@ -20,6 +20,7 @@ import hudson.util.ArgumentListBuilder;
 
 import org.apache.commons.lang.StringUtils;
 import org.apache.commons.lang.Validate;
+import org.kohsuke.stapler.StaplerRequest;
 
 import java.io.*;
 import java.util.*;
@@ -424,4 +425,17 @@ public class CoverityUtils {
 
         return files;
     }
-}
\ No newline at end of file
+
+    /**
+     * Returns the integer request parameter within the bounds, or the default value if the parameter is missing or
+     * not a number
+     */
+    public static int getIntParameter(StaplerRequest req, String name, int defaultValue, int min, int max) {
+        try {
+            final String value = req.getParameter(name);
+            return value != null ? Math.max(min, Math.min(max, Integer.parseInt(value))) : defaultValue;
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+}
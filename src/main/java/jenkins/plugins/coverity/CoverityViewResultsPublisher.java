@@ -75,13 +75,13 @@ public class CoverityViewResultsPublisher extends Recorder implements SimpleBuil
         try {
             ViewIssuesReader reader = new ViewIssuesReader(run, listener.getLogger(), this);
             final CoverityBuildAction buildAction = reader.getIssuesFromConnectView();
-            if (abortPipeline && buildAction.getDefects().size() > 0) {
+            if (abortPipeline && buildAction.getDefectCount() > 0) {
                 logger.println("[Coverity] Coverity issues were found and abortPipeline was set to true, throwing abort exception.");
                 throw new AbortException("Coverity issues were found");
-            } else if (failPipeline && buildAction.getDefects().size() > 0) {
+            } else if (failPipeline && buildAction.getDefectCount() > 0) {
                 logger.println("[Coverity] Coverity issues were found and failPipeline was set to true, the pipeline result will be marked as FAILURE.");
                 run.setResult(Result.FAILURE);
-            } else if (unstable && buildAction.getDefects().size() > 0) {
+            } else if (unstable && buildAction.getDefectCount() > 0) {
                 logger.println("[Coverity] Coverity issues were found and unstable was set to true, the pipeline result will be marked as UNSTABLE.");
                 run.setResult(Result.UNSTABLE);
             }
@@ -0,0 +1,132 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Synopsys, Inc
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Synopsys, Inc - initial implementation and documentation
+ *******************************************************************************/
+package jenkins.plugins.coverity;
+
+import java.util.Collections;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.lang.StringUtils;
+
+import com.cloudbees.plugins.credentials.CredentialsMatchers;
+import com.cloudbees.plugins.credentials.CredentialsProvider;
+import com.cloudbees.plugins.credentials.SystemCredentialsProvider;
+import com.cloudbees.plugins.credentials.common.StandardCredentials;
+import com.cloudbees.plugins.credentials.domains.DomainRequirement;
+
+import hudson.Extension;
+import hudson.XmlFile;
+import hudson.model.Saveable;
+import hudson.model.listeners.SaveableListener;
+import hudson.security.ACL;
+import jenkins.model.Jenkins;
+
+/**
+ * Cache of the credentials used by {@link CIMInstance}s, by credential id. Looking up a credential goes through every
+ * credential configured in Jenkins, which is expensive with many credentials and is needed several times per build.
+ *
+ * The cache is cleared whenever the system credentials are saved. As a safety net for credential stores which do not
+ * notify about changes, entries also expire after a time to live (in seconds) which can be set with the system
+ * property {@code jenkins.plugins.coverity.CredentialsCache.ttl}, a value of 0 disables the cache.
+ */
+public final class CredentialsCache {
+    public static final long DEFAULT_TTL_SECONDS = 300;
+
+    private static final CredentialsCache instance = new CredentialsCache();
+
+    private final ConcurrentMap<String, CachedCredentials> credentials;
+    private final AtomicLong generation;
+    private final long ttlMillis;
+
+    private CredentialsCache() {
+        this.credentials = new ConcurrentHashMap<>();
+        this.generation = new AtomicLong();
+        this.ttlMillis = TimeUnit.SECONDS.toMillis(Long.getLong(CredentialsCache.class.getName() + ".ttl", DEFAULT_TTL_SECONDS));
+    }
+
+    public static CredentialsCache getInstance() {
+        return instance;
+    }
+
+    /**
+     * Returns the credentials with the given id, or null if there are none
+     */
+    public StandardCredentials getCredentials(String credentialId) {
+        if (StringUtils.isEmpty(credentialId)) {
+            return null;
+        }
+
+        final long now = System.currentTimeMillis();
+        final CachedCredentials cached = credentials.get(credentialId);
+        if (cached != null && cached.expires > now) {
+            return cached.credentials;
+        }
+
+        // remember the generation, so that credentials looked up while the cache gets cleared are not cached
+        final long lookupGeneration = generation.get();
+        final StandardCredentials result = lookupCredentials(credentialId);
+        if (result != null && ttlMillis > 0) {
+            credentials.put(credentialId, new CachedCredentials(result, now + ttlMillis));
+            if (generation.get() != lookupGeneration) {
+                credentials.remove(credentialId);
+            }
+        } else if (cached != null) {
+            credentials.remove(credentialId, cached);
+        }
+        return result;
+    }
+
+    /**
+     * Looks up the credentials with the given id without using the cache
+     */
+    public static StandardCredentials lookupCredentials(String credentialId) {
+        if (StringUtils.isNotEmpty(credentialId)) {
+            return CredentialsMatchers.firstOrNull(
+                    CredentialsProvider.lookupCredentials(
+                            StandardCredentials.class, Jenkins.getInstance(), ACL.SYSTEM, Collections.<DomainRequirement>emptyList()
+                    ), CredentialsMatchers.withId(credentialId)
+            );
+        }
+
+        return null;
+    }
+
+    public void invalidateAll() {
+        generation.incrementAndGet();
+        credentials.clear();
+    }
+
+    private static class CachedCredentials {
+        private final StandardCredentials credentials;
+        private final long expires;
+
+        CachedCredentials(StandardCredentials credentials, long expires) {
+            this.credentials = credentials;
+            this.expires = expires;
+        }
+    }
+
+    /**
+     * Clears the cache when credentials are added, changed or removed
+     */
+    @Extension
+    public static class CredentialsChangeListener extends SaveableListener {
+        @Override
+        public void onChange(Saveable o, XmlFile file) {
+            if (o instanceof SystemCredentialsProvider
+                || (file != null && "credentials.xml".equals(file.getFile().getName()))) {
+                CredentialsCache.getInstance().invalidateAll();
+            }
+        }
+    }
+}
@@ -0,0 +1,245 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Synopsys, Inc
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Synopsys, Inc - initial implementation and documentation
+ *******************************************************************************/
+package jenkins.plugins.coverity;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * The defects of a build compared to the defects of the previous build: the CIDs which are new, the CIDs which were
+ * fixed and the number of defects which persist. CIDs are compared as sorted arrays of primitive longs, which takes
+ * a few milliseconds for streams with 100k defects.
+ *
+ * The CIDs are written in a compact binary format, the differences between consecutive CIDs as variable length
+ * integers:
+ *
+ * <pre>
+ * version (byte) persisting count
+ * new CID count, new CIDs
+ * fixed CID count, fixed CIDs
+ * </pre>
+ */
+public class DefectDiff {
+    private static final long[] NO_CIDS = new long[0];
+    private static final int VERSION = 1;
+
+    private final long[] newCids;
+    private final long[] fixedCids;
+    private final int persistingCount;
+
+    public DefectDiff(long[] newCids, long[] fixedCids, int persistingCount) {
+        this.newCids = newCids;
+        this.fixedCids = fixedCids;
+        this.persistingCount = persistingCount;
+    }
+
+    /**
+     * Compares the sorted CIDs of two builds
+     */
+    public static DefectDiff compare(long[] previousCids, long[] currentCids) {
+        long[] newCids = new long[currentCids.length];
+        long[] fixedCids = new long[previousCids.length];
+        int newCount = 0;
+        int fixedCount = 0;
+        int persistingCount = 0;
+
+        int previous = 0;
+        int current = 0;
+        while (previous < previousCids.length && current < currentCids.length) {
+            if (previousCids[previous] == currentCids[current]) {
+                persistingCount++;
+                previous++;
+                current++;
+            } else if (previousCids[previous] < currentCids[current]) {
+                fixedCids[fixedCount++] = previousCids[previous++];
+            } else {
+                newCids[newCount++] = currentCids[current++];
+            }
+        }
+        while (previous < previousCids.length) {
+            fixedCids[fixedCount++] = previousCids[previous++];
+        }
+        while (current < currentCids.length) {
+            newCids[newCount++] = currentCids[current++];
+        }
+
+        return new DefectDiff(Arrays.copyOf(newCids, newCount), Arrays.copyOf(fixedCids, fixedCount), persistingCount);
+    }
+
+    /**
+     * Returns the distinct CIDs of the defects, sorted
+     */
+    public static long[] getCids(Collection<CoverityDefect> defects) {
+        CidCollector collector = new CidCollector(defects.size());
+        for (CoverityDefect defect : defects) {
+            collector.defect(defect);
+        }
+        return collector.getCids();
+    }
+
+    /**
+     * Returns the distinct CIDs of the defects of a build, sorted. The defects are read one at a time if they are not
+     * in memory.
+     */
+    public static long[] getCids(CoverityBuildAction action) throws IOException {
+        CidCollector collector = new CidCollector(action.getDefectCount());
+        action.forEachDefect(collector);
+        return collector.getCids();
+    }
+
+    private static class CidCollector implements CoverityDefectsFile.DefectHandler {
+        private long[] cids;
+        private int count;
+
+        CidCollector(int expectedCount) {
+            cids = new long[Math.max(expectedCount, 16)];
+        }
+
+        public void defect(CoverityDefect defect) {
+            if (defect.getCid() == null) {
+                return;
+            }
+            if (count == cids.length) {
+                cids = Arrays.copyOf(cids, count * 2);
+            }
+            cids[count++] = defect.getCid();
+        }
+
+        long[] getCids() {
+            if (count == 0) {
+                return NO_CIDS;
+            }
+
+            Arrays.sort(cids, 0, count);
+            int distinct = 1;
+            for (int i = 1; i < count; i++) {
+                if (cids[i] != cids[distinct - 1]) {
+                    cids[distinct++] = cids[i];
+                }
+            }
+            return Arrays.copyOf(cids, distinct);
+        }
+    }
+
+    /**
+     * Writes the CIDs to the stream, without closing it
+     */
+    public void write(OutputStream stream) throws IOException {
+        DataOutputStream out = new DataOutputStream(stream);
+        out.writeByte(VERSION);
+        CoverityDefectsFile.writeVarLong(out, persistingCount);
+        writeCids(out, newCids);
+        writeCids(out, fixedCids);
+        out.flush();
+    }
+
+    /**
+     * Reads CIDs written by {@link #write(OutputStream)}, without closing the stream
+     */
+    public static DefectDiff read(InputStream stream) throws IOException {
+        DataInputStream in = new DataInputStream(stream);
+        int version = in.readUnsignedByte();
+        if (version != VERSION) {
+            throw new IOException("Unsupported Coverity defect diff version " + version);
+        }
+        long persistingCount = CoverityDefectsFile.readVarLong(in);
+        if (persistingCount > Integer.MAX_VALUE) {
+            throw new IOException("Invalid persisting count " + persistingCount);
+        }
+        long[] newCids = readCids(in);
+        long[] fixedCids = readCids(in);
+        return new DefectDiff(newCids, fixedCids, (int)persistingCount);
+    }
+
+    /**
+     * Writes sorted CIDs as the differences between consecutive CIDs
+     */
+    static void writeCids(DataOutputStream out, long[] cids) throws IOException {
+        CoverityDefectsFile.writeVarLong(out, cids.length);
+        long previous = 0;
+        for (long cid : cids) {
+            CoverityDefectsFile.writeVarLong(out, cid - previous);
+            previous = cid;
+        }
+    }
+
+    static long[] readCids(DataInputStream in) throws IOException {
+        final long count = CoverityDefectsFile.readVarLong(in);
+        if (count > Integer.MAX_VALUE) {
+            throw new IOException("Invalid CID count " + count);
+        }
+        final long[] cids = new long[(int)count];
+        long previous = 0;
+        for (int i = 0; i < cids.length; i++) {
+            previous += CoverityDefectsFile.readVarLong(in);
+            cids[i] = previous;
+        }
+        return cids;
+    }
+
+    public long[] getNewCids() {
+        return newCids.clone();
+    }
+
+    public long[] getFixedCids() {
+        return fixedCids.clone();
+    }
+
+    /**
+     * The first new CIDs as text, for example "10001, 10002, ..."
+     */
+    public String getNewCidsText(int limit) {
+        return toText(newCids, limit);
+    }
+
+    public String getFixedCidsText(int limit) {
+        return toText(fixedCids, limit);
+    }
+
+    private static String toText(long[] cids, int limit) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < Math.min(limit, cids.length); i++) {
+            if (i > 0) {
+                text.append(", ");
+            }
+            text.append(cids[i]);
+        }
+        if (cids.length > limit) {
+            text.append(", ...");
+        }
+        return text.toString();
+    }
+
+    public boolean isNew(long cid) {
+        return Arrays.binarySearch(newCids, cid) >= 0;
+    }
+
+    public boolean isFixed(long cid) {
+        return Arrays.binarySearch(fixedCids, cid) >= 0;
+    }
+
+    public int getNewCount() {
+        return newCids.length;
+    }
+
+    public int getFixedCount() {
+        return fixedCids.length;
+    }
+
+    public int getPersistingCount() {
+        return persistingCount;
+    }
+}
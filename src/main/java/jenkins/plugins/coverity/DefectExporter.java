@@ -0,0 +1,238 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Synopsys, Inc
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Synopsys, Inc - initial implementation and documentation
+ *******************************************************************************/
+package jenkins.plugins.coverity;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Locale;
+
+import org.apache.commons.lang.StringUtils;
+
+import net.sf.json.util.JSONUtils;
+
+/**
+ * Writes the defects of a build in an export format while they are read, so that exporting a build does not create
+ * the whole document in memory.
+ */
+public abstract class DefectExporter implements CoverityDefectsFile.DefectHandler {
+    public enum Format {
+        JSON("application/json;charset=UTF-8", "json"),
+        CSV("text/csv;charset=UTF-8", "csv"),
+        SARIF("application/sarif+json;charset=UTF-8", "sarif");
+
+        private final String contentType;
+        private final String extension;
+
+        Format(String contentType, String extension) {
+            this.contentType = contentType;
+            this.extension = extension;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+
+        public String getExtension() {
+            return extension;
+        }
+
+        /**
+         * Returns the format with the name, ignoring case, or null if there is no such format
+         */
+        public static Format fromName(String name) {
+            for (Format format : values()) {
+                if (format.name().equalsIgnoreCase(name)) {
+                    return format;
+                }
+            }
+            return null;
+        }
+    }
+
+    protected final Writer writer;
+    protected final CoverityBuildAction action;
+    protected final String urlPrefix;
+    protected long count;
+
+    protected DefectExporter(Writer writer, CoverityBuildAction action, String urlPrefix) {
+        this.writer = writer;
+        this.action = action;
+        this.urlPrefix = StringUtils.defaultString(urlPrefix);
+    }
+
+    public static DefectExporter create(Format format, Writer writer, CoverityBuildAction action, String urlPrefix) {
+        switch (format) {
+            case CSV:
+                return new CsvExporter(writer, action, urlPrefix);
+            case SARIF:
+                return new SarifExporter(writer, action, urlPrefix);
+            default:
+                return new JsonExporter(writer, action, urlPrefix);
+        }
+    }
+
+    /**
+     * Writes everything before the first defect
+     */
+    public abstract void start() throws IOException;
+
+    public void defect(CoverityDefect defect) throws IOException {
+        writeDefect(defect);
+        count++;
+    }
+
+    protected abstract void writeDefect(CoverityDefect defect) throws IOException;
+
+    /**
+     * Writes everything after the last defect and flushes the writer
+     */
+    public void finish() throws IOException {
+        writeEnd();
+        writer.flush();
+    }
+
+    protected abstract void writeEnd() throws IOException;
+
+    protected String getUrl(CoverityDefect defect) {
+        return urlPrefix.isEmpty() || defect.getCid() == null ? StringUtils.EMPTY : urlPrefix + defect.getCid();
+    }
+
+    protected static String quote(String value) {
+        return JSONUtils.quote(StringUtils.defaultString(value));
+    }
+
+    private static class JsonExporter extends DefectExporter {
+        JsonExporter(Writer writer, CoverityBuildAction action, String urlPrefix) {
+            super(writer, action, urlPrefix);
+        }
+
+        @Override
+        public void start() throws IOException {
+            writer.write("{\"cimInstance\":" + quote(action.getCimInstance()) +
+                ",\"project\":" + quote(action.getProjectId()) +
+                ",\"stream\":" + quote(action.getStreamId()) +
+                ",\"defects\":[");
+        }
+
+        @Override
+        protected void writeDefect(CoverityDefect defect) throws IOException {
+            writer.write((count > 0 ? ",\n" : "\n") +
+                "{\"cid\":" + defect.getCid() +
+                ",\"checker\":" + quote(defect.getCheckerName()) +
+                ",\"function\":" + quote(defect.getFunctionDisplayName()) +
+                ",\"file\":" + quote(defect.getFilePathname()) +
+                ",\"url\":" + quote(getUrl(defect)) + "}");
+        }
+
+        @Override
+        protected void writeEnd() throws IOException {
+            writer.write("\n]}\n");
+        }
+    }
+
+    private static class CsvExporter extends DefectExporter {
+        CsvExporter(Writer writer, CoverityBuildAction action, String urlPrefix) {
+            super(writer, action, urlPrefix);
+        }
+
+        @Override
+        public void start() throws IOException {
+            writer.write("CID,Checker,Function,File,URL\r\n");
+        }
+
+        @Override
+        protected void writeDefect(CoverityDefect defect) throws IOException {
+            writer.write(defect.getCid() != null ? defect.getCid().toString() : StringUtils.EMPTY);
+            writer.write(',');
+            writer.write(escape(defect.getCheckerName()));
+            writer.write(',');
+            writer.write(escape(defect.getFunctionDisplayName()));
+            writer.write(',');
+            writer.write(escape(defect.getFilePathname()));
+            writer.write(',');
+            writer.write(escape(getUrl(defect)));
+            writer.write("\r\n");
+        }
+
+        @Override
+        protected void writeEnd() {
+        }
+
+        private static String escape(String value) {
+            if (value == null) {
+                return StringUtils.EMPTY;
+            }
+            if (StringUtils.containsNone(value, ",\"\r\n")) {
+                return value;
+            }
+            return '"' + value.replace("\"", "\"\"") + '"';
+        }
+    }
+
+    /**
+     * Writes the defects as results of a SARIF 2.1.0 log, with the checker as rule and the CID as fingerprint
+     */
+    private static class SarifExporter extends DefectExporter {
+        SarifExporter(Writer writer, CoverityBuildAction action, String urlPrefix) {
+            super(writer, action, urlPrefix);
+        }
+
+        @Override
+        public void start() throws IOException {
+            writer.write("{\"$schema\":\"https://json.schemastore.org/sarif-2.1.0.json\",\"version\":\"2.1.0\"," +
+                "\"runs\":[{\"tool\":{\"driver\":{\"name\":\"Coverity\"}}," +
+                "\"automationDetails\":{\"id\":" + quote(action.getProjectId() + "/" + action.getStreamId() + "/") + "}," +
+                "\"results\":[");
+        }
+
+        @Override
+        protected void writeDefect(CoverityDefect defect) throws IOException {
+            final String checker = StringUtils.defaultIfEmpty(defect.getCheckerName(), "unknown");
+            final StringBuilder result = new StringBuilder(count > 0 ? ",\n" : "\n");
+            result.append("{\"ruleId\":").append(quote(checker))
+                .append(",\"level\":\"warning\"")
+                .append(",\"message\":{\"text\":").append(quote(getMessage(checker, defect))).append('}');
+            if (StringUtils.isNotEmpty(defect.getFilePathname()) || StringUtils.isNotEmpty(defect.getFunctionDisplayName())) {
+                result.append(",\"locations\":[{");
+                if (StringUtils.isNotEmpty(defect.getFilePathname())) {
+                    result.append("\"physicalLocation\":{\"artifactLocation\":{\"uri\":").append(quote(defect.getFilePathname())).append("}}");
+                }
+                if (StringUtils.isNotEmpty(defect.getFunctionDisplayName())) {
+                    if (StringUtils.isNotEmpty(defect.getFilePathname())) {
+                        result.append(',');
+                    }
+                    result.append("\"logicalLocations\":[{\"fullyQualifiedName\":").append(quote(defect.getFunctionDisplayName())).append("}]");
+                }
+                result.append("}]");
+            }
+            if (defect.getCid() != null) {
+                result.append(",\"partialFingerprints\":{\"coverityCid\":").append(quote(defect.getCid().toString())).append('}');
+            }
+            final String url = getUrl(defect);
+            if (!url.isEmpty()) {
+                result.append(",\"hostedViewerUri\":").append(quote(url));
+            }
+            result.append('}');
+            writer.write(result.toString());
+        }
+
+        private static String getMessage(String checker, CoverityDefect defect) {
+            return StringUtils.isNotEmpty(defect.getFunctionDisplayName()) ?
+                String.format(Locale.ENGLISH, "%s defect (CID %s) in %s", checker, defect.getCid(), defect.getFunctionDisplayName()) :
+                String.format(Locale.ENGLISH, "%s defect (CID %s)", checker, defect.getCid());
+        }
+
+        @Override
+        protected void writeEnd() throws IOException {
+            writer.write("\n]}]}\n");
+        }
+    }
+}
@@ -19,6 +19,7 @@ import java.util.GregorianCalendar;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeSet;
 
 import javax.xml.datatype.DatatypeFactory;
 import javax.xml.datatype.XMLGregorianCalendar;
@@ -27,6 +28,7 @@ import org.kohsuke.stapler.DataBoundConstructor;
 
 import com.coverity.ws.v9.ComponentIdDataObj;
 import com.coverity.ws.v9.MergedDefectFilterSpecDataObj;
+import com.coverity.ws.v9.SnapshotScopeDefectFilterSpecDataObj;
 
 import hudson.Util;
 import hudson.model.Descriptor;
@@ -267,4 +269,67 @@ public class DefectFilters {
         }
         return filterSpecDataObj;
     }
+
+    /**
+     * Converts the filters to a filter for defects in a snapshot scope, which are used to compare snapshots
+     */
+    public SnapshotScopeDefectFilterSpecDataObj ToSnapshotScopeFilterSpecDataObj(){
+        SnapshotScopeDefectFilterSpecDataObj filterSpecDataObj = new SnapshotScopeDefectFilterSpecDataObj();
+        if (actions != null && actions.size() > 0) {
+            filterSpecDataObj.getActionNameList().addAll(actions);
+        }
+
+        if (classifications != null && classifications.size() > 0) {
+            filterSpecDataObj.getClassificationNameList().addAll(classifications);
+        }
+
+        if (severities != null && severities.size() > 0) {
+            filterSpecDataObj.getSeverityNameList().addAll(severities);
+        }
+
+        if (impacts != null && impacts.size() > 0) {
+            filterSpecDataObj.getImpactNameList().addAll(impacts);
+        }
+
+        if (components != null){
+            for (String component : components) {
+                ComponentIdDataObj componentIdDataObj = new ComponentIdDataObj();
+                componentIdDataObj.setName(component);
+                filterSpecDataObj.getComponentIdList().add(componentIdDataObj);
+            }
+        }
+
+        if (checkers != null){
+            filterSpecDataObj.getCheckerList().addAll(checkers);
+        }
+        XMLGregorianCalendar xmlCutOffDate = getXMLCutOffDate();
+        if (xmlCutOffDate != null) {
+            filterSpecDataObj.setFirstDetectedStartDate(xmlCutOffDate);
+        }
+        return filterSpecDataObj;
+    }
+
+    /**
+     * Returns a key which is equal for filters that select the same defects, regardless of the order of the selected
+     * values. Used to tell whether defects read with other filters (for example by a previous build) can be reused.
+     */
+    public String getFilterKey(){
+        StringBuilder key = new StringBuilder();
+        appendFilterKey(key, "actions", actions);
+        appendFilterKey(key, "classifications", classifications);
+        appendFilterKey(key, "severities", severities);
+        appendFilterKey(key, "impacts", impacts);
+        appendFilterKey(key, "components", components);
+        appendFilterKey(key, "checkers", checkers);
+        key.append("cutOffDate=").append(getCutOffDate());
+        return Util.getDigestOf(key.toString());
+    }
+
+    private static void appendFilterKey(StringBuilder key, String name, List<String> values) {
+        key.append(name).append('=');
+        if (values != null) {
+            key.append(new TreeSet<>(values));
+        }
+        key.append(';');
+    }
 }
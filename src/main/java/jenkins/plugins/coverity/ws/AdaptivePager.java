@@ -0,0 +1,145 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Synopsys, Inc
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Synopsys, Inc - initial implementation and documentation
+ *******************************************************************************/
+package jenkins.plugins.coverity.ws;
+
+/**
+ * Chooses the page size for paged requests (defects and view contents) to one Coverity Connect instance, based on the
+ * response times and payload sizes of previous pages. Pages grow when the instance answers quickly, which saves round
+ * trips to instances with a high latency, and shrink when pages are slow, large or fail, for example because of read
+ * timeouts on a loaded instance.
+ *
+ * The page size aims at a target response time and a maximum payload size per page, and changes by at most a factor
+ * of two per page. Pages with fewer rows than requested (the last page) do not count for the response time, their
+ * time is mostly the fixed latency of a request and would make rows look slower than they are. The bounds can be changed with the system properties (prefixed with
+ * {@code jenkins.plugins.coverity.ws.AdaptivePager.}) {@code initialPageSize}, {@code minPageSize}, {@code maxPageSize},
+ * {@code targetResponseTime} (in milliseconds) and {@code maxPageBytes}.
+ */
+public class AdaptivePager {
+    public static final int DEFAULT_INITIAL_PAGE_SIZE = 1000;
+    public static final int DEFAULT_MIN_PAGE_SIZE = 100;
+    public static final int DEFAULT_MAX_PAGE_SIZE = 5000;
+    public static final long DEFAULT_TARGET_RESPONSE_TIME_MILLIS = 5000;
+    public static final long DEFAULT_MAX_PAGE_BYTES = 8 * 1024 * 1024;
+
+    // weight of the last page in the averages, older pages still count so that a single outlier has little effect
+    private static final double SMOOTHING = 0.5;
+
+    private final int minPageSize;
+    private final int maxPageSize;
+    private final long targetResponseTimeMillis;
+    private final long maxPageBytes;
+
+    private int pageSize;
+    private double millisPerRow = -1;
+    private double bytesPerRow = -1;
+    private long pageCount;
+    private long failureCount;
+
+    public AdaptivePager() {
+        this(Integer.getInteger(AdaptivePager.class.getName() + ".initialPageSize", DEFAULT_INITIAL_PAGE_SIZE),
+            Integer.getInteger(AdaptivePager.class.getName() + ".minPageSize", DEFAULT_MIN_PAGE_SIZE),
+            Integer.getInteger(AdaptivePager.class.getName() + ".maxPageSize", DEFAULT_MAX_PAGE_SIZE),
+            Long.getLong(AdaptivePager.class.getName() + ".targetResponseTime", DEFAULT_TARGET_RESPONSE_TIME_MILLIS),
+            Long.getLong(AdaptivePager.class.getName() + ".maxPageBytes", DEFAULT_MAX_PAGE_BYTES));
+    }
+
+    public AdaptivePager(int initialPageSize, int minPageSize, int maxPageSize, long targetResponseTimeMillis, long maxPageBytes) {
+        this.minPageSize = Math.max(1, minPageSize);
+        this.maxPageSize = Math.max(this.minPageSize, maxPageSize);
+        this.targetResponseTimeMillis = targetResponseTimeMillis;
+        this.maxPageBytes = maxPageBytes;
+        this.pageSize = clamp(initialPageSize);
+    }
+
+    /**
+     * The number of rows to request with the next page
+     */
+    public synchronized int getPageSize() {
+        return pageSize;
+    }
+
+    /**
+     * Records a page which was received successfully.
+     *
+     * @param requestedRows the page size of the request
+     * @param rows the number of rows in the page
+     * @param elapsedMillis the time from sending the request until the page was received
+     * @param payloadBytes the size of the response, or a negative value if unknown
+     */
+    public synchronized void recordPage(int requestedRows, int rows, long elapsedMillis, long payloadBytes) {
+        pageCount++;
+        if (rows <= 0) {
+            return;
+        }
+
+        if (rows >= requestedRows) {
+            millisPerRow = average(millisPerRow, (double)Math.max(elapsedMillis, 1) / rows);
+        }
+        if (payloadBytes >= 0) {
+            bytesPerRow = average(bytesPerRow, (double)payloadBytes / rows);
+        }
+        if (millisPerRow < 0 && bytesPerRow < 0) {
+            return;
+        }
+
+        double size = millisPerRow > 0 ? targetResponseTimeMillis / millisPerRow : maxPageSize;
+        if (bytesPerRow > 0) {
+            size = Math.min(size, maxPageBytes / bytesPerRow);
+        }
+        size = Math.max(pageSize / 2.0, Math.min(pageSize * 2.0, size));
+        pageSize = clamp((int)size);
+    }
+
+    /**
+     * Records a page which could not be read, the page size is halved
+     */
+    public synchronized void recordFailure() {
+        failureCount++;
+        pageSize = clamp(pageSize / 2);
+    }
+
+    private static double average(double average, double value) {
+        return average < 0 ? value : SMOOTHING * value + (1 - SMOOTHING) * average;
+    }
+
+    private int clamp(int size) {
+        return Math.max(minPageSize, Math.min(maxPageSize, size));
+    }
+
+    public int getMinPageSize() {
+        return minPageSize;
+    }
+
+    public int getMaxPageSize() {
+        return maxPageSize;
+    }
+
+    public synchronized long getPageCount() {
+        return pageCount;
+    }
+
+    public synchronized long getFailureCount() {
+        return failureCount;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "Adaptive pager: {" +
+            " PageSize=" + pageSize +
+            ", Min=" + minPageSize +
+            ", Max=" + maxPageSize +
+            ", Pages=" + pageCount +
+            ", Failures=" + failureCount +
+            ", MillisPerRow=" + millisPerRow +
+            ", BytesPerRow=" + bytesPerRow +
+            '}';
+    }
+}
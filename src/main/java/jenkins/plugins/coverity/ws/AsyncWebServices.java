@@ -0,0 +1,132 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Synopsys, Inc
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Synopsys, Inc - initial implementation and documentation
+ *******************************************************************************/
+package jenkins.plugins.coverity.ws;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+import com.coverity.ws.v9.DefectService;
+import com.coverity.ws.v9.MergedDefectFilterSpecDataObj;
+import com.coverity.ws.v9.MergedDefectsPageDataObj;
+import com.coverity.ws.v9.PageSpecDataObj;
+import com.coverity.ws.v9.ProjectDataObj;
+import com.coverity.ws.v9.ProjectFilterSpecDataObj;
+import com.coverity.ws.v9.ProjectIdDataObj;
+import com.coverity.ws.v9.SnapshotFilterSpecDataObj;
+import com.coverity.ws.v9.SnapshotIdDataObj;
+import com.coverity.ws.v9.SnapshotScopeDefectFilterSpecDataObj;
+import com.coverity.ws.v9.SnapshotScopeSpecDataObj;
+import com.coverity.ws.v9.StreamDataObj;
+import com.coverity.ws.v9.StreamFilterSpecDataObj;
+import com.coverity.ws.v9.StreamIdDataObj;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+
+import jenkins.plugins.coverity.CIMInstance;
+
+/**
+ * Non-blocking access to the v9 Defect and Configuration services of a Coverity Connect instance. Each call runs on
+ * the shared web service executor of the {@link WebServiceFactory} and returns a future for the result, so callers
+ * can request several pages or run independent lookups at the same time. The number of requests that actually reach
+ * the instance at once is still limited by its {@link ConnectionPool}.
+ *
+ * A failed call completes its future with the exception thrown by the service (for example a
+ * {@link com.coverity.ws.v9.CovRemoteServiceException_Exception}) and forces a new health check of the instance.
+ */
+public class AsyncWebServices {
+    private final WebServiceFactory factory;
+    private final CIMInstance cimInstance;
+    private final ListeningExecutorService executor;
+
+    AsyncWebServices(WebServiceFactory factory, CIMInstance cimInstance, ListeningExecutorService executor) {
+        this.factory = factory;
+        this.cimInstance = cimInstance;
+        this.executor = executor;
+    }
+
+    public ListenableFuture<MergedDefectsPageDataObj> getMergedDefectsForStreams(final List<StreamIdDataObj> streamIds,
+                                                                                 final MergedDefectFilterSpecDataObj filterSpec,
+                                                                                 final PageSpecDataObj pageSpec,
+                                                                                 final SnapshotScopeSpecDataObj snapshotScope) {
+        return submit(new Callable<MergedDefectsPageDataObj>() {
+            public MergedDefectsPageDataObj call() throws Exception {
+                return factory.getDefectService(cimInstance).getMergedDefectsForStreams(streamIds, filterSpec, pageSpec, snapshotScope);
+            }
+        });
+    }
+
+    public ListenableFuture<MergedDefectsPageDataObj> getMergedDefectsForSnapshotScope(final ProjectIdDataObj projectId,
+                                                                                       final SnapshotScopeDefectFilterSpecDataObj filterSpec,
+                                                                                       final PageSpecDataObj pageSpec,
+                                                                                       final SnapshotScopeSpecDataObj snapshotScope) {
+        return submit(new Callable<MergedDefectsPageDataObj>() {
+            public MergedDefectsPageDataObj call() throws Exception {
+                return factory.getDefectService(cimInstance).getMergedDefectsForSnapshotScope(projectId, filterSpec, pageSpec, snapshotScope);
+            }
+        });
+    }
+
+    public ListenableFuture<List<StreamDataObj>> getStreams(final StreamFilterSpecDataObj filterSpec) {
+        return submit(new Callable<List<StreamDataObj>>() {
+            public List<StreamDataObj> call() throws Exception {
+                return factory.getConfigurationService(cimInstance).getStreams(filterSpec);
+            }
+        });
+    }
+
+    public ListenableFuture<List<ProjectDataObj>> getProjects(final ProjectFilterSpecDataObj filterSpec) {
+        return submit(new Callable<List<ProjectDataObj>>() {
+            public List<ProjectDataObj> call() throws Exception {
+                return factory.getConfigurationService(cimInstance).getProjects(filterSpec);
+            }
+        });
+    }
+
+    public ListenableFuture<List<SnapshotIdDataObj>> getSnapshotsForStream(final StreamIdDataObj streamId,
+                                                                       final SnapshotFilterSpecDataObj filterSpec) {
+        return submit(new Callable<List<SnapshotIdDataObj>>() {
+            public List<SnapshotIdDataObj> call() throws Exception {
+                return factory.getConfigurationService(cimInstance).getSnapshotsForStream(streamId, filterSpec);
+            }
+        });
+    }
+
+    /**
+     * The pager which chooses the page size for paged requests
+     */
+    public AdaptivePager getPager() {
+        return factory.getPager(cimInstance);
+    }
+
+    /**
+     * The Defect service of the instance, for calls made by tasks passed to {@link #submit(Callable)}
+     */
+    DefectService getDefectService() throws IOException {
+        return factory.getDefectService(cimInstance);
+    }
+
+    /**
+     * Runs the call on the web service executor. A call which fails forces a new health check of the instance.
+     */
+    <T> ListenableFuture<T> submit(final Callable<T> call) {
+        return executor.submit(new Callable<T>() {
+            public T call() throws Exception {
+                try {
+                    return call.call();
+                } catch (Exception e) {
+                    factory.invalidateConnection(cimInstance);
+                    throw e;
+                }
+            }
+        });
+    }
+}
@@ -104,8 +104,10 @@ public final class CimCache {
                 }
             } catch (IOException e) {
                 // ignore exceptions here (nothing will be cached in this case)
+                WebServiceFactory.getInstance().invalidateConnection(cimInstance);
             } catch (CovRemoteServiceException_Exception e) {
                 // ignore exceptions here (nothing will be cached in this case)
+                WebServiceFactory.getInstance().invalidateConnection(cimInstance);
             }
         }
 
@@ -13,8 +13,8 @@ package jenkins.plugins.coverity.ws;
 import jenkins.plugins.coverity.CIMInstance;
 
 import java.net.URL;
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Temporary cache of cim service url if the url is redirected to other url
@@ -24,7 +24,7 @@ public class CimServiceUrlCache {
     private final Map<CIMInstance, URL> serviceUrlMap;
 
     private CimServiceUrlCache(){
-        this.serviceUrlMap = new HashMap<>();
+        this.serviceUrlMap = new ConcurrentHashMap<>();
     }
 
     public static CimServiceUrlCache getInstance() {
@@ -40,20 +40,14 @@ public class CimServiceUrlCache {
     }
 
     public URL getURL(CIMInstance cimInstance){
-        return serviceUrlMap.containsKey(cimInstance) ? serviceUrlMap.get(cimInstance) : null;
+        return serviceUrlMap.get(cimInstance);
     }
 
     public void cacheURL(CIMInstance cimInstance, URL redirectedUrl){
-        synchronized (this){
-            serviceUrlMap.put(cimInstance, redirectedUrl);
-        }
+        serviceUrlMap.put(cimInstance, redirectedUrl);
     }
 
     public void removeURL(CIMInstance cimInstance){
-        synchronized (this){
-            if (serviceUrlMap.containsKey(cimInstance)){
-                serviceUrlMap.remove(cimInstance);
-            }
-        }
+        serviceUrlMap.remove(cimInstance);
     }
 }
@@ -0,0 +1,111 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Synopsys, Inc
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Synopsys, Inc - initial implementation and documentation
+ *******************************************************************************/
+package jenkins.plugins.coverity.ws;
+
+import static jenkins.plugins.coverity.ws.ClientAuthenticationHandlerWSS.WSS_AUTH_LNAME;
+import static jenkins.plugins.coverity.ws.ClientAuthenticationHandlerWSS.WSS_AUTH_PREFIX;
+import static jenkins.plugins.coverity.ws.ClientAuthenticationHandlerWSS.WSS_AUTH_URI;
+
+import javax.xml.namespace.QName;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.soap.SOAPEnvelope;
+import javax.xml.soap.SOAPException;
+import javax.xml.soap.SOAPHeader;
+import javax.xml.ws.handler.MessageContext;
+import javax.xml.ws.handler.soap.SOAPHandler;
+import javax.xml.ws.handler.soap.SOAPMessageContext;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+/**
+ * SOAP handler for user authentication using ws-security. Like {@link ClientAuthenticationHandlerWSS} it inserts the
+ * user's user name and password as a UsernameToken in the SOAP header of each message, but instead of running the
+ * XWSS processing pipeline for every message it builds the security header once and copies it into each message.
+ */
+public class ClientAuthenticationHeaderHandler implements SOAPHandler<SOAPMessageContext> {
+    public static final String PASSWORD_TEXT_TYPE = "http://docs.oasis-open.org/wss/2004/01/oasis-200401-wss-username-token-profile-1.0#PasswordText";
+    private static final String XMLNS_URI = "http://www.w3.org/2000/xmlns/";
+
+    private final Element securityHeader;
+
+    public ClientAuthenticationHeaderHandler(String userName, String password) {
+        try {
+            DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+            factory.setNamespaceAware(true);
+            Document document = factory.newDocumentBuilder().newDocument();
+
+            securityHeader = createElement(document, WSS_AUTH_LNAME);
+            securityHeader.setAttributeNS(XMLNS_URI, "xmlns:" + WSS_AUTH_PREFIX, WSS_AUTH_URI);
+
+            Element usernameToken = createElement(document, "UsernameToken");
+            securityHeader.appendChild(usernameToken);
+
+            Element username = createElement(document, "Username");
+            username.setTextContent(userName);
+            usernameToken.appendChild(username);
+
+            Element passwordElement = createElement(document, "Password");
+            passwordElement.setAttribute("Type", PASSWORD_TEXT_TYPE);
+            passwordElement.setTextContent(password);
+            usernameToken.appendChild(passwordElement);
+
+            document.appendChild(securityHeader);
+        } catch (ParserConfigurationException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static Element createElement(Document document, String localName) {
+        return document.createElementNS(WSS_AUTH_URI, WSS_AUTH_PREFIX + ":" + localName);
+    }
+
+    public boolean handleFault(SOAPMessageContext mc) {
+        return true;
+    }
+
+    public void close(MessageContext mc) {
+    }
+
+    public Set<QName> getHeaders() {
+        QName securityHeaderName = new QName(WSS_AUTH_URI, WSS_AUTH_LNAME, WSS_AUTH_PREFIX);
+        HashSet<QName> headers = new HashSet<QName>();
+        headers.add(securityHeaderName);
+        return headers;
+    }
+
+    public boolean handleMessage(SOAPMessageContext smc) {
+        boolean outbound = ((Boolean) smc.get(MessageContext.MESSAGE_OUTBOUND_PROPERTY)).booleanValue();
+        if(outbound) {
+            try {
+                SOAPEnvelope envelope = smc.getMessage().getSOAPPart().getEnvelope();
+                SOAPHeader header = envelope.getHeader();
+                if (header == null) {
+                    header = envelope.addHeader();
+                }
+
+                Element security;
+                // DOM implementations do not guarantee thread safe reads, and the handler is shared by all callers of a port
+                synchronized (securityHeader) {
+                    security = (Element) header.getOwnerDocument().importNode(securityHeader, true);
+                }
+                security.setAttributeNS(envelope.getNamespaceURI(), envelope.getPrefix() + ":mustUnderstand", "1");
+                header.appendChild(security);
+            } catch(SOAPException e) {
+                throw new RuntimeException(e);
+            }
+        }
+        return true;
+    }
+}
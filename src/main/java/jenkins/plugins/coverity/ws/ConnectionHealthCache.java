@@ -0,0 +1,107 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Synopsys, Inc
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Synopsys, Inc - initial implementation and documentation
+ *******************************************************************************/
+package jenkins.plugins.coverity.ws;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import jenkins.plugins.coverity.CIMInstance;
+
+/**
+ * Remembers which Coverity Connect instances recently passed the web service health check, so that service lookups
+ * do not need to request the WSDL every time. Entries expire after a configurable time to live and are removed as soon
+ * as a check or call against the instance fails or gets redirected.
+ *
+ * The time to live (in seconds) can be set with the system property
+ * {@code jenkins.plugins.coverity.ws.ConnectionHealthCache.ttl}, a value of 0 disables the cache.
+ */
+public class ConnectionHealthCache {
+    public static final long DEFAULT_TTL_SECONDS = 300;
+
+    private final Map<InstanceKey, Long> healthyUntil;
+    private final AtomicLong hitCount;
+    private final AtomicLong missCount;
+    private volatile long ttlMillis;
+
+    public ConnectionHealthCache() {
+        this(TimeUnit.SECONDS.toMillis(Long.getLong(ConnectionHealthCache.class.getName() + ".ttl", DEFAULT_TTL_SECONDS)));
+    }
+
+    public ConnectionHealthCache(long ttlMillis) {
+        this.healthyUntil = new ConcurrentHashMap<>();
+        this.hitCount = new AtomicLong();
+        this.missCount = new AtomicLong();
+        this.ttlMillis = ttlMillis;
+    }
+
+    /**
+     * Returns true if the instance passed a health check within the time to live. Every call counts as either a hit
+     * or a miss.
+     */
+    public boolean isHealthy(CIMInstance cimInstance) {
+        final InstanceKey key = InstanceKey.of(cimInstance);
+        final Long expiry = healthyUntil.get(key);
+        if (expiry != null && expiry > System.currentTimeMillis()) {
+            hitCount.incrementAndGet();
+            return true;
+        }
+
+        if (expiry != null) {
+            healthyUntil.remove(key);
+        }
+        missCount.incrementAndGet();
+        return false;
+    }
+
+    public void markHealthy(CIMInstance cimInstance) {
+        if (ttlMillis > 0) {
+            healthyUntil.put(InstanceKey.of(cimInstance), System.currentTimeMillis() + ttlMillis);
+        }
+    }
+
+    public void invalidate(CIMInstance cimInstance) {
+        healthyUntil.remove(InstanceKey.of(cimInstance));
+    }
+
+    public void invalidateAll() {
+        healthyUntil.clear();
+    }
+
+    public long getTtlMillis() {
+        return ttlMillis;
+    }
+
+    public void setTtlMillis(long ttlMillis) {
+        this.ttlMillis = ttlMillis;
+        if (ttlMillis <= 0) {
+            invalidateAll();
+        }
+    }
+
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    @Override
+    public String toString() {
+        return "Connection health cache: {" +
+            " TTL=" + ttlMillis + "ms" +
+            ", Hits=" + hitCount.get() +
+            ", Misses=" + missCount.get() +
+            '}';
+    }
+}
@@ -0,0 +1,450 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Synopsys, Inc
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Synopsys, Inc - initial implementation and documentation
+ *******************************************************************************/
+package jenkins.plugins.coverity.ws;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+import javax.ws.rs.client.Client;
+import javax.xml.namespace.QName;
+import javax.xml.ws.BindingProvider;
+import javax.xml.ws.WebServiceException;
+import javax.xml.ws.handler.MessageContext;
+import javax.xml.ws.handler.soap.SOAPHandler;
+import javax.xml.ws.handler.soap.SOAPMessageContext;
+
+import org.apache.commons.lang.StringUtils;
+import org.glassfish.jersey.client.ClientProperties;
+import org.kohsuke.stapler.Stapler;
+
+/**
+ * The HTTP transport settings shared by all web service clients (SOAP and REST) of one Coverity Connect instance.
+ *
+ * Both JAX-WS and the Jersey client send requests through {@link java.net.HttpURLConnection}, which keeps idle
+ * connections alive per destination and reuses them for the next request. The pool limits how many requests run
+ * against the instance at the same time, so that the number of open connections stays within what the keep-alive
+ * cache can hold, applies the connect and read timeouts, and keeps a single REST client per instance which is closed
+ * after it was idle for too long. A REST client is only closed when no request is using it, a client which is replaced
+ * while requests are using it is closed after the last of these requests.
+ *
+ * Requests made while handling an HTTP request of the Jenkins UI (for example filling or checking a form field) have
+ * connections of their own, so that they do not wait for the defects which builds are reading at the same time.
+ *
+ * The settings can be changed with the system properties (prefixed with {@code jenkins.plugins.coverity.ws.ConnectionPool.})
+ * {@code maxConnections}, {@code maxInteractiveConnections}, {@code idleTimeout}, {@code connectTimeout} and
+ * {@code readTimeout}. Timeouts are in seconds, a read timeout of 0 (the default) waits for responses as long as it
+ * takes, like the web service clients always did.
+ */
+public class ConnectionPool {
+    private static final Logger logger = Logger.getLogger(ConnectionPool.class.getName());
+
+    public static final int DEFAULT_MAX_CONNECTIONS = 5;
+    public static final int DEFAULT_MAX_INTERACTIVE_CONNECTIONS = 2;
+    public static final long DEFAULT_IDLE_TIMEOUT_SECONDS = 60;
+    public static final long DEFAULT_CONNECT_TIMEOUT_SECONDS = 30;
+    public static final long DEFAULT_READ_TIMEOUT_SECONDS = 0;
+
+    // request context properties of the JAX-WS reference implementation and of the implementation bundled with the JDK
+    private static final String[] SOAP_CONNECT_TIMEOUT_PROPERTIES = {
+        "com.sun.xml.ws.connect.timeout", "com.sun.xml.internal.ws.connect.timeout" };
+    private static final String[] SOAP_READ_TIMEOUT_PROPERTIES = {
+        "com.sun.xml.ws.request.timeout", "com.sun.xml.internal.ws.request.timeout" };
+
+    private static final String PERMIT_PROPERTY = ConnectionPool.class.getName() + ".permit";
+
+    // the time each thread spent waiting for a connection, of any pool
+    private static final ThreadLocal<long[]> threadWaitMillis = new ThreadLocal<long[]>() {
+        @Override
+        protected long[] initialValue() {
+            return new long[1];
+        }
+    };
+
+    private final String name;
+    private final int maxConnections;
+    private final int maxInteractiveConnections;
+    private final long idleTimeoutMillis;
+    private final int connectTimeoutMillis;
+    private final int readTimeoutMillis;
+
+    private final Semaphore permits;
+    private final Semaphore interactivePermits;
+    private final AtomicInteger activeCount;
+    private final AtomicInteger peakCount;
+    private final AtomicLong requestCount;
+    private final AtomicLong waitCount;
+    private final AtomicLong evictionCount;
+    private final AtomicLong responseCount;
+    private final AtomicLong wireBytes;
+    private final AtomicLong decodedBytes;
+    private final AtomicLong soapResponseCount;
+    private final AtomicLong soapCompressedCount;
+    private final AtomicLong soapWireBytes;
+
+    private Client restClient;
+    private String restClientCredentials;
+    private long lastUsed;
+    // the number of requests using each REST client, including replaced clients which are not closed yet
+    private final Map<Client, Integer> restClientUsers = new IdentityHashMap<>();
+
+    public ConnectionPool(String name) {
+        this(name,
+            Integer.getInteger(ConnectionPool.class.getName() + ".maxConnections", DEFAULT_MAX_CONNECTIONS),
+            Integer.getInteger(ConnectionPool.class.getName() + ".maxInteractiveConnections", DEFAULT_MAX_INTERACTIVE_CONNECTIONS),
+            TimeUnit.SECONDS.toMillis(Long.getLong(ConnectionPool.class.getName() + ".idleTimeout", DEFAULT_IDLE_TIMEOUT_SECONDS)),
+            TimeUnit.SECONDS.toMillis(Long.getLong(ConnectionPool.class.getName() + ".connectTimeout", DEFAULT_CONNECT_TIMEOUT_SECONDS)),
+            TimeUnit.SECONDS.toMillis(Long.getLong(ConnectionPool.class.getName() + ".readTimeout", DEFAULT_READ_TIMEOUT_SECONDS)));
+    }
+
+    public ConnectionPool(String name, int maxConnections, long idleTimeoutMillis, long connectTimeoutMillis, long readTimeoutMillis) {
+        this(name, maxConnections, DEFAULT_MAX_INTERACTIVE_CONNECTIONS, idleTimeoutMillis, connectTimeoutMillis, readTimeoutMillis);
+    }
+
+    public ConnectionPool(String name, int maxConnections, int maxInteractiveConnections, long idleTimeoutMillis, long connectTimeoutMillis, long readTimeoutMillis) {
+        this.name = name;
+        this.maxConnections = Math.max(1, maxConnections);
+        this.maxInteractiveConnections = Math.max(1, maxInteractiveConnections);
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        this.connectTimeoutMillis = (int)Math.min(connectTimeoutMillis, Integer.MAX_VALUE);
+        this.readTimeoutMillis = (int)Math.min(readTimeoutMillis, Integer.MAX_VALUE);
+
+        this.permits = new Semaphore(this.maxConnections, true);
+        this.interactivePermits = new Semaphore(this.maxInteractiveConnections, true);
+        this.activeCount = new AtomicInteger();
+        this.peakCount = new AtomicInteger();
+        this.requestCount = new AtomicLong();
+        this.waitCount = new AtomicLong();
+        this.evictionCount = new AtomicLong();
+        this.responseCount = new AtomicLong();
+        this.wireBytes = new AtomicLong();
+        this.decodedBytes = new AtomicLong();
+        this.soapResponseCount = new AtomicLong();
+        this.soapCompressedCount = new AtomicLong();
+        this.soapWireBytes = new AtomicLong();
+    }
+
+    /**
+     * Whether the current thread is handling an HTTP request of the Jenkins UI
+     */
+    public static boolean isInteractive() {
+        return Stapler.getCurrentRequest() != null;
+    }
+
+    /**
+     * Waits until a connection to the instance is available, interactive requests use connections of their own.
+     * Every successful call must be followed by {@link #release(boolean)} with the same value.
+     */
+    public void acquire(boolean interactive) throws InterruptedException {
+        final Semaphore permits = interactive ? interactivePermits : this.permits;
+        requestCount.incrementAndGet();
+        if (!permits.tryAcquire()) {
+            waitCount.incrementAndGet();
+            final long waitStart = System.currentTimeMillis();
+            try {
+                permits.acquire();
+            } finally {
+                threadWaitMillis.get()[0] += System.currentTimeMillis() - waitStart;
+            }
+        }
+
+        final int active = activeCount.incrementAndGet();
+        int peak = peakCount.get();
+        while (active > peak && !peakCount.compareAndSet(peak, active)) {
+            peak = peakCount.get();
+        }
+    }
+
+    /**
+     * Returns the total time in milliseconds the current thread has waited for connections so far. The difference
+     * between two calls is the time a request made in between spent waiting for a connection rather than running.
+     */
+    public static long getThreadWaitMillis() {
+        return threadWaitMillis.get()[0];
+    }
+
+    public void release(boolean interactive) {
+        activeCount.decrementAndGet();
+        (interactive ? interactivePermits : permits).release();
+    }
+
+    /**
+     * Applies the connect and read timeouts to a SOAP port
+     */
+    public void configure(BindingProvider port) {
+        final Map<String, Object> requestContext = port.getRequestContext();
+        for (String property : SOAP_CONNECT_TIMEOUT_PROPERTIES) {
+            requestContext.put(property, connectTimeoutMillis);
+        }
+        for (String property : SOAP_READ_TIMEOUT_PROPERTIES) {
+            requestContext.put(property, readTimeoutMillis);
+        }
+    }
+
+    /**
+     * Applies the connect and read timeouts to a REST client
+     */
+    public void configure(Client client) {
+        client.property(ClientProperties.CONNECT_TIMEOUT, connectTimeoutMillis);
+        client.property(ClientProperties.READ_TIMEOUT, readTimeoutMillis);
+    }
+
+    /**
+     * Creates a SOAP handler which holds a connection from this pool while a message exchange is in progress. The
+     * handler should be the first handler in the chain of the port.
+     */
+    public SOAPHandler<SOAPMessageContext> createHandler() {
+        return new PoolHandler();
+    }
+
+    /**
+     * Marks the REST client as used by a request. Every call must be followed by {@link #releaseRestClient(Client)}.
+     */
+    public synchronized void acquireRestClient(Client client) {
+        final Integer users = restClientUsers.get(client);
+        restClientUsers.put(client, users != null ? users + 1 : 1);
+    }
+
+    /**
+     * Marks the end of a request using the REST client, and closes the client if it was replaced in the meantime and
+     * no other request is using it
+     */
+    public synchronized void releaseRestClient(Client client) {
+        final Integer users = restClientUsers.get(client);
+        if (users == null) {
+            return;
+        }
+        if (users > 1) {
+            restClientUsers.put(client, users - 1);
+            return;
+        }
+        restClientUsers.remove(client);
+        if (client == restClient) {
+            lastUsed = System.currentTimeMillis();
+        } else {
+            closeClient(client);
+        }
+    }
+
+    /**
+     * Returns the REST client of the instance if it was created for the same credentials and was not idle for longer
+     * than the idle timeout. Otherwise the client is closed and null is returned, callers are expected to create a new
+     * client and set it with {@link #setRestClient(Client, String, String)}.
+     */
+    public synchronized Client getRestClient(String userName, String password) {
+        if (restClient != null) {
+            final long now = System.currentTimeMillis();
+            if (!StringUtils.equals(restClientCredentials, userName + ":" + password)) {
+                closeRestClient();
+            } else if (idleTimeoutMillis > 0 && now - lastUsed > idleTimeoutMillis && !restClientUsers.containsKey(restClient)) {
+                logger.fine("Closing REST client of " + name + " after being idle for " + (now - lastUsed) + "ms");
+                evictionCount.incrementAndGet();
+                closeRestClient();
+            } else {
+                lastUsed = now;
+            }
+        }
+        return restClient;
+    }
+
+    public synchronized void setRestClient(Client client, String userName, String password) {
+        if (restClient != null && restClient != client) {
+            closeRestClient();
+        }
+        configure(client);
+        restClient = client;
+        restClientCredentials = userName + ":" + password;
+        lastUsed = System.currentTimeMillis();
+    }
+
+    /**
+     * Closes the REST client, for example after the address of the instance changed
+     */
+    public synchronized void evict() {
+        if (restClient != null) {
+            evictionCount.incrementAndGet();
+            closeRestClient();
+        }
+    }
+
+    /**
+     * Closes the REST client, or leaves it to the last request using it
+     */
+    private void closeRestClient() {
+        if (!restClientUsers.containsKey(restClient)) {
+            closeClient(restClient);
+        }
+        restClient = null;
+        restClientCredentials = null;
+    }
+
+    private void closeClient(Client client) {
+        try {
+            client.close();
+        } catch (RuntimeException e) {
+            logger.throwing(ConnectionPool.class.getName(), "closeRestClient", e);
+        }
+    }
+
+    /**
+     * Records the size of a response body as received on the wire and after decompression
+     */
+    public void recordResponse(long wireBytes, long decodedBytes) {
+        this.responseCount.incrementAndGet();
+        this.wireBytes.addAndGet(wireBytes);
+        this.decodedBytes.addAndGet(decodedBytes);
+    }
+
+    /**
+     * Records the size of a SOAP response as received on the wire, or -1 if the response did not declare its length
+     * (for example a chunked response). The decoded size of compressed SOAP responses is not known, the transport
+     * decompresses them before any handler sees the message.
+     */
+    public void recordSoapResponse(long wireBytes, boolean compressed) {
+        this.soapResponseCount.incrementAndGet();
+        if (compressed) {
+            this.soapCompressedCount.incrementAndGet();
+        }
+        if (wireBytes >= 0) {
+            this.soapWireBytes.addAndGet(wireBytes);
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getMaxConnections() {
+        return maxConnections;
+    }
+
+    public int getMaxInteractiveConnections() {
+        return maxInteractiveConnections;
+    }
+
+    public long getIdleTimeoutMillis() {
+        return idleTimeoutMillis;
+    }
+
+    public int getConnectTimeoutMillis() {
+        return connectTimeoutMillis;
+    }
+
+    public int getReadTimeoutMillis() {
+        return readTimeoutMillis;
+    }
+
+    public int getActiveCount() {
+        return activeCount.get();
+    }
+
+    public int getPeakCount() {
+        return peakCount.get();
+    }
+
+    public long getRequestCount() {
+        return requestCount.get();
+    }
+
+    public long getWaitCount() {
+        return waitCount.get();
+    }
+
+    public long getEvictionCount() {
+        return evictionCount.get();
+    }
+
+    public long getResponseCount() {
+        return responseCount.get();
+    }
+
+    public long getWireBytes() {
+        return wireBytes.get();
+    }
+
+    public long getDecodedBytes() {
+        return decodedBytes.get();
+    }
+
+    public long getSoapResponseCount() {
+        return soapResponseCount.get();
+    }
+
+    public long getSoapCompressedCount() {
+        return soapCompressedCount.get();
+    }
+
+    public long getSoapWireBytes() {
+        return soapWireBytes.get();
+    }
+
+    @Override
+    public String toString() {
+        return "Connection pool for " + name + ": {" +
+            " Max=" + maxConnections +
+            ", MaxInteractive=" + maxInteractiveConnections +
+            ", Active=" + activeCount.get() +
+            ", Peak=" + peakCount.get() +
+            ", Requests=" + requestCount.get() +
+            ", Waits=" + waitCount.get() +
+            ", Evictions=" + evictionCount.get() +
+            ", Responses=" + responseCount.get() +
+            ", WireBytes=" + wireBytes.get() +
+            ", DecodedBytes=" + decodedBytes.get() +
+            ", SoapResponses=" + soapResponseCount.get() +
+            ", SoapCompressed=" + soapCompressedCount.get() +
+            ", SoapWireBytes=" + soapWireBytes.get() +
+            '}';
+    }
+
+    /**
+     * Takes a connection when the request is sent and returns it when the message exchange is closed, which also
+     * happens when sending the request or reading the response fails. The context remembers whether the connection
+     * was an interactive one.
+     */
+    private class PoolHandler implements SOAPHandler<SOAPMessageContext> {
+        public Set<QName> getHeaders() {
+            return Collections.emptySet();
+        }
+
+        public boolean handleMessage(SOAPMessageContext context) {
+            boolean outbound = ((Boolean) context.get(MessageContext.MESSAGE_OUTBOUND_PROPERTY)).booleanValue();
+            if (outbound && context.get(PERMIT_PROPERTY) == null) {
+                final boolean interactive = isInteractive();
+                try {
+                    acquire(interactive);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new WebServiceException("Interrupted while waiting for a connection to " + name, e);
+                }
+                context.put(PERMIT_PROPERTY, interactive);
+            }
+            return true;
+        }
+
+        public boolean handleFault(SOAPMessageContext context) {
+            return true;
+        }
+
+        public void close(MessageContext context) {
+            final Object interactive = context.remove(PERMIT_PROPERTY);
+            if (interactive != null) {
+                release((Boolean)interactive);
+            }
+        }
+    }
+}
@@ -0,0 +1,421 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Synopsys, Inc
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Synopsys, Inc - initial implementation and documentation
+ *******************************************************************************/
+package jenkins.plugins.coverity.ws;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.commons.lang.StringUtils;
+
+import com.coverity.ws.v9.CovRemoteServiceException_Exception;
+import com.google.common.util.concurrent.SettableFuture;
+
+import hudson.Util;
+import jenkins.model.Jenkins;
+import jenkins.plugins.coverity.CoverityDefect;
+import jenkins.plugins.coverity.CoverityDefectsFile;
+
+/**
+ * Controller-wide cache of the defects read for a snapshot of a stream, shared by all jobs which read the same stream
+ * with the same defect filters. The cache is keyed by the snapshot id, so a new commit to the stream never returns
+ * the defects of an older snapshot. Triage changes do not create a new snapshot, entries therefore expire after a
+ * maximum age (in seconds) which can be set with the system property {@code jenkins.plugins.coverity.ws.DefectCache.maxAge}.
+ *
+ * The cache keeps at most a maximum number of defects in memory (system property
+ * {@code jenkins.plugins.coverity.ws.DefectCache.maxDefects}), evicting the least recently used entries. When
+ * {@code jenkins.plugins.coverity.ws.DefectCache.spillToDisk} is set, evicted entries are written to the Jenkins root
+ * directory and read again on the next request, keeping only the latest snapshot per stream and defect filters.
+ *
+ * A request for defects which are already being read by another build waits for that build instead of reading the
+ * same defects again. If that build fails to read them for any other reason than an error of the service, for example
+ * because it was aborted, the waiting request reads the defects itself.
+ */
+public class DefectCache {
+    private static final Logger logger = Logger.getLogger(DefectCache.class.getName());
+
+    public static final long DEFAULT_MAX_DEFECTS = 100000;
+    public static final long DEFAULT_MAX_AGE_SECONDS = 3600;
+
+    private static final int SPILL_FORMAT_VERSION = 3;
+
+    private static DefectCache instance;
+
+    private final long maxDefects;
+    private final long maxAgeMillis;
+    private final File spillDirectory;
+
+    private final LinkedHashMap<Key, CachedDefects> entries;
+    private final Map<Key, SettableFuture<List<CoverityDefect>>> loading;
+    private long defectCount;
+
+    private final AtomicLong hitCount;
+    private final AtomicLong missCount;
+    private final AtomicLong coalescedCount;
+    private final AtomicLong spillCount;
+
+    DefectCache(long maxDefects, long maxAgeMillis, File spillDirectory) {
+        this.maxDefects = maxDefects;
+        this.maxAgeMillis = maxAgeMillis;
+        this.spillDirectory = spillDirectory;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true);
+        this.loading = new HashMap<>();
+        this.hitCount = new AtomicLong();
+        this.missCount = new AtomicLong();
+        this.coalescedCount = new AtomicLong();
+        this.spillCount = new AtomicLong();
+    }
+
+    public static synchronized DefectCache getInstance() {
+        if (instance == null) {
+            File spillDirectory = null;
+            if (Boolean.getBoolean(DefectCache.class.getName() + ".spillToDisk")) {
+                spillDirectory = new File(Jenkins.getInstance().getRootDir(), "coverity-defect-cache");
+            }
+            instance = new DefectCache(
+                Long.getLong(DefectCache.class.getName() + ".maxDefects", DEFAULT_MAX_DEFECTS),
+                TimeUnit.SECONDS.toMillis(Long.getLong(DefectCache.class.getName() + ".maxAge", DEFAULT_MAX_AGE_SECONDS)),
+                spillDirectory);
+        }
+        return instance;
+    }
+
+    /**
+     * Returns the defects for the key, reading them with the loader if they are not cached and are not already being
+     * read. The returned list is a copy which can be modified by the caller.
+     */
+    public List<CoverityDefect> getDefects(Key key, Loader loader) throws IOException, CovRemoteServiceException_Exception {
+        while (true) {
+            final SettableFuture<List<CoverityDefect>> future;
+            final boolean reading;
+            synchronized (this) {
+                CachedDefects cached = entries.get(key);
+                if (cached != null && cached.isExpired()) {
+                    entries.remove(key);
+                    defectCount -= cached.defects.size();
+                    cached = null;
+                }
+                if (cached != null) {
+                    hitCount.incrementAndGet();
+                    return new ArrayList<>(cached.defects);
+                }
+
+                SettableFuture<List<CoverityDefect>> pending = loading.get(key);
+                reading = pending == null;
+                if (reading) {
+                    future = SettableFuture.create();
+                    loading.put(key, future);
+                } else {
+                    coalescedCount.incrementAndGet();
+                    future = pending;
+                }
+            }
+
+            if (reading) {
+                return readDefects(key, loader, future);
+            }
+
+            final List<CoverityDefect> defects = waitForDefects(future);
+            if (defects != null) {
+                return new ArrayList<>(defects);
+            }
+            // the other caller was aborted or failed for a reason of its own, the defects are read again
+        }
+    }
+
+    /**
+     * Reads the defects for the key and passes them to the callers waiting for them. Only an error returned by the
+     * service is passed on to the waiting callers. Other failures, like the build of this caller being aborted, belong
+     * to this caller, the waiting callers are woken up with null and read the defects themselves.
+     */
+    private List<CoverityDefect> readDefects(Key key, Loader loader, SettableFuture<List<CoverityDefect>> future) throws IOException, CovRemoteServiceException_Exception {
+        try {
+            CachedDefects cached = readSpilledDefects(key);
+            if (cached != null) {
+                hitCount.incrementAndGet();
+            } else {
+                missCount.incrementAndGet();
+                cached = new CachedDefects(new ArrayList<>(loader.load()), System.currentTimeMillis() + maxAgeMillis);
+            }
+            put(key, cached);
+            future.set(cached.defects);
+            return new ArrayList<>(cached.defects);
+        } catch (CovRemoteServiceException_Exception e) {
+            future.setException(e);
+            throw e;
+        } finally {
+            synchronized (this) {
+                loading.remove(key);
+            }
+            if (!future.isDone()) {
+                future.set(null);
+            }
+        }
+    }
+
+    /**
+     * Waits for the defects which are read by another caller. Returns null if the other caller did not read the
+     * defects, but did not get an error from the service either.
+     */
+    private List<CoverityDefect> waitForDefects(SettableFuture<List<CoverityDefect>> future) throws IOException, CovRemoteServiceException_Exception {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for defects");
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof CovRemoteServiceException_Exception) {
+                throw (CovRemoteServiceException_Exception)cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    private void put(Key key, CachedDefects cached) {
+        List<Map.Entry<Key, CachedDefects>> evicted = new ArrayList<>();
+        synchronized (this) {
+            if (cached.defects.size() > maxDefects) {
+                // too large to keep in memory, spilled right away
+                evicted.add(new AbstractMap.SimpleImmutableEntry<>(key, cached));
+            } else {
+                CachedDefects previous = entries.put(key, cached);
+                if (previous != null) {
+                    defectCount -= previous.defects.size();
+                }
+                defectCount += cached.defects.size();
+
+                Iterator<Map.Entry<Key, CachedDefects>> eldest = entries.entrySet().iterator();
+                while (defectCount > maxDefects && eldest.hasNext()) {
+                    Map.Entry<Key, CachedDefects> entry = eldest.next();
+                    defectCount -= entry.getValue().defects.size();
+                    evicted.add(new AbstractMap.SimpleImmutableEntry<>(entry.getKey(), entry.getValue()));
+                    eldest.remove();
+                }
+            }
+        }
+
+        for (Map.Entry<Key, CachedDefects> entry : evicted) {
+            if (!entry.getValue().isExpired()) {
+                spill(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    public synchronized void invalidateAll() {
+        entries.clear();
+        defectCount = 0;
+    }
+
+    /**
+     * Writes evicted defects to disk, replacing the defects of an older snapshot of the same stream
+     */
+    private void spill(Key key, CachedDefects cached) {
+        if (spillDirectory == null) {
+            return;
+        }
+
+        File file = getSpillFile(key);
+        File tempFile = new File(file.getPath() + ".tmp");
+        try {
+            if (!spillDirectory.isDirectory() && !spillDirectory.mkdirs()) {
+                throw new IOException("Unable to create " + spillDirectory);
+            }
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(new FileOutputStream(tempFile))))) {
+                out.writeInt(SPILL_FORMAT_VERSION);
+                out.writeLong(key.snapshotId);
+                out.writeLong(key.getBaseSnapshotId());
+                out.writeLong(cached.expires);
+                CoverityDefectsFile.write(out, cached.defects);
+            }
+            Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            spillCount.incrementAndGet();
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Unable to write defects of " + key + " to " + file, e);
+            tempFile.delete();
+        }
+    }
+
+    private CachedDefects readSpilledDefects(Key key) {
+        if (spillDirectory == null) {
+            return null;
+        }
+
+        File file = getSpillFile(key);
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new GZIPInputStream(new FileInputStream(file))))) {
+            if (in.readInt() != SPILL_FORMAT_VERSION || in.readLong() != key.snapshotId || in.readLong() != key.getBaseSnapshotId()) {
+                return null;
+            }
+            long expires = in.readLong();
+            if (expires <= System.currentTimeMillis()) {
+                return null;
+            }
+            return new CachedDefects(CoverityDefectsFile.read(in), expires);
+        } catch (FileNotFoundException e) {
+            return null;
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Unable to read defects of " + key + " from " + file, e);
+            return null;
+        }
+    }
+
+    private File getSpillFile(Key key) {
+        // the snapshot id is not part of the file name, so that a new snapshot replaces the previous one
+        return new File(spillDirectory, Util.getDigestOf(key.instance + '\n' + key.credentialId + '\n' + key.stream + '\n' + key.filterKey) + ".defects");
+    }
+
+    public synchronized int getEntryCount() {
+        return entries.size();
+    }
+
+    public synchronized long getDefectCount() {
+        return defectCount;
+    }
+
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    public long getCoalescedCount() {
+        return coalescedCount.get();
+    }
+
+    public long getSpillCount() {
+        return spillCount.get();
+    }
+
+    @Override
+    public String toString() {
+        return "Defect cache: {" +
+            " Entries=" + getEntryCount() +
+            ", Defects=" + getDefectCount() +
+            ", Hits=" + hitCount.get() +
+            ", Misses=" + missCount.get() +
+            ", Coalesced=" + coalescedCount.get() +
+            ", Spilled=" + spillCount.get() +
+            '}';
+    }
+
+    private static class CachedDefects {
+        private final List<CoverityDefect> defects;
+        private final long expires;
+
+        CachedDefects(List<CoverityDefect> defects, long expires) {
+            this.defects = defects;
+            this.expires = expires;
+        }
+
+        boolean isExpired() {
+            return expires <= System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * Reads the defects when they are not cached
+     */
+    public interface Loader {
+        List<CoverityDefect> load() throws IOException, CovRemoteServiceException_Exception;
+    }
+
+    /**
+     * Identifies the defects of a snapshot of a stream, read with the given credentials and defect filters. Defects
+     * which were derived from the defects of a previous snapshot (only reading the changes since that snapshot) are
+     * identified by that base snapshot as well, so that they are only shared with reads from the same base.
+     */
+    public static final class Key {
+        private final String instance;
+        private final String credentialId;
+        private final String stream;
+        private final long snapshotId;
+        private final String filterKey;
+        private final Long baseSnapshotId;
+
+        public Key(String instance, String credentialId, String stream, long snapshotId, String filterKey) {
+            this(instance, credentialId, stream, snapshotId, filterKey, null);
+        }
+
+        public Key(String instance, String credentialId, String stream, long snapshotId, String filterKey, Long baseSnapshotId) {
+            this.instance = instance;
+            this.credentialId = credentialId;
+            this.stream = stream;
+            this.snapshotId = snapshotId;
+            this.filterKey = filterKey;
+            this.baseSnapshotId = baseSnapshotId;
+        }
+
+        /**
+         * The base snapshot of derived defects, or -1 for defects which were read in full
+         */
+        long getBaseSnapshotId() {
+            return baseSnapshotId != null ? baseSnapshotId : -1;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key)o;
+            return snapshotId == key.snapshotId &&
+                StringUtils.equals(instance, key.instance) &&
+                StringUtils.equals(credentialId, key.credentialId) &&
+                StringUtils.equals(stream, key.stream) &&
+                StringUtils.equals(filterKey, key.filterKey) &&
+                getBaseSnapshotId() == key.getBaseSnapshotId();
+        }
+
+        @Override
+        public int hashCode() {
+            int result = instance != null ? instance.hashCode() : 0;
+            result = 31 * result + (credentialId != null ? credentialId.hashCode() : 0);
+            result = 31 * result + (stream != null ? stream.hashCode() : 0);
+            result = 31 * result + (int)(snapshotId ^ (snapshotId >>> 32));
+            result = 31 * result + (filterKey != null ? filterKey.hashCode() : 0);
+            result = 31 * result + (baseSnapshotId != null ? baseSnapshotId.hashCode() : 0);
+            return result;
+        }
+
+        @Override
+        public String toString() {
+            return instance + "/" + stream + "@" + snapshotId + (baseSnapshotId != null ? " since " + baseSnapshotId : "");
+        }
+    }
+}
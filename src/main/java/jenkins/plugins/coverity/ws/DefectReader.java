@@ -12,10 +12,23 @@ package jenkins.plugins.coverity.ws;
 
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.io.PrintStream;
 import java.text.MessageFormat;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Deque;
+import java.util.GregorianCalendar;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import javax.xml.datatype.DatatypeConfigurationException;
+import javax.xml.datatype.DatatypeFactory;
 
 import com.coverity.ws.v9.CovRemoteServiceException_Exception;
 import com.coverity.ws.v9.DefectService;
@@ -23,8 +36,15 @@ import com.coverity.ws.v9.MergedDefectDataObj;
 import com.coverity.ws.v9.MergedDefectFilterSpecDataObj;
 import com.coverity.ws.v9.MergedDefectsPageDataObj;
 import com.coverity.ws.v9.PageSpecDataObj;
+import com.coverity.ws.v9.ProjectIdDataObj;
+import com.coverity.ws.v9.SnapshotFilterSpecDataObj;
+import com.coverity.ws.v9.SnapshotIdDataObj;
+import com.coverity.ws.v9.SnapshotScopeDefectFilterSpecDataObj;
 import com.coverity.ws.v9.SnapshotScopeSpecDataObj;
 import com.coverity.ws.v9.StreamIdDataObj;
+import com.google.common.base.Function;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
 
 import hudson.Launcher;
 import hudson.Util;
@@ -32,12 +52,14 @@ import hudson.model.AbstractBuild;
 import hudson.model.BuildListener;
 import hudson.model.Hudson;
 import hudson.model.Result;
+import hudson.model.Run;
 import hudson.model.TaskListener;
 import jenkins.model.Jenkins;
 import jenkins.plugins.coverity.CIMInstance;
 import jenkins.plugins.coverity.CIMStream;
 import jenkins.plugins.coverity.CoverityBuildAction;
 import jenkins.plugins.coverity.CoverityDefect;
+import jenkins.plugins.coverity.DefectDiff;
 import jenkins.plugins.coverity.CoverityPublisher;
 import jenkins.plugins.coverity.DefectFilters;
 import org.apache.commons.lang.StringUtils;
@@ -47,6 +69,21 @@ import org.apache.commons.lang.StringUtils;
  * will be added as a {@link CoverityBuildAction} to the build.
  */
 public class DefectReader {
+    /**
+     * System property for the maximum number of defect pages requested at the same time
+     */
+    public static final String PARALLELISM_PROPERTY = DefectReader.class.getName() + ".parallelism";
+    public static final int DEFAULT_PARALLELISM = 4;
+
+    // returns the defects of the shown snapshot scope which are not present in the compared snapshot scope
+    private static final String ISSUE_COMPARISON_ABSENT = "ABSENT";
+
+    /**
+     * System property for the number of previous builds searched for defects to compare with
+     */
+    public static final String PREVIOUS_BUILDS_PROPERTY = DefectReader.class.getName() + ".previousBuilds";
+    public static final int DEFAULT_PREVIOUS_BUILDS = 10;
+
     private AbstractBuild<?, ?> build;
     private BuildListener listener;
     private CoverityPublisher publisher;
@@ -64,47 +101,51 @@ public class DefectReader {
             return;
         }
 
-        CIMStream cimStream = publisher.getCimStream();
-        CIMInstance cimInstance = publisher.getDescriptor().getInstance(publisher);
+        final CIMStream cimStream = publisher.getCimStream();
+        final CIMInstance cimInstance = publisher.getDescriptor().getInstance(publisher);
 
         if (StringUtils.isEmpty(cimStream.getStream())) {
             listener.getLogger().println("[Coverity] Stream has not been configured. Skipping fetching defects.");
             return;
         }
 
-        listener.getLogger().println(MessageFormat.format("[Coverity] Fetching defects for stream \"{0}\"", cimStream.getStream()));
-
-        List<MergedDefectDataObj> defects = null;
-
         try {
-            defects = getDefectsForSnapshot(cimInstance, cimStream, listener.getLogger());
-
-            List<CoverityDefect> matchingDefects = new ArrayList<>();
-
-            // Loop through all defects create defect objects
-            for(MergedDefectDataObj defect : defects) {
-                matchingDefects.add(new CoverityDefect(defect.getCid(), defect.getCheckerName(), defect.getFunctionDisplayName(), defect.getFilePathname()));
+            if (publisher.isCountDefectsOnly()) {
+                listener.getLogger().println(MessageFormat.format("[Coverity] Counting defects for stream \"{0}\"", cimStream.getStream()));
+                updateBuildResult(getDefectCountForSnapshot(cimInstance, cimStream));
+                return;
             }
 
-            if(!matchingDefects.isEmpty()) {
-                listener.getLogger().println(MessageFormat.format("[Coverity] Found {0} defects matching all filters", matchingDefects.size()));
-                if(publisher.isFailBuild()) {
-                    if(build.getResult().isBetterThan(Result.FAILURE)) {
-                        build.setResult(Result.FAILURE);
-                    }
-                }
+            listener.getLogger().println(MessageFormat.format("[Coverity] Fetching defects for stream \"{0}\"", cimStream.getStream()));
+            final Long snapshotId = getLastSnapshotId(cimInstance, cimStream, listener.getLogger());
+            final String filterKey = getFilterKey(cimStream);
+            final CoverityBuildAction previousAction = getPreviousAction(cimStream, filterKey);
 
-                // if the user wants to mark the build as unstable when defects are found, then we
-                // notify the publisher to do so.
-                if(publisher.isUnstable()){
-                    publisher.setUnstableBuild(true);
+            List<CoverityDefect> matchingDefects;
+            if (snapshotId != null) {
+                // builds of other jobs may have read the defects of the snapshot already, defects derived from the
+                // snapshot of the previous build are only shared with builds deriving them from the same snapshot
+                DefectCache.Key key = new DefectCache.Key(cimStream.getInstance(), cimInstance.getCredentialId(), cimStream.getStream(), snapshotId, filterKey, getBaseSnapshotId(previousAction));
+                final boolean[] loaded = new boolean[1];
+                matchingDefects = DefectCache.getInstance().getDefects(key, new DefectCache.Loader() {
+                    public List<CoverityDefect> load() throws IOException, CovRemoteServiceException_Exception {
+                        loaded[0] = true;
+                        return readDefects(cimInstance, cimStream, snapshotId, previousAction);
+                    }
+                });
+                if (!loaded[0]) {
+                    listener.getLogger().println(MessageFormat.format("[Coverity] Using cached defects of snapshot {0}", String.valueOf(snapshotId)));
                 }
-
             } else {
-                listener.getLogger().println("[Coverity] No defects matched all filters.");
+                matchingDefects = getDefectsForSnapshot(cimInstance, cimStream, null, listener.getLogger());
             }
+            updateBuildResult(matchingDefects.size());
 
             CoverityBuildAction action = new CoverityBuildAction(build, cimStream.getProject(), cimStream.getStream(), cimStream.getInstance(), matchingDefects);
+            action.setSnapshot(snapshotId, filterKey);
+            if (previousAction != null) {
+                setDefectChanges(action, matchingDefects, previousAction);
+            }
             build.addAction(action);
 
             String rootUrl = Jenkins.getInstance().getRootUrl();
@@ -112,47 +153,348 @@ public class DefectReader {
                 listener.getLogger().println("Coverity details: " + rootUrl + build.getUrl() + action.getUrlName());
             }
         } catch (IOException e) {
+            WebServiceFactory.getInstance().invalidateConnection(cimInstance);
             e.printStackTrace(listener.error("[Coverity] An error occurred while fetching defects"));
             build.setResult(Result.FAILURE);
         } catch (CovRemoteServiceException_Exception e) {
+            WebServiceFactory.getInstance().invalidateConnection(cimInstance);
             e.printStackTrace(listener.error("[Coverity] An error occurred while fetching defects"));
             build.setResult(Result.FAILURE);
         }
     }
 
-    private List<MergedDefectDataObj> getDefectsForSnapshot(CIMInstance cim, CIMStream cimStream, PrintStream logger) throws IOException, CovRemoteServiceException_Exception {
+    /**
+     * Marks the build as failed or unstable (if configured) when the number of matching defects exceeds the threshold
+     */
+    private void updateBuildResult(int defectCount) {
+        if(defectCount > 0) {
+            listener.getLogger().println(MessageFormat.format("[Coverity] Found {0} defects matching all filters", defectCount));
+        } else {
+            listener.getLogger().println("[Coverity] No defects matched all filters.");
+        }
+
+        if(defectCount > publisher.getDefectThreshold()) {
+            if(publisher.isFailBuild()) {
+                if(build.getResult().isBetterThan(Result.FAILURE)) {
+                    build.setResult(Result.FAILURE);
+                }
+            }
+
+            // if the user wants to mark the build as unstable when defects are found, then we
+            // notify the publisher to do so.
+            if(publisher.isUnstable()){
+                publisher.setUnstableBuild(true);
+            }
+        } else if(defectCount > 0) {
+            listener.getLogger().println(MessageFormat.format("[Coverity] Defect count does not exceed the threshold of {0}", publisher.getDefectThreshold()));
+        }
+    }
+
+    /**
+     * Reads the number of matching defects in the last snapshot of the stream with a single request, without fetching
+     * the defects
+     */
+    private int getDefectCountForSnapshot(CIMInstance cim, CIMStream cimStream) throws IOException, CovRemoteServiceException_Exception {
+        MergedDefectsPageDataObj page = getPage(cim.getAsyncWebServices().getMergedDefectsForStreams(
+            getStreamIds(cimStream), getFilterSpec(cimStream), createPageSpec(0, 1), getSnapshotScope(null)));
+        return page.getTotalNumberOfRecords();
+    }
+
+    /**
+     * Reads the defects of the snapshot, only reading the changes since the snapshot of the previous build if
+     * configured
+     */
+    private List<CoverityDefect> readDefects(CIMInstance cim, CIMStream cimStream, long snapshotId, CoverityBuildAction previousAction) throws IOException, CovRemoteServiceException_Exception {
+        List<CoverityDefect> defects = null;
+        if (getBaseSnapshotId(previousAction) != null) {
+            defects = getDefectsFromPreviousSnapshot(cim, cimStream, previousAction, snapshotId, listener.getLogger());
+        }
+        if (defects == null) {
+            defects = getDefectsForSnapshot(cim, cimStream, snapshotId, listener.getLogger());
+        }
+        return defects;
+    }
+
+    /**
+     * Returns the snapshot of the previous build if only the changes since that snapshot are read, or null if all
+     * defects are read
+     */
+    private Long getBaseSnapshotId(CoverityBuildAction previousAction) {
+        return publisher.isIncrementalDefects() && previousAction != null ? previousAction.getSnapshotId() : null;
+    }
 
-        List<MergedDefectDataObj> mergeList = new ArrayList<MergedDefectDataObj>();
+    /**
+     * Reads the defects of the given snapshot of the stream, or of the last snapshot if the snapshot is unknown
+     */
+    private List<CoverityDefect> getDefectsForSnapshot(CIMInstance cim, CIMStream cimStream, Long snapshotId, PrintStream logger) throws IOException, CovRemoteServiceException_Exception {
+        final AsyncWebServices ws = cim.getAsyncWebServices();
+        final List<StreamIdDataObj> streamIds = getStreamIds(cimStream);
+        final MergedDefectFilterSpecDataObj filter = getFilterSpec(cimStream);
+        final SnapshotScopeSpecDataObj snapshotScope = getSnapshotScope(snapshotId);
+
+        return getDefects(new PageRequest() {
+            public MergedDefectsPageDataObj get(DefectService service, PageSpecDataObj pageSpec) throws Exception {
+                return service.getMergedDefectsForStreams(streamIds, filter, pageSpec, snapshotScope);
+            }
+        }, cimStream, ws, logger);
+    }
 
-        DefectService ds = cim.getDefectService();
+    /**
+     * Derives the defects of the snapshot from the defects of the previous build, by fetching only the defects which
+     * were fixed and which are new since the snapshot of the previous build. Returns null if the snapshots could not
+     * be compared, for example because the previous snapshot was deleted.
+     */
+    private List<CoverityDefect> getDefectsFromPreviousSnapshot(CIMInstance cim, CIMStream cimStream, CoverityBuildAction previousAction, long snapshotId, PrintStream logger) throws IOException {
+        final long previousSnapshotId = previousAction.getSnapshotId();
+        logger.println(MessageFormat.format("[Coverity] Fetching defects changed since snapshot {0} for stream \"{1}\"", String.valueOf(previousSnapshotId), cimStream.getStream()));
 
+        Map<Long, CoverityDefect> defects = new LinkedHashMap<>();
+        for (CoverityDefect defect : previousAction.getDefects()) {
+            defects.put(defect.getCid(), defect);
+        }
+
+        if (previousSnapshotId != snapshotId) {
+            try {
+                for (CoverityDefect defect : getDefectsAbsentFromSnapshot(cim, cimStream, previousSnapshotId, snapshotId, logger)) {
+                    defects.remove(defect.getCid());
+                }
+                for (CoverityDefect defect : getDefectsAbsentFromSnapshot(cim, cimStream, snapshotId, previousSnapshotId, logger)) {
+                    defects.put(defect.getCid(), defect);
+                }
+            } catch (CovRemoteServiceException_Exception e) {
+                logger.println("[Coverity] Unable to compare with the snapshot of the previous build, fetching all defects: " + e.getMessage());
+                return null;
+            }
+        }
+
+        return new ArrayList<>(defects.values());
+    }
+
+    /**
+     * Reads the defects of a snapshot of the stream which are not present in the compared snapshot
+     */
+    private List<CoverityDefect> getDefectsAbsentFromSnapshot(CIMInstance cim, CIMStream cimStream, long showSnapshotId, long compareSnapshotId, PrintStream logger) throws IOException, CovRemoteServiceException_Exception {
+        final AsyncWebServices ws = cim.getAsyncWebServices();
+        final ProjectIdDataObj projectId = new ProjectIdDataObj();
+        projectId.setName(cimStream.getProject());
+
+        DefectFilters defectFilters = cimStream.getDefectFilters();
+        final SnapshotScopeDefectFilterSpecDataObj filter = defectFilters != null ? defectFilters.ToSnapshotScopeFilterSpecDataObj() : new SnapshotScopeDefectFilterSpecDataObj();
+        filter.getStreamIncludeNameList().addAll(getStreamIds(cimStream));
+        filter.setIssueComparison(ISSUE_COMPARISON_ABSENT);
+
+        final SnapshotScopeSpecDataObj snapshotScope = getSnapshotScope(showSnapshotId);
+        snapshotScope.setCompareSelector(String.valueOf(compareSnapshotId));
+
+        return getDefects(new PageRequest() {
+            public MergedDefectsPageDataObj get(DefectService service, PageSpecDataObj pageSpec) throws Exception {
+                return service.getMergedDefectsForSnapshotScope(projectId, filter, pageSpec, snapshotScope);
+            }
+        }, cimStream, ws, logger);
+    }
+
+    /**
+     * Reads all pages of defects. Each page is converted to {@link CoverityDefect}s as soon as it arrives, so the web
+     * service objects of at most one page per concurrent request are kept in memory.
+     */
+    private List<CoverityDefect> getDefects(PageRequest request, CIMStream cimStream, AsyncWebServices ws, PrintStream logger) throws IOException, CovRemoteServiceException_Exception {
+        // The first page returns the total number of defects, the remaining pages are requested concurrently
+        // (up to the configured parallelism) and collected in order. The size of each page is chosen by the pager.
+        AdaptivePager pager = ws.getPager();
+        int firstPageSize = pager.getPageSize();
+        MergedDefectsPageDataObj firstPage = getPage(requestPage(request, ws, pager, 0, firstPageSize));
+        int defectSize = firstPage.getTotalNumberOfRecords();
+        List<CoverityDefect> defects = new ArrayList<>(Math.max(defectSize, 0));
+        defects.addAll(TO_DEFECTS.apply(firstPage));
+
+        final int parallelism = Math.max(1, Integer.getInteger(PARALLELISM_PROPERTY, DEFAULT_PARALLELISM));
+        Deque<ListenableFuture<List<CoverityDefect>>> pages = new ArrayDeque<>();
+        Deque<Integer> pageSizes = new ArrayDeque<>();
+        int nextPageStart = firstPageSize;
+        try {
+            for(int pageStart = firstPageSize; pageStart < defectSize; pageStart += pageSizes.poll()){
+                while (nextPageStart < defectSize && pages.size() < parallelism) {
+                    // pages are converted by the thread which received them
+                    int pageSize = pager.getPageSize();
+                    pages.add(Futures.transform(requestPage(request, ws, pager, nextPageStart, pageSize), TO_DEFECTS));
+                    pageSizes.add(pageSize);
+                    nextPageStart += pageSize;
+                }
+
+                logger.println(MessageFormat.format("[Coverity] Fetching defects for stream \"{0}\" (fetched {1} of {2})", cimStream.getStream(), pageStart, defectSize));
+                defects.addAll(getPage(pages.poll()));
+            }
+        } finally {
+            // only left over if a page failed
+            for (ListenableFuture<List<CoverityDefect>> page : pages) {
+                page.cancel(true);
+            }
+        }
+        return defects;
+    }
+
+    /**
+     * Requests a page and records its response time, or its failure, with the pager. The response time is measured
+     * while the request runs, without the time it was queued on the executor or waited for a connection, so that
+     * requesting more pages at once does not make each page look slower.
+     */
+    private ListenableFuture<MergedDefectsPageDataObj> requestPage(final PageRequest request, final AsyncWebServices ws, final AdaptivePager pager, int pageStart, final int pageSize) {
+        final PageSpecDataObj pageSpec = createPageSpec(pageStart, pageSize);
+        return ws.submit(new Callable<MergedDefectsPageDataObj>() {
+            public MergedDefectsPageDataObj call() throws Exception {
+                final long started = System.currentTimeMillis();
+                final long waitedBefore = ConnectionPool.getThreadWaitMillis();
+                final MergedDefectsPageDataObj page;
+                try {
+                    page = request.get(ws.getDefectService(), pageSpec);
+                } catch (Exception e) {
+                    if (!Thread.currentThread().isInterrupted() && !(e instanceof InterruptedIOException)) {
+                        pager.recordFailure();
+                    }
+                    throw e;
+                }
+                final long waited = ConnectionPool.getThreadWaitMillis() - waitedBefore;
+                // the size of SOAP responses is not known
+                pager.recordPage(pageSize, page.getMergedDefects().size(), System.currentTimeMillis() - started - waited, -1);
+                return page;
+            }
+        });
+    }
+
+    /**
+     * Requests one page of defects
+     */
+    private interface PageRequest {
+        MergedDefectsPageDataObj get(DefectService service, PageSpecDataObj pageSpec) throws Exception;
+    }
+
+    private static final Function<MergedDefectsPageDataObj, List<CoverityDefect>> TO_DEFECTS = new Function<MergedDefectsPageDataObj, List<CoverityDefect>>() {
+        public List<CoverityDefect> apply(MergedDefectsPageDataObj page) {
+            List<CoverityDefect> defects = new ArrayList<>(page.getMergedDefects().size());
+            for(MergedDefectDataObj defect : page.getMergedDefects()) {
+                defects.add(new CoverityDefect(defect.getCid(), defect.getCheckerName(), defect.getFunctionDisplayName(), defect.getFilePathname()));
+            }
+            return defects;
+        }
+    };
+
+    private List<StreamIdDataObj> getStreamIds(CIMStream cimStream) {
         StreamIdDataObj streamId = new StreamIdDataObj();
         streamId.setName(cimStream.getStream());
         List<StreamIdDataObj> streamIds = new ArrayList<StreamIdDataObj>();
         streamIds.add(streamId);
+        return streamIds;
+    }
 
+    private MergedDefectFilterSpecDataObj getFilterSpec(CIMStream cimStream) {
         DefectFilters defectFilters = cimStream.getDefectFilters();
-        MergedDefectFilterSpecDataObj filter = defectFilters != null ?  defectFilters.ToFilterSpecDataObj() : new MergedDefectFilterSpecDataObj();
+        return defectFilters != null ?  defectFilters.ToFilterSpecDataObj() : new MergedDefectFilterSpecDataObj();
+    }
 
-        PageSpecDataObj pageSpec = new PageSpecDataObj();
+    private String getFilterKey(CIMStream cimStream) {
+        DefectFilters defectFilters = cimStream.getDefectFilters();
+        return defectFilters != null ? defectFilters.getFilterKey() : new DefectFilters().getFilterKey();
+    }
 
+    private SnapshotScopeSpecDataObj getSnapshotScope(Long snapshotId) {
         SnapshotScopeSpecDataObj snapshotScope = new SnapshotScopeSpecDataObj();
-        snapshotScope.setShowSelector("last()");
+        snapshotScope.setShowSelector(snapshotId != null ? String.valueOf(snapshotId) : "last()");
+        return snapshotScope;
+    }
 
-        // The loop will pull up to the maximum amount of defect, doing per page size
-        int pageSize = 1000; // Size of page to be pulled
-        int defectSize = 3000; // Maximum amount of defect to pull
-        for(int pageStart = 0; pageStart < defectSize; pageStart += pageSize){
-            if (pageStart >= pageSize)
-                logger.println(MessageFormat.format("[Coverity] Fetching defects for stream \"{0}\" (fetched {1} of {2})", cimStream.getStream(), pageStart, defectSize));
+    /**
+     * Returns the id of the last snapshot of the stream, or null if it could not be read. Only the last snapshot
+     * before a day from now is requested, the day allows for a difference between the clocks of Jenkins and Coverity
+     * Connect.
+     */
+    private Long getLastSnapshotId(CIMInstance cim, CIMStream cimStream, PrintStream logger) {
+        try {
+            final GregorianCalendar codeVersionDate = new GregorianCalendar();
+            codeVersionDate.add(Calendar.DAY_OF_MONTH, 1);
+            final SnapshotFilterSpecDataObj filter = new SnapshotFilterSpecDataObj();
+            filter.setLastBeforeCodeVersionDate(DatatypeFactory.newInstance().newXMLGregorianCalendar(codeVersionDate));
+
+            List<SnapshotIdDataObj> snapshots = getPage(cim.getAsyncWebServices().getSnapshotsForStream(
+                getStreamIds(cimStream).get(0), filter));
+            Long lastSnapshotId = null;
+            if (snapshots != null) {
+                for (SnapshotIdDataObj snapshot : snapshots) {
+                    if (lastSnapshotId == null || snapshot.getId() > lastSnapshotId) {
+                        lastSnapshotId = snapshot.getId();
+                    }
+                }
+            }
+            return lastSnapshotId;
+        } catch (IOException | CovRemoteServiceException_Exception | DatatypeConfigurationException e) {
+            logger.println("[Coverity] Unable to read the snapshots of the stream: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Returns the action of the last previous build with defects, if it has defects of the same stream which were read
+     * with the same defect filters. Only the last few builds are searched, so that jobs with many builds without
+     * defects do not load all of them.
+     */
+    private CoverityBuildAction getPreviousAction(CIMStream cimStream, String filterKey) {
+        int remaining = Math.max(0, Integer.getInteger(PREVIOUS_BUILDS_PROPERTY, DEFAULT_PREVIOUS_BUILDS));
+        for (Run<?, ?> run = build.getPreviousBuild(); run != null && remaining > 0; run = run.getPreviousBuild(), remaining--) {
+            CoverityBuildAction action = run.getAction(CoverityBuildAction.class);
+            if (action != null) {
+                if (StringUtils.equals(action.getCimInstance(), cimStream.getInstance()) &&
+                    StringUtils.equals(action.getProjectId(), cimStream.getProject()) &&
+                    StringUtils.equals(action.getStreamId(), cimStream.getStream()) &&
+                    StringUtils.equals(action.getFilterKey(), filterKey)) {
+                    return action;
+                }
+                return null;
+            }
+        }
+        return null;
+    }
 
-            pageSpec.setPageSize(pageSize);
-            pageSpec.setStartIndex(pageStart);
-            pageSpec.setSortAscending(true);
-            MergedDefectsPageDataObj mergedDefectsForStreams = ds.getMergedDefectsForStreams(streamIds, filter, pageSpec, snapshotScope);
-            defectSize = mergedDefectsForStreams.getTotalNumberOfRecords();
-            mergeList.addAll(mergedDefectsForStreams.getMergedDefects());
+    /**
+     * Records the CIDs which are new and fixed compared to the defects of the previous build
+     */
+    private void setDefectChanges(CoverityBuildAction action, List<CoverityDefect> defects, CoverityBuildAction previousAction) {
+        final long[] previousCids;
+        try {
+            previousCids = DefectDiff.getCids(previousAction);
+        } catch (IOException e) {
+            listener.getLogger().println("[Coverity] Unable to read the defects of the previous build: " + e.getMessage());
+            return;
+        }
+
+        final DefectDiff diff = DefectDiff.compare(previousCids, DefectDiff.getCids(defects));
+        action.setDefectDiff(diff);
+        listener.getLogger().println(MessageFormat.format("[Coverity] {0} new, {1} fixed and {2} persisting defects since the previous build",
+            diff.getNewCount(), diff.getFixedCount(), diff.getPersistingCount()));
+    }
+
+    private PageSpecDataObj createPageSpec(int pageStart, int pageSize) {
+        PageSpecDataObj pageSpec = new PageSpecDataObj();
+        pageSpec.setPageSize(pageSize);
+        pageSpec.setStartIndex(pageStart);
+        pageSpec.setSortAscending(true);
+        return pageSpec;
+    }
+
+    private <T> T getPage(Future<T> page) throws IOException, CovRemoteServiceException_Exception {
+        try {
+            return page.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while fetching defects");
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof CovRemoteServiceException_Exception) {
+                throw (CovRemoteServiceException_Exception)cause;
+            } else if (cause instanceof IOException) {
+                throw (IOException)cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException)cause;
+            }
+            throw new IOException(cause);
         }
-        return mergeList;
     }
 }
@@ -0,0 +1,206 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Synopsys, Inc
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Synopsys, Inc - initial implementation and documentation
+ *******************************************************************************/
+package jenkins.plugins.coverity.ws;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.GZIPInputStream;
+
+import javax.ws.rs.client.ClientRequestContext;
+import javax.ws.rs.client.ClientRequestFilter;
+import javax.ws.rs.client.ClientResponseContext;
+import javax.ws.rs.client.ClientResponseFilter;
+import javax.ws.rs.core.HttpHeaders;
+import javax.xml.namespace.QName;
+import javax.xml.ws.BindingProvider;
+import javax.xml.ws.handler.MessageContext;
+import javax.xml.ws.handler.soap.SOAPHandler;
+import javax.xml.ws.handler.soap.SOAPMessageContext;
+
+import com.google.common.io.CountingInputStream;
+
+/**
+ * GZIP compression of web service responses from Coverity Connect.
+ *
+ * For SOAP clients the "Accept-Encoding" request header is added to the port, the JAX-WS HTTP transport decompresses
+ * responses on its own. {@link SoapSizeHandler} records the number of bytes received on the wire from the
+ * Content-Length response header and whether the response was compressed. The decoded size of a compressed SOAP
+ * response is not recorded, the transport decompresses it before any handler sees the message and measuring it would
+ * mean serializing the message again.
+ *
+ * For REST clients {@link RestFilter} adds the header and decompresses the response entity, and records the number of
+ * bytes received on the wire and the decoded number of bytes in the {@link ConnectionPool} of the instance while the
+ * entity is read.
+ */
+public final class HttpCompression {
+    public static final String GZIP = "gzip";
+
+    private HttpCompression() {
+    }
+
+    /**
+     * Asks the server to compress responses sent to the SOAP port
+     */
+    public static void enable(BindingProvider port) {
+        @SuppressWarnings("unchecked")
+        Map<String, List<String>> headers = (Map<String, List<String>>)port.getRequestContext().get(MessageContext.HTTP_REQUEST_HEADERS);
+        Map<String, List<String>> requestHeaders = new HashMap<>();
+        if (headers != null) {
+            requestHeaders.putAll(headers);
+        }
+        requestHeaders.put(HttpHeaders.ACCEPT_ENCODING, Collections.singletonList(GZIP));
+        port.getRequestContext().put(MessageContext.HTTP_REQUEST_HEADERS, requestHeaders);
+    }
+
+    private static boolean isGzip(String contentEncoding) {
+        return contentEncoding != null && contentEncoding.toLowerCase().contains(GZIP);
+    }
+
+    /**
+     * SOAP handler which records the size of each response in the {@link ConnectionPool} of the instance. Only the
+     * HTTP response headers are read, the message itself is not touched.
+     */
+    public static class SoapSizeHandler implements SOAPHandler<SOAPMessageContext> {
+        private final ConnectionPool connectionPool;
+
+        public SoapSizeHandler(ConnectionPool connectionPool) {
+            this.connectionPool = connectionPool;
+        }
+
+        public Set<QName> getHeaders() {
+            return Collections.emptySet();
+        }
+
+        public boolean handleMessage(SOAPMessageContext context) {
+            recordResponse(context);
+            return true;
+        }
+
+        public boolean handleFault(SOAPMessageContext context) {
+            recordResponse(context);
+            return true;
+        }
+
+        public void close(MessageContext context) {
+        }
+
+        private void recordResponse(SOAPMessageContext context) {
+            if (((Boolean)context.get(MessageContext.MESSAGE_OUTBOUND_PROPERTY)).booleanValue()) {
+                return;
+            }
+
+            @SuppressWarnings("unchecked")
+            Map<String, List<String>> headers = (Map<String, List<String>>)context.get(MessageContext.HTTP_RESPONSE_HEADERS);
+            long contentLength = -1;
+            try {
+                String header = getHeader(headers, HttpHeaders.CONTENT_LENGTH);
+                if (header != null) {
+                    contentLength = Long.parseLong(header.trim());
+                }
+            } catch (NumberFormatException e) {
+                // the length is unknown
+            }
+            connectionPool.recordSoapResponse(contentLength, isGzip(getHeader(headers, HttpHeaders.CONTENT_ENCODING)));
+        }
+
+        /**
+         * The first value of a header, the names of the headers are not normalized by the transport
+         */
+        private static String getHeader(Map<String, List<String>> headers, String name) {
+            if (headers == null) {
+                return null;
+            }
+            for (Map.Entry<String, List<String>> header : headers.entrySet()) {
+                if (name.equalsIgnoreCase(header.getKey()) && header.getValue() != null && !header.getValue().isEmpty()) {
+                    return header.getValue().get(0);
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Jersey client filter which requests compressed responses and decompresses the response entity. The sizes are
+     * recorded when the entity stream is closed.
+     */
+    public static class RestFilter implements ClientRequestFilter, ClientResponseFilter {
+        private final ConnectionPool connectionPool;
+
+        public RestFilter(ConnectionPool connectionPool) {
+            this.connectionPool = connectionPool;
+        }
+
+        public void filter(ClientRequestContext requestContext) throws IOException {
+            if (!requestContext.getHeaders().containsKey(HttpHeaders.ACCEPT_ENCODING)) {
+                requestContext.getHeaders().putSingle(HttpHeaders.ACCEPT_ENCODING, GZIP);
+            }
+        }
+
+        public void filter(ClientRequestContext requestContext, ClientResponseContext responseContext) throws IOException {
+            if (!responseContext.hasEntity()) {
+                return;
+            }
+
+            final CountingInputStream wire = new CountingInputStream(responseContext.getEntityStream());
+            InputStream entity = wire;
+            if (isGzip(responseContext.getHeaderString(HttpHeaders.CONTENT_ENCODING))) {
+                entity = new GZIPInputStream(wire);
+                responseContext.getHeaders().remove(HttpHeaders.CONTENT_ENCODING);
+                responseContext.getHeaders().remove(HttpHeaders.CONTENT_LENGTH);
+            }
+            responseContext.setEntityStream(new RecordingInputStream(entity, wire));
+        }
+
+        private class RecordingInputStream extends FilterInputStream {
+            private final CountingInputStream wire;
+            private long decodedBytes;
+            private boolean closed;
+
+            RecordingInputStream(InputStream in, CountingInputStream wire) {
+                super(in);
+                this.wire = wire;
+            }
+
+            @Override
+            public int read() throws IOException {
+                int b = super.read();
+                if (b >= 0) {
+                    decodedBytes++;
+                }
+                return b;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                int count = super.read(b, off, len);
+                if (count > 0) {
+                    decodedBytes += count;
+                }
+                return count;
+            }
+
+            @Override
+            public void close() throws IOException {
+                if (!closed) {
+                    closed = true;
+                    connectionPool.recordResponse(wire.getCount(), decodedBytes);
+                }
+                super.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,81 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Synopsys, Inc
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Synopsys, Inc - initial implementation and documentation
+ *******************************************************************************/
+package jenkins.plugins.coverity.ws;
+
+import org.apache.commons.lang.ObjectUtils;
+
+import jenkins.plugins.coverity.CIMInstance;
+
+/**
+ * Identifies a Coverity Connect instance by its configuration in the maps of {@link WebServiceFactory}.
+ * {@link CIMInstance} compares by identity, and a build whose stream overrides the credential uses a new copy of the
+ * instance, so the copies of an instance with the same credential share one key.
+ */
+final class InstanceKey {
+    private final String name;
+    private final String host;
+    private final int port;
+    private final boolean useSSL;
+    private final boolean useCompression;
+    private final String credentialId;
+
+    private InstanceKey(CIMInstance cimInstance) {
+        this.name = cimInstance.getName();
+        this.host = cimInstance.getHost();
+        this.port = cimInstance.getPort();
+        this.useSSL = cimInstance.isUseSSL();
+        this.useCompression = cimInstance.isUseCompression();
+        this.credentialId = cimInstance.getCredentialId();
+    }
+
+    static InstanceKey of(CIMInstance cimInstance) {
+        return new InstanceKey(cimInstance);
+    }
+
+    /**
+     * Whether both keys are for the same instance configuration, possibly with different credentials
+     */
+    boolean isSameInstance(InstanceKey other) {
+        return ObjectUtils.equals(name, other.name)
+            && ObjectUtils.equals(host, other.host)
+            && port == other.port
+            && useSSL == other.useSSL
+            && useCompression == other.useCompression;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof InstanceKey)) {
+            return false;
+        }
+        InstanceKey other = (InstanceKey)o;
+        return isSameInstance(other) && ObjectUtils.equals(credentialId, other.credentialId);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = name != null ? name.hashCode() : 0;
+        result = 31 * result + (host != null ? host.hashCode() : 0);
+        result = 31 * result + port;
+        result = 31 * result + (useSSL ? 1 : 0);
+        result = 31 * result + (useCompression ? 1 : 0);
+        result = 31 * result + (credentialId != null ? credentialId.hashCode() : 0);
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return name + " (" + host + ":" + port + ")";
+    }
+}
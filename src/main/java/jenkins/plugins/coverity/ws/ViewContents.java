@@ -24,8 +24,14 @@ public class ViewContents {
     private final Long rowsOffset;
     private final List<String> columns;
     private final List<Map<String, Object>> rows;
+    private final long payloadSize;
 
     public ViewContents(JSONObject viewContentsV1) {
+        this(viewContentsV1, -1);
+    }
+
+    public ViewContents(JSONObject viewContentsV1, long payloadSize) {
+        this.payloadSize = payloadSize;
         totalRows = (Long)viewContentsV1.get("totalRows");
         rowsOffset = (Long)viewContentsV1.get("offset");
 
@@ -64,4 +70,11 @@ public class ViewContents {
     public List<Map<String, Object>> getRows() {
         return rows;
     }
+
+    /**
+     * The size of the response the contents were read from, or -1 if unknown
+     */
+    public long getPayloadSize() {
+        return payloadSize;
+    }
 }
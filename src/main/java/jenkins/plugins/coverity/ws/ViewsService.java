@@ -39,11 +39,13 @@ public class ViewsService {
 
     private final URL coverityConnectUrl;
     private final Client restClient;
+    private final ConnectionPool connectionPool;
     private Map<String, NewCookie> sessionCookies;
 
-    public ViewsService(URL coverityConnectUrl, Client restClient) {
+    public ViewsService(URL coverityConnectUrl, Client restClient, ConnectionPool connectionPool) {
         this.coverityConnectUrl = coverityConnectUrl;
         this.restClient = restClient;
+        this.connectionPool = connectionPool;
 
         initializeSession();
     }
@@ -55,7 +57,13 @@ public class ViewsService {
 
             WebTarget webTarget = restClient.target(uriBuilder.build());
             Invocation.Builder invocationBuilder =  webTarget.request();
-            Response response = invocationBuilder.get();
+            Response response;
+            final boolean interactive = acquireConnection();
+            try {
+                response = invocationBuilder.get();
+            } finally {
+                releaseConnection(interactive);
+            }
             if (response.getStatus() != 200) {
                 throw new RuntimeException("Initializing session failed");
             }
@@ -79,7 +87,13 @@ public class ViewsService {
 
             WebTarget webTarget = restClient.target(uriBuilder.build());
             Invocation.Builder invocationBuilder =  webTarget.request();
-            String response = invocationBuilder.get(String.class);
+            String response;
+            final boolean interactive = acquireConnection();
+            try {
+                response = invocationBuilder.get(String.class);
+            } finally {
+                releaseConnection(interactive);
+            }
 
             JSONParser parser = new JSONParser();
             json = (JSONObject)parser.parse(response);
@@ -126,23 +140,52 @@ public class ViewsService {
                 invocationBuilder.cookie((Cookie)entry.getValue());
             }
 
-            Response response = invocationBuilder.get();
+            Response response;
+            String output;
+            final boolean interactive = acquireConnection();
+            try {
+                response = invocationBuilder.get();
+                // the connection can only be reused after the response was read completely
+                output = response.readEntity(String.class);
+            } finally {
+                releaseConnection(interactive);
+            }
 
             if (response.getStatus() != 200) {
                 throw new RuntimeException("GET " + viewContentsUri +
                         " returned a response status of " + response.getStatus() +
-                        ": " + response.readEntity(String.class));
+                        ": " + output);
             }
 
-            String output = response.readEntity(String.class);
             JSONParser parser = new JSONParser();
             JSONObject json = (JSONObject)parser.parse(output);
 
-            return new ViewContents((JSONObject)json.get("viewContentsV1"));
+            return new ViewContents((JSONObject)json.get("viewContentsV1"), output.length());
 
         } catch (ParseException | URISyntaxException e) {
             logger.throwing(ViewsService.class.getName(), "getViews", e);
             return new ViewContents(new JSONObject());
         }
     }
+
+    /**
+     * Takes a connection and keeps the REST client from being closed while the request is in progress. Returns
+     * whether the connection is an interactive one.
+     */
+    private boolean acquireConnection() {
+        final boolean interactive = ConnectionPool.isInteractive();
+        try {
+            connectionPool.acquire(interactive);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for a connection to " + coverityConnectUrl, e);
+        }
+        connectionPool.acquireRestClient(restClient);
+        return interactive;
+    }
+
+    private void releaseConnection(boolean interactive) {
+        connectionPool.releaseRestClient(restClient);
+        connectionPool.release(interactive);
+    }
 }
@@ -12,15 +12,27 @@ package jenkins.plugins.coverity.ws;
 
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.security.KeyManagementException;
 import java.security.NoSuchAlgorithmException;
 import java.security.SecureRandom;
-import java.util.Arrays;
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Logger;
 
 import javax.net.ssl.HttpsURLConnection;
@@ -29,12 +41,17 @@ import javax.ws.rs.client.Client;
 import javax.ws.rs.client.ClientBuilder;
 import javax.xml.namespace.QName;
 import javax.xml.ws.BindingProvider;
+import javax.xml.ws.Service;
 import javax.xml.ws.handler.Handler;
+import javax.xml.ws.soap.SOAPBinding;
 
 import com.coverity.ws.v9.ConfigurationService;
-import com.coverity.ws.v9.ConfigurationServiceService;
 import com.coverity.ws.v9.DefectService;
-import com.coverity.ws.v9.DefectServiceService;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
 
 import jenkins.plugins.coverity.CIMInstance;
 import org.apache.commons.lang.StringUtils;
@@ -51,14 +68,27 @@ public class WebServiceFactory {
     public static final String COVERITY_V9_NAMESPACE = "http://ws.coverity.com/v9";
     public static final String DEFECT_SERVICE_V9_WSDL = "/ws/v9/defectservice?wsdl";
     public static final String CONFIGURATION_SERVICE_V9_WSDL = "/ws/v9/configurationservice?wsdl";
+    public static final String AUTHENTICATION_HANDLER_PROPERTY = WebServiceFactory.class.getName() + ".authenticationHandler";
+    public static final String AUTHENTICATION_HANDLER_HEADER = "header";
+    public static final String ASYNC_THREADS_PROPERTY = WebServiceFactory.class.getName() + ".asyncThreads";
+    public static final int DEFAULT_ASYNC_THREADS = 8;
     private static int REDIRECTION_MAX_TRY = 10;
 
-    private Map<CIMInstance, DefectService> defectServiceMap;
-    private Map<CIMInstance, ConfigurationService> configurationServiceMap;
+    private final ConcurrentMap<InstanceKey, Future<DefectService>> defectServiceMap;
+    private final ConcurrentMap<InstanceKey, Future<ConfigurationService>> configurationServiceMap;
+    private final ConcurrentMap<InstanceKey, Object> connectionCheckLocks;
+    private final ConcurrentMap<InstanceKey, ConnectionPool> connectionPools;
+    private final ConcurrentMap<InstanceKey, AdaptivePager> pagers;
+    private final ConnectionHealthCache healthCache;
+    private ListeningExecutorService asyncExecutor;
 
     protected WebServiceFactory() {
-        this.defectServiceMap = new HashMap<>();
-        this.configurationServiceMap = new HashMap<>();
+        this.defectServiceMap = new ConcurrentHashMap<>();
+        this.configurationServiceMap = new ConcurrentHashMap<>();
+        this.connectionCheckLocks = new ConcurrentHashMap<>();
+        this.connectionPools = new ConcurrentHashMap<>();
+        this.pagers = new ConcurrentHashMap<>();
+        this.healthCache = new ConnectionHealthCache();
     }
 
     public static WebServiceFactory getInstance() {
@@ -76,28 +106,29 @@ public class WebServiceFactory {
     /**
      * Returns a Defect service client using v9 web services.
      */
-    public DefectService getDefectService(CIMInstance cimInstance) throws IOException {
-        DefectService defectService = null;
-        synchronized(this) {
-            if(!defectServiceMap.containsKey(cimInstance)) {
-                defectService = createDefectService(cimInstance);
-                defectServiceMap.put(cimInstance, defectService);
+    public DefectService getDefectService(final CIMInstance cimInstance) throws IOException {
+        ensureServiceConnection(cimInstance);
+        return getOrCreateService(defectServiceMap, cimInstance, new Callable<DefectService>() {
+            public DefectService call() throws Exception {
+                return createDefectService(cimInstance);
             }
-            ensureServiceConnection(cimInstance, WebServiceType.DefectService);
-            return defectServiceMap.get(cimInstance);
-        }
+        });
     }
 
     protected DefectService createDefectService(CIMInstance cimInstance) throws MalformedURLException {
-        URL url = getURL(cimInstance, WebServiceType.DefectService);
+        URL endpoint = getEndpointURL(cimInstance, WebServiceType.DefectService);
 
-        DefectServiceService defectServiceService = new DefectServiceService(
-                url, new QName(COVERITY_V9_NAMESPACE, "DefectServiceService"));
+        // The port is built from the annotations of the service interface without any WSDL. The generated
+        // DefectServiceService would fall back to the WSDL location in its annotation, so it is not used here.
+        final QName portName = new QName(COVERITY_V9_NAMESPACE, "DefectServicePort");
+        Service defectServiceService = Service.create(new QName(COVERITY_V9_NAMESPACE, "DefectServiceService"));
+        defectServiceService.addPort(portName, SOAPBinding.SOAP11HTTP_BINDING, endpoint.toString());
 
         ClassLoader cl = Thread.currentThread().getContextClassLoader();
         try {
-            DefectService defectService = defectServiceService.getDefectServicePort();
-            attachAuthenticationHandler((BindingProvider) defectService, cimInstance);
+            DefectService defectService = defectServiceService.getPort(portName, DefectService.class);
+            setEndpointAddress((BindingProvider) defectService, endpoint);
+            attachHandlers((BindingProvider) defectService, cimInstance);
 
             return defectService;
         } finally {
@@ -108,48 +139,99 @@ public class WebServiceFactory {
     /**
      * Returns a Configuration service client using v9 web services.
      */
-    public ConfigurationService getConfigurationService(CIMInstance cimInstance) throws IOException {
-        synchronized (this){
-            if(!configurationServiceMap.containsKey(cimInstance)) {
-                ConfigurationService configurationService = createConfigurationService(cimInstance);
-                configurationServiceMap.put(cimInstance, configurationService);
+    public ConfigurationService getConfigurationService(final CIMInstance cimInstance) throws IOException {
+        ensureServiceConnection(cimInstance);
+        return getOrCreateService(configurationServiceMap, cimInstance, new Callable<ConfigurationService>() {
+            public ConfigurationService call() throws Exception {
+                return createConfigurationService(cimInstance);
+            }
+        });
+    }
+
+    /**
+     * Returns the service client for the instance, creating it exactly once. Only callers asking for the same instance
+     * wait on each other while the client is created, callers for other instances are not blocked.
+     */
+    private <T> T getOrCreateService(ConcurrentMap<InstanceKey, Future<T>> services, CIMInstance cimInstance, Callable<T> factory) throws IOException {
+        final InstanceKey key = InstanceKey.of(cimInstance);
+        Future<T> service = services.get(key);
+        if (service == null) {
+            FutureTask<T> newService = new FutureTask<>(factory);
+            service = services.putIfAbsent(key, newService);
+            if (service == null) {
+                service = newService;
+                newService.run();
+            }
+        }
+
+        try {
+            return service.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while creating web service client for instance " + cimInstance.getName());
+        } catch (ExecutionException e) {
+            // do not keep failed clients around, the next caller will try to create the client again
+            services.remove(key, service);
+
+            final Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException)cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException)cause;
             }
-            ensureServiceConnection(cimInstance, WebServiceType.ConfigurationService);
-            return configurationServiceMap.get(cimInstance);
+            throw new IOException(cause);
         }
     }
 
-    private void ensureServiceConnection(CIMInstance cimInstance, WebServiceType serviceType) {
-        try{
+    /**
+     * Checks the connection to the instance unless a recent check succeeded. Checks are serialized per instance, so a
+     * slow or unreachable instance only delays its own callers.
+     */
+    private void ensureServiceConnection(CIMInstance cimInstance) {
+        if (healthCache.isHealthy(cimInstance)) {
+            return;
+        }
+
+        final InstanceKey key = InstanceKey.of(cimInstance);
+        Object lock = connectionCheckLocks.get(key);
+        if (lock == null) {
+            final Object newLock = new Object();
+            lock = connectionCheckLocks.putIfAbsent(key, newLock);
+            if (lock == null) {
+                lock = newLock;
+            }
+        }
+
+        synchronized (lock) {
+            // another caller might have completed the check while this one was waiting
+            if (healthCache.isHealthy(cimInstance)) {
+                return;
+            }
+
+            logger.fine("Checking web service connection for instance " + cimInstance.getName() + ". " + healthCache
+                + ", " + getConnectionPool(cimInstance));
             CheckWsResponse connectionResponse = getCheckWsResponse(cimInstance);
-            synchronized (this){
-                if (connectionResponse.isConnected()){
-                    if (serviceType == WebServiceType.ConfigurationService){
-                        if (!configurationServiceMap.containsKey(cimInstance)){
-                            configurationServiceMap.put(cimInstance, createConfigurationService(cimInstance));
-                        }
-                    }else if (serviceType == WebServiceType.DefectService){
-                        if (!defectServiceMap.containsKey(cimInstance)){
-                            defectServiceMap.put(cimInstance, createDefectService(cimInstance));
-                        }
-                    }
-                }
+            if (connectionResponse.isConnected()) {
+                healthCache.markHealthy(cimInstance);
+            } else {
+                healthCache.invalidate(cimInstance);
             }
-        }catch (MalformedURLException e){
-            logger.log(java.util.logging.Level.ALL, "MalformedURLException occurred");
         }
     }
 
     protected ConfigurationService createConfigurationService(CIMInstance cimInstance) throws MalformedURLException {
-        URL url = getURL(cimInstance, WebServiceType.ConfigurationService);
+        URL endpoint = getEndpointURL(cimInstance, WebServiceType.ConfigurationService);
 
-        ConfigurationServiceService configurationServiceService = new ConfigurationServiceService(
-                url, new QName(COVERITY_V9_NAMESPACE, "ConfigurationServiceService"));
+        // see createDefectService, the port is built without any WSDL
+        final QName portName = new QName(COVERITY_V9_NAMESPACE, "ConfigurationServicePort");
+        Service configurationServiceService = Service.create(new QName(COVERITY_V9_NAMESPACE, "ConfigurationServiceService"));
+        configurationServiceService.addPort(portName, SOAPBinding.SOAP11HTTP_BINDING, endpoint.toString());
 
         ClassLoader cl = Thread.currentThread().getContextClassLoader();
         try {
-            ConfigurationService configurationService = configurationServiceService.getConfigurationServicePort();
-            attachAuthenticationHandler((BindingProvider) configurationService, cimInstance);
+            ConfigurationService configurationService = configurationServiceService.getPort(portName, ConfigurationService.class);
+            setEndpointAddress((BindingProvider) configurationService, endpoint);
+            attachHandlers((BindingProvider) configurationService, cimInstance);
 
             return configurationService;
         } finally {
@@ -158,11 +240,54 @@ public class WebServiceFactory {
     }
 
     /**
-     * Returns a new Views Service client
+     * Returns asynchronous access to the Defect and Configuration services of the instance
+     */
+    public AsyncWebServices getAsyncWebServices(CIMInstance cimInstance) {
+        return new AsyncWebServices(this, cimInstance, getAsyncExecutor());
+    }
+
+    /**
+     * The executor for asynchronous web service calls, shared by all instances. Its size can be set with the
+     * system property {@link #ASYNC_THREADS_PROPERTY}, idle threads are stopped.
+     */
+    protected synchronized ListeningExecutorService getAsyncExecutor() {
+        if (asyncExecutor == null) {
+            final int threads = Math.max(1, Integer.getInteger(ASYNC_THREADS_PROPERTY, DEFAULT_ASYNC_THREADS));
+            ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<Runnable>(),
+                    new NamingThreadFactory(new DaemonThreadFactory(), "Coverity web service"));
+            executor.allowCoreThreadTimeOut(true);
+            asyncExecutor = MoreExecutors.listeningDecorator(executor);
+        }
+        return asyncExecutor;
+    }
+
+    /**
+     * Returns a new Views Service client. The underlying REST client is shared with other Views Service clients
+     * for the same instance, see {@link ConnectionPool}.
      */
     public ViewsService getViewService(CIMInstance instance) throws MalformedURLException, NoSuchAlgorithmException, KeyManagementException {
         URL url = getURL(instance, WebServiceType.ViewService);
 
+        final String user = instance.getCoverityUser();
+        final String password = instance.getCoverityPassword();
+        ConnectionPool connectionPool = getConnectionPool(instance);
+        Client restClient;
+        synchronized (connectionPool) {
+            restClient = connectionPool.getRestClient(user, password);
+            if (restClient == null) {
+                restClient = createRestClient(instance, user, password);
+                if (instance.isUseCompression()) {
+                    restClient.register(new HttpCompression.RestFilter(connectionPool));
+                }
+                connectionPool.setRestClient(restClient, user, password);
+            }
+        }
+
+        return new ViewsService(url, restClient, connectionPool);
+    }
+
+    private Client createRestClient(CIMInstance instance, String user, String password) throws NoSuchAlgorithmException, KeyManagementException {
         Client restClient = null;
         if (instance.isUseSSL()){
             SSLContext sslContext = SSLContext.getInstance("SSL");
@@ -175,11 +300,46 @@ public class WebServiceFactory {
             restClient = ClientBuilder.newClient();
         }
 
-        HttpAuthenticationFeature httpAuthenticationFeature =
-                HttpAuthenticationFeature.basic(instance.getCoverityUser(), instance.getCoverityPassword());
+        HttpAuthenticationFeature httpAuthenticationFeature = HttpAuthenticationFeature.basic(user, password);
         restClient.register(httpAuthenticationFeature);
 
-        return new ViewsService(url, restClient);
+        return restClient;
+    }
+
+    /**
+     * Returns the connection pool shared by all web service clients of the instance
+     */
+    public ConnectionPool getConnectionPool(CIMInstance cimInstance) {
+        final InstanceKey key = InstanceKey.of(cimInstance);
+        ConnectionPool connectionPool = connectionPools.get(key);
+        if (connectionPool == null) {
+            final ConnectionPool newConnectionPool = new ConnectionPool(cimInstance.getName());
+            connectionPool = connectionPools.putIfAbsent(key, newConnectionPool);
+            if (connectionPool == null) {
+                connectionPool = newConnectionPool;
+            }
+        }
+        return connectionPool;
+    }
+
+    /**
+     * Returns the pager which chooses the page size for defect and view requests to the instance
+     */
+    public AdaptivePager getPager(CIMInstance cimInstance) {
+        final InstanceKey key = InstanceKey.of(cimInstance);
+        AdaptivePager pager = pagers.get(key);
+        if (pager == null) {
+            final AdaptivePager newPager = createPager(cimInstance);
+            pager = pagers.putIfAbsent(key, newPager);
+            if (pager == null) {
+                pager = newPager;
+            }
+        }
+        return pager;
+    }
+
+    protected AdaptivePager createPager(CIMInstance cimInstance) {
+        return new AdaptivePager();
     }
 
     /**
@@ -204,6 +364,17 @@ public class WebServiceFactory {
         }
     }
 
+    /**
+     * The SOAP endpoint URL for the web service type, which is the WSDL URL without the query
+     *
+     * @return a url
+     * @throws MalformedURLException should not happen if host is valid
+     */
+    protected URL getEndpointURL(CIMInstance cimInstance, WebServiceType serviceType) throws MalformedURLException {
+        URL wsdlUrl = getURL(cimInstance, serviceType);
+        return new URL(wsdlUrl.getProtocol(), wsdlUrl.getHost(), wsdlUrl.getPort(), wsdlUrl.getPath());
+    }
+
     /**
      * Gets the response code and message as {@link CheckWsResponse} for the {@link CIMInstance} V9 Web Services WSDL
      * @param cimInstance the CIM instance to get response for
@@ -215,9 +386,10 @@ public class WebServiceFactory {
 
             CheckWsResponse response = getCheckWsResponse(url, cimInstance, 1);
             if (response.isConnected()){
-                synchronized (this){
-                    CimServiceUrlCache.getInstance().cacheURL(cimInstance, new URL(response.getBaseUrl()));
-                }
+                CimServiceUrlCache.getInstance().cacheURL(cimInstance, new URL(response.getBaseUrl()));
+                healthCache.markHealthy(cimInstance);
+            } else {
+                healthCache.invalidate(cimInstance);
             }
             return response;
         } catch (MalformedURLException e) {
@@ -256,22 +428,112 @@ public class WebServiceFactory {
         }
     }
 
+    private void setEndpointAddress(BindingProvider service, URL endpoint) {
+        service.getRequestContext().put(BindingProvider.ENDPOINT_ADDRESS_PROPERTY, endpoint.toString());
+    }
+
     /**
-     * Attach an authentication handler to the web service, that uses the configured user and password
+     * Attach the connection pool handler and an authentication handler to the web service, that uses the configured
+     * user and password. The timeouts of the connection pool are applied to the web service as well, responses are
+     * compressed if enabled for the instance and their sizes are recorded in the connection pool.
      */
-    private void attachAuthenticationHandler(BindingProvider service, CIMInstance cimInstance) {
-        service.getBinding().setHandlerChain(Arrays.<Handler>asList(new ClientAuthenticationHandlerWSS(
-                cimInstance.getCoverityUser(), cimInstance.getCoverityPassword())));
+    private void attachHandlers(BindingProvider service, CIMInstance cimInstance) {
+        ConnectionPool connectionPool = getConnectionPool(cimInstance);
+        connectionPool.configure(service);
+
+        List<Handler> handlers = new ArrayList<>();
+        handlers.add(connectionPool.createHandler());
+        handlers.add(new HttpCompression.SoapSizeHandler(connectionPool));
+        if (cimInstance.isUseCompression()) {
+            HttpCompression.enable(service);
+        }
+        handlers.add(createAuthenticationHandler(cimInstance.getCoverityUser(), cimInstance.getCoverityPassword()));
+        service.getBinding().setHandlerChain(handlers);
+    }
+
+    /**
+     * Creates the ws-security authentication handler selected by {@link #AUTHENTICATION_HANDLER_PROPERTY}. The XWSS
+     * based handler is the default, "header" selects the handler which writes the security header directly.
+     */
+    protected Handler createAuthenticationHandler(String userName, String password) {
+        if (AUTHENTICATION_HANDLER_HEADER.equalsIgnoreCase(System.getProperty(AUTHENTICATION_HANDLER_PROPERTY))) {
+            return new ClientAuthenticationHeaderHandler(userName, password);
+        }
+
+        return new ClientAuthenticationHandlerWSS(userName, password);
     }
 
     private void resetWebServices(CIMInstance cimInstance){
-        synchronized (this){
-            this.configurationServiceMap.remove(cimInstance);
-            this.defectServiceMap.remove(cimInstance);
-            CimServiceUrlCache.getInstance().removeURL(cimInstance);
+        final InstanceKey key = InstanceKey.of(cimInstance);
+        this.configurationServiceMap.remove(key);
+        this.defectServiceMap.remove(key);
+        CimServiceUrlCache.getInstance().removeURL(cimInstance);
+        healthCache.invalidate(cimInstance);
+
+        ConnectionPool connectionPool = connectionPools.get(key);
+        if (connectionPool != null) {
+            connectionPool.evict();
         }
     }
 
+    /**
+     * Forgets the last successful health check for the instance, so the next service lookup checks the connection
+     * again. Callers should invoke this when a web service call against the instance fails.
+     */
+    public void invalidateConnection(CIMInstance cimInstance) {
+        healthCache.invalidate(cimInstance);
+    }
+
+    /**
+     * Forgets the clients, connection pools and pagers of instances which are no longer configured, or whose
+     * configuration changed. Called when the global configuration is saved.
+     */
+    public void retainInstances(Collection<CIMInstance> cimInstances) {
+        final List<InstanceKey> configured = new ArrayList<>();
+        for (CIMInstance cimInstance : cimInstances) {
+            configured.add(InstanceKey.of(cimInstance));
+        }
+
+        removeUnconfigured(defectServiceMap, configured);
+        removeUnconfigured(configurationServiceMap, configured);
+        removeUnconfigured(connectionCheckLocks, configured);
+        removeUnconfigured(pagers, configured);
+        for (ConnectionPool connectionPool : removeUnconfigured(connectionPools, configured)) {
+            connectionPool.evict();
+        }
+        healthCache.invalidateAll();
+    }
+
+    /**
+     * Removes the entries of instances which are not configured, copies of a configured instance with another
+     * credential are kept. Returns the removed values.
+     */
+    private static <V> List<V> removeUnconfigured(ConcurrentMap<InstanceKey, V> map, List<InstanceKey> configured) {
+        final List<V> removed = new ArrayList<>();
+        for (Iterator<Map.Entry<InstanceKey, V>> iterator = map.entrySet().iterator(); iterator.hasNext();) {
+            final Map.Entry<InstanceKey, V> entry = iterator.next();
+            boolean isConfigured = false;
+            for (InstanceKey key : configured) {
+                if (key.isSameInstance(entry.getKey())) {
+                    isConfigured = true;
+                    break;
+                }
+            }
+            if (!isConfigured) {
+                iterator.remove();
+                removed.add(entry.getValue());
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * The cache of successful health checks, including its hit and miss counters
+     */
+    public ConnectionHealthCache getHealthCache() {
+        return healthCache;
+    }
+
     /**
      * A response from the web service URL check with the HTTP Status-Code and response message
      */
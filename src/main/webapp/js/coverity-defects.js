@@ -0,0 +1,125 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Synopsys, Inc
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Synopsys, Inc - initial implementation and documentation
+ *******************************************************************************/
+
+/*
+ * Shows the defects of a build one page at a time, read from the build action's defects endpoint. Clicking a column
+ * header sorts by that column, and the filter field only shows defects which contain the text.
+ */
+var coverityDefects = (function () {
+    var PAGE_SIZE = 100;
+
+    function cell(row, text) {
+        var td = document.createElement("td");
+        td.appendChild(document.createTextNode(text));
+        row.appendChild(td);
+        return td;
+    }
+
+    return {
+        render: function (id, defectsUrl) {
+            var container = document.getElementById(id);
+            var body = container.querySelector("tbody");
+            var status = container.querySelector(".coverity-defects-status");
+            var filterInput = container.querySelector(".coverity-defects-filter");
+            var previous = container.querySelector(".coverity-defects-previous");
+            var next = container.querySelector(".coverity-defects-next");
+            var state = {start: 0, sort: "cid", order: "asc", filter: "", matching: 0};
+            var pending = null;
+
+            function load() {
+                if (pending) {
+                    pending.abort();
+                }
+                var request = new XMLHttpRequest();
+                pending = request;
+                request.open("GET", defectsUrl + "?start=" + state.start + "&size=" + PAGE_SIZE + "&sort=" + state.sort +
+                    "&order=" + state.order + "&filter=" + encodeURIComponent(state.filter));
+                request.onreadystatechange = function () {
+                    if (request.readyState !== 4 || pending !== request) {
+                        return;
+                    }
+                    pending = null;
+                    if (request.status !== 200) {
+                        status.textContent = "Unable to read the defects (" + request.status + ")";
+                        return;
+                    }
+                    show(JSON.parse(request.responseText));
+                };
+                request.send();
+            }
+
+            function show(page) {
+                state.matching = page.matching;
+                body.innerHTML = "";
+                page.defects.forEach(function (defect) {
+                    var row = document.createElement("tr");
+                    row.className = "pane";
+                    var cid = cell(row, "");
+                    if (page.urlPrefix) {
+                        var link = document.createElement("a");
+                        link.href = page.urlPrefix + defect.cid;
+                        link.appendChild(document.createTextNode(defect.cid));
+                        cid.appendChild(link);
+                    } else {
+                        cid.appendChild(document.createTextNode(defect.cid));
+                    }
+                    cell(row, defect.checker);
+                    cell(row, defect.function);
+                    cell(row, defect.file);
+                    body.appendChild(row);
+                });
+
+                var last = Math.min(page.start + page.defects.length, page.matching);
+                status.textContent = page.matching === 0 ? "No defects" :
+                    (page.start + 1) + " - " + last + " of " + page.matching +
+                    (page.matching !== page.total ? " (" + page.total + " in total)" : "");
+                previous.disabled = page.start === 0;
+                next.disabled = last >= page.matching;
+            }
+
+            var headers = container.querySelectorAll("th[data-sort]");
+            for (var i = 0; i < headers.length; i++) {
+                headers[i].style.cursor = "pointer";
+                headers[i].onclick = function () {
+                    var sort = this.getAttribute("data-sort");
+                    state.order = state.sort === sort && state.order === "asc" ? "desc" : "asc";
+                    state.sort = sort;
+                    state.start = 0;
+                    load();
+                };
+            }
+
+            var timer = null;
+            filterInput.onkeyup = function () {
+                clearTimeout(timer);
+                timer = setTimeout(function () {
+                    if (state.filter !== filterInput.value) {
+                        state.filter = filterInput.value;
+                        state.start = 0;
+                        load();
+                    }
+                }, 300);
+            };
+            previous.onclick = function () {
+                state.start = Math.max(0, state.start - PAGE_SIZE);
+                load();
+                return false;
+            };
+            next.onclick = function () {
+                state.start = state.start + PAGE_SIZE;
+                load();
+                return false;
+            };
+
+            load();
+        }
+    };
+})();
@@ -0,0 +1,152 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Synopsys, Inc
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Synopsys, Inc - initial implementation and documentation
+ *******************************************************************************/
+
+/*
+ * Draws the Coverity defect trend of a job as SVG from the JSON of the project action's trend endpoint. Streams can be
+ * hidden by clicking them in the legend, and the number of builds can be chosen. The image rendered on the controller
+ * is shown instead if the trend cannot be read.
+ */
+var coverityTrend = (function () {
+    var SVG_NS = "http://www.w3.org/2000/svg";
+    var COLORS = ["#d9534f", "#337ab7", "#5cb85c", "#f0ad4e", "#5bc0de", "#8e44ad", "#7f8c8d", "#2c3e50"];
+    var WIDTH = 600, HEIGHT = 300;
+    var MARGIN = {top: 10, right: 10, bottom: 30, left: 45};
+
+    function svg(name, attributes, parent) {
+        var element = document.createElementNS(SVG_NS, name);
+        for (var attribute in attributes) {
+            if (attributes.hasOwnProperty(attribute)) {
+                element.setAttribute(attribute, attributes[attribute]);
+            }
+        }
+        if (parent) {
+            parent.appendChild(element);
+        }
+        return element;
+    }
+
+    function niceMax(value) {
+        if (value <= 10) {
+            return 10;
+        }
+        var magnitude = Math.pow(10, Math.floor(Math.log(value) / Math.LN10));
+        return Math.ceil(value / magnitude) * magnitude;
+    }
+
+    function draw(container, trend, hidden) {
+        var chart = container.querySelector(".coverity-trend-chart");
+        var legend = container.querySelector(".coverity-trend-legend");
+        chart.innerHTML = "";
+        legend.innerHTML = "";
+
+        var builds = trend.builds;
+        var plotWidth = WIDTH - MARGIN.left - MARGIN.right;
+        var plotHeight = HEIGHT - MARGIN.top - MARGIN.bottom;
+        var max = 0;
+        trend.series.forEach(function (series) {
+            if (!hidden[series.name]) {
+                series.counts.forEach(function (count) {
+                    max = Math.max(max, count || 0);
+                });
+            }
+        });
+        max = niceMax(max);
+
+        function x(index) {
+            return MARGIN.left + (builds.length > 1 ? index * plotWidth / (builds.length - 1) : plotWidth / 2);
+        }
+
+        function y(count) {
+            return MARGIN.top + plotHeight - count * plotHeight / max;
+        }
+
+        var root = svg("svg", {width: WIDTH, height: HEIGHT, viewBox: "0 0 " + WIDTH + " " + HEIGHT}, chart);
+        for (var tick = 0; tick <= 4; tick++) {
+            var value = max * tick / 4;
+            svg("line", {x1: MARGIN.left, x2: WIDTH - MARGIN.right, y1: y(value), y2: y(value), stroke: "#ddd"}, root);
+            svg("text", {x: MARGIN.left - 5, y: y(value) + 4, "text-anchor": "end", "font-size": 11}, root).textContent = value;
+        }
+        if (builds.length > 0) {
+            svg("text", {x: x(0), y: HEIGHT - 10, "font-size": 11}, root).textContent = builds[0].displayName;
+            svg("text", {x: x(builds.length - 1), y: HEIGHT - 10, "text-anchor": "end", "font-size": 11}, root).textContent =
+                builds[builds.length - 1].displayName;
+        }
+
+        trend.series.forEach(function (series, seriesIndex) {
+            var color = COLORS[seriesIndex % COLORS.length];
+
+            var item = document.createElement("span");
+            item.style.cursor = "pointer";
+            item.style.marginLeft = "1em";
+            item.style.opacity = hidden[series.name] ? 0.4 : 1;
+            item.innerHTML = "<span style='color:" + color + "'>&#9632;</span> ";
+            item.appendChild(document.createTextNode(series.name));
+            item.onclick = function () {
+                hidden[series.name] = !hidden[series.name];
+                draw(container, trend, hidden);
+            };
+            legend.appendChild(item);
+
+            if (hidden[series.name]) {
+                return;
+            }
+            var line = svg("polyline", {fill: "none", stroke: color, "stroke-width": 2}, root);
+            var points = [];
+            series.counts.forEach(function (count, index) {
+                if (count === null) {
+                    return;
+                }
+                points.push(x(index) + "," + y(count));
+                var link = svg("a", {}, root);
+                link.setAttributeNS("http://www.w3.org/1999/xlink", "href", builds[index].number + "/coverity_defects/");
+                var point = svg("circle", {cx: x(index), cy: y(count), r: builds.length > 200 ? 1.5 : 3, fill: color}, link);
+                svg("title", {}, point).textContent = builds[index].displayName + " (" + series.name + "): " + count + " defects";
+            });
+            line.setAttribute("points", points.join(" "));
+        });
+    }
+
+    function showFallback(container) {
+        container.innerHTML = "<img src='" + container.getAttribute("data-image-url") + "' alt='[Coverity Defects]'/>";
+    }
+
+    function load(container, trendUrl, builds, hidden) {
+        var request = new XMLHttpRequest();
+        request.open("GET", trendUrl + "?builds=" + builds + "&points=" + Math.floor((WIDTH - MARGIN.left - MARGIN.right) / 2));
+        request.onreadystatechange = function () {
+            if (request.readyState !== 4) {
+                return;
+            }
+            if (request.status !== 200) {
+                showFallback(container);
+                return;
+            }
+            draw(container, JSON.parse(request.responseText), hidden);
+        };
+        request.send();
+    }
+
+    return {
+        render: function (id, trendUrl) {
+            var container = document.getElementById(id);
+            if (!container || !window.XMLHttpRequest || !document.createElementNS) {
+                return;
+            }
+
+            var hidden = {};
+            var select = container.querySelector(".coverity-trend-builds");
+            select.onchange = function () {
+                load(container, trendUrl, select.value, hidden);
+            };
+            load(container, trendUrl, select.value, hidden);
+        }
+    };
+})();
@@ -0,0 +1,142 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Synopsys, Inc
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Synopsys, Inc - initial implementation and documentation
+ *******************************************************************************/
+package jenkins.plugins.coverity;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import hudson.model.Job;
+import hudson.model.Run;
+
+public class CidHistoryIndexTest {
+    @Rule
+    public TemporaryFolder jobDirectory = new TemporaryFolder();
+
+    private Job job;
+
+    @Before
+    public void setup() {
+        job = mock(Job.class);
+        when(job.getRootDir()).thenReturn(jobDirectory.getRoot());
+    }
+
+    private Run createBuild(int number, Run previousBuild, long... cids) {
+        Run run = mock(Run.class);
+        List<CoverityDefect> defects = new ArrayList<>();
+        for (long cid : cids) {
+            defects.add(new CoverityDefect(cid, "TEST_CHECKER", "function()", "/src/file.c"));
+        }
+        CoverityBuildAction action = new CoverityBuildAction(run, "project0", "stream0", "test-cim-instance", defects);
+        when(run.getNumber()).thenReturn(number);
+        when(run.getAction(CoverityBuildAction.class)).thenReturn(action);
+        when(run.getActions(CoverityBuildAction.class)).thenReturn(Collections.singletonList(action));
+        when(run.getPreviousBuild()).thenReturn(previousBuild);
+        return run;
+    }
+
+    @Test
+    public void getHistory_returnsRangesOfBuilds() throws IOException {
+        CidHistoryIndex index = new CidHistoryIndex(job);
+        index.add(createBuild(1, null, 10001, 10002, 10003));
+        index.add(createBuild(2, null, 10002, 10003));
+        index.add(createBuild(4, null, 10001, 10002));
+
+        CidHistoryIndex.CidHistory history = index.getHistory(10001);
+        assertEquals(1, history.getFirstBuildNumber());
+        assertEquals(2, history.getRanges().size());
+        assertArrayEquals(new int[] {1, 1}, history.getRanges().get(0));
+        assertArrayEquals(new int[] {4, 4}, history.getRanges().get(1));
+        assertTrue(history.isPresent());
+
+        history = index.getHistory(10003);
+        assertEquals(1, history.getRanges().size());
+        assertArrayEquals(new int[] {1, 2}, history.getRanges().get(0));
+        assertFalse(history.isPresent());
+
+        history = index.getHistory(10002);
+        assertArrayEquals(new int[] {1, 4}, history.getRanges().get(0));
+
+        history = index.getHistory(99999);
+        assertEquals(-1, history.getFirstBuildNumber());
+        assertEquals(4, history.getLastBuildNumber());
+    }
+
+    @Test
+    public void getHistory_withoutIndex_readsBuilds() throws IOException {
+        Run firstBuild = createBuild(1, null, 10001);
+        Run secondBuild = createBuild(2, firstBuild, 10001, 10002);
+        when(job.getLastCompletedBuild()).thenReturn(secondBuild);
+        CidHistoryIndex index = new CidHistoryIndex(job);
+
+        assertArrayEquals(new int[] {2, 2}, index.getHistory(10002).getRanges().get(0));
+
+        // builds which are already part of the index are ignored
+        index.add(createBuild(2, null, 10003));
+        index.add(createBuild(3, null, 10002));
+        assertArrayEquals(new int[] {2, 3}, index.getHistory(10002).getRanges().get(0));
+        assertArrayEquals(new int[] {1, 2}, index.getHistory(10001).getRanges().get(0));
+    }
+
+    @Test
+    public void add_afterInterruptedAdd_appliesRecordOfLog() throws IOException {
+        CidHistoryIndex index = new CidHistoryIndex(job);
+        index.add(createBuild(1, null, 10001, 10002));
+        File lastFile = new File(jobDirectory.getRoot(), CidHistoryIndex.LAST_FILE_NAME);
+        byte[] lastOfFirstBuild = Files.readAllBytes(lastFile.toPath());
+
+        // the record of the second build is in the log, but the last file was not replaced
+        index.add(createBuild(2, null, 10002, 10003));
+        Files.write(lastFile.toPath(), lastOfFirstBuild);
+
+        index.add(createBuild(2, null, 10002, 10003));
+        index.add(createBuild(3, null, 10003));
+
+        assertEquals(1, index.getHistory(10001).getRanges().size());
+        assertArrayEquals(new int[] {1, 1}, index.getHistory(10001).getRanges().get(0));
+        assertArrayEquals(new int[] {1, 2}, index.getHistory(10002).getRanges().get(0));
+        assertEquals(1, index.getHistory(10003).getRanges().size());
+        assertArrayEquals(new int[] {2, 3}, index.getHistory(10003).getRanges().get(0));
+    }
+
+    @Test
+    public void add_withIncompleteRecord_removesRecordFromLog() throws IOException {
+        CidHistoryIndex index = new CidHistoryIndex(job);
+        index.add(createBuild(1, null, 10001));
+        File logFile = new File(jobDirectory.getRoot(), CidHistoryIndex.LOG_FILE_NAME);
+        long logLength = logFile.length();
+
+        // the number of the second build and the start of its new CIDs
+        Files.write(logFile.toPath(), new byte[] {2, 1}, StandardOpenOption.APPEND);
+        assertArrayEquals(new int[] {1, 1}, index.getHistory(10001).getRanges().get(0));
+
+        index.add(createBuild(2, null, 10001, 10002));
+        assertTrue(logFile.length() > logLength);
+        assertArrayEquals(new int[] {1, 2}, index.getHistory(10001).getRanges().get(0));
+        assertArrayEquals(new int[] {2, 2}, index.getHistory(10002).getRanges().get(0));
+    }
+}
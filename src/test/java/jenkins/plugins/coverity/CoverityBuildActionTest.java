@@ -20,6 +20,8 @@ import hudson.model.FreeStyleBuild;
 import hudson.model.Run;
 import hudson.util.Secret;
 import hudson.util.XStream2;
+import net.sf.json.JSONArray;
+import net.sf.json.JSONObject;
 import jenkins.model.Jenkins;
 import jenkins.plugins.coverity.CoverityPublisher.DescriptorImpl;
 import jenkins.plugins.coverity.Utils.CIMInstanceBuilder;
@@ -31,13 +33,16 @@ import jenkins.plugins.coverity.ws.TestWebServiceFactory.TestConfigurationServic
 import jenkins.plugins.coverity.ws.WebServiceFactory;
 import org.apache.commons.lang.StringUtils;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.junit.runner.RunWith;
 import org.mockito.Mock;
 import org.powermock.api.mockito.PowerMockito;
 import org.powermock.core.classloader.annotations.PrepareForTest;
 import org.powermock.modules.junit4.PowerMockRunner;
 
+import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
@@ -47,6 +52,8 @@ import static org.hamcrest.CoreMatchers.instanceOf;
 import static org.junit.Assert.*;
 import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @RunWith(PowerMockRunner.class)
@@ -55,6 +62,9 @@ public class CoverityBuildActionTest {
     @Mock
     private Jenkins jenkins;
 
+    @Rule
+    public TemporaryFolder buildDirectory = new TemporaryFolder();
+
     private CIMInstance cimInstance;
 
     @Before
@@ -96,6 +106,42 @@ public class CoverityBuildActionTest {
         assertEquals(expectedUrl, url);
     }
 
+    @Test
+    public void getDefectPage_returnsSortedPage() {
+        List<CoverityDefect> defects = new ArrayList<>();
+        for (long cid = 0; cid < 250; cid++) {
+            defects.add(new CoverityDefect(cid, "CHECKER_" + (cid % 3), "function" + cid + "()", "/src/file" + (cid % 10) + ".c"));
+        }
+
+        JSONObject page = CoverityBuildAction.getDefectPage(defects, 100, 100, "cid", true, null);
+        assertEquals(250, page.getInt("total"));
+        assertEquals(250, page.getInt("matching"));
+        JSONArray rows = page.getJSONArray("defects");
+        assertEquals(100, rows.size());
+        assertEquals(149, rows.getJSONObject(0).getLong("cid"));
+
+        page = CoverityBuildAction.getDefectPage(defects, 200, 100, "checker", false, null);
+        rows = page.getJSONArray("defects");
+        assertEquals(50, rows.size());
+        assertEquals("CHECKER_2", rows.getJSONObject(0).getString("checker"));
+    }
+
+    @Test
+    public void getDefectPage_withFilter_returnsMatchingDefects() {
+        List<CoverityDefect> defects = new ArrayList<>();
+        defects.add(new CoverityDefect(10001L, "NULL_RETURNS", "main()", "/src/main.c"));
+        defects.add(new CoverityDefect(10002L, "RESOURCE_LEAK", "open()", "/src/io.c"));
+        defects.add(new CoverityDefect(10003L, "RESOURCE_LEAK", "close()", null));
+
+        JSONObject page = CoverityBuildAction.getDefectPage(defects, 0, 100, "file", false, "leak");
+        assertEquals(3, page.getInt("total"));
+        assertEquals(2, page.getInt("matching"));
+        JSONArray rows = page.getJSONArray("defects");
+        assertEquals(10003L, rows.getJSONObject(0).getLong("cid"));
+        assertEquals("", rows.getJSONObject(0).getString("file"));
+        assertEquals(10002L, rows.getJSONObject(1).getLong("cid"));
+    }
+
     @Test
     public void getDefects_forPre190Build_returnsDefectIds() {
         String oldBuildXml = "<jenkins.plugins.coverity.CoverityBuildAction plugin=\"coverity@1.8.1\">\n" +
@@ -127,6 +173,120 @@ public class CoverityBuildActionTest {
         assertEquals(StringUtils.EMPTY, defects.get(1).getFilePathname());
     }
 
+    @Test
+    public void getDefects_withBuildDirectory_readsDefectsFromFile() throws IOException {
+        Run run = mock(Run.class);
+        when(run.getRootDir()).thenReturn(buildDirectory.getRoot());
+        List<CoverityDefect> defects = new ArrayList<>();
+        defects.add(new CoverityDefect(Long.valueOf(1234), "CHECKER_NAME", "functionDisplayName", "/path/to/class"));
+        defects.add(new CoverityDefect(Long.valueOf(1235), "CHECKER_NAME", "otherFunction", null));
+
+        new CoverityBuildAction(run, "project0", "stream1", cimInstance.getName(), defects);
+
+        File[] files = buildDirectory.getRoot().listFiles();
+        assertEquals(1, files.length);
+
+        String buildXml = "<jenkins.plugins.coverity.CoverityBuildAction plugin=\"coverity@1.11.0\">\n" +
+            "      <projectId>project0</projectId>\n" +
+            "      <streamId>stream1</streamId>\n" +
+            "      <cimInstance>test-cim-instance</cimInstance>\n" +
+            "      <defectsFile>" + files[0].getName() + "</defectsFile>\n" +
+            "      <defectCount>2</defectCount>\n" +
+            "    </jenkins.plugins.coverity.CoverityBuildAction>";
+        final CoverityBuildAction coverityBuildAction = (CoverityBuildAction)new XStream2().fromXML(buildXml);
+        coverityBuildAction.onLoad(run);
+
+        assertEquals(2, coverityBuildAction.getDefectCount());
+        final List<CoverityDefect> loadedDefects = coverityBuildAction.getDefects();
+        assertEquals(2, loadedDefects.size());
+        assertEquals(Long.valueOf(1234), loadedDefects.get(0).getCid());
+        assertEquals("CHECKER_NAME", loadedDefects.get(0).getCheckerName());
+        assertEquals("functionDisplayName", loadedDefects.get(0).getFunctionDisplayName());
+        assertEquals("/path/to/class", loadedDefects.get(0).getFilePathname());
+        assertEquals(Long.valueOf(1235), loadedDefects.get(1).getCid());
+        assertEquals("otherFunction", loadedDefects.get(1).getFunctionDisplayName());
+        assertNull(loadedDefects.get(1).getFilePathname());
+        verify(run, never()).save();
+    }
+
+    @Test
+    public void getDefects_withTwoActionsForSameStream_keepsDefectsApart() {
+        Run run = mock(Run.class);
+        when(run.getRootDir()).thenReturn(buildDirectory.getRoot());
+        List<CoverityDefect> firstDefects = new ArrayList<>();
+        firstDefects.add(new CoverityDefect(Long.valueOf(1234), "CHECKER_NAME", "functionDisplayName", "/path/to/class"));
+        List<CoverityDefect> secondDefects = new ArrayList<>();
+        secondDefects.add(new CoverityDefect(Long.valueOf(1235), "CHECKER_NAME", "otherFunction", null));
+        secondDefects.add(new CoverityDefect(Long.valueOf(1236), "CHECKER_NAME", "otherFunction", null));
+
+        CoverityBuildAction first = new CoverityBuildAction(run, "project0", "stream1", cimInstance.getName(), firstDefects);
+        CoverityBuildAction second = new CoverityBuildAction(run, "project0", "stream1", cimInstance.getName(), secondDefects);
+
+        assertEquals(2, buildDirectory.getRoot().listFiles().length);
+        assertEquals(1, first.getDefectCount());
+        assertEquals(2, second.getDefectCount());
+        assertEquals(2, second.getDefects().size());
+    }
+
+    @Test
+    public void setDefectDiff_storesCidsOutsideBuildXml() {
+        Run run = mock(Run.class);
+        when(run.getRootDir()).thenReturn(buildDirectory.getRoot());
+        List<CoverityDefect> defects = new ArrayList<>();
+        defects.add(new CoverityDefect(Long.valueOf(1234), "CHECKER_NAME", "functionDisplayName", "/path/to/class"));
+
+        CoverityBuildAction action = new CoverityBuildAction(run, "project0", "stream1", cimInstance.getName(), defects);
+        action.setDefectDiff(DefectDiff.compare(new long[] {1230, 1233}, new long[] {1233, 1234}));
+        assertEquals(2, buildDirectory.getRoot().listFiles().length);
+
+        final String buildXml = new XStream2().toXML(action);
+        assertFalse(buildXml.contains("<newCids>"));
+        assertFalse(buildXml.contains("<defectDiff>"));
+
+        final CoverityBuildAction loadedAction = (CoverityBuildAction)new XStream2().fromXML(buildXml);
+        loadedAction.onLoad(run);
+        assertEquals(Integer.valueOf(1), loadedAction.getNewDefectCount());
+        assertEquals(Integer.valueOf(1), loadedAction.getFixedDefectCount());
+        assertEquals(Integer.valueOf(1), loadedAction.getPersistingDefectCount());
+        assertArrayEquals(new long[] {1234}, loadedAction.getDefectDiff().getNewCids());
+        assertArrayEquals(new long[] {1230}, loadedAction.getDefectDiff().getFixedCids());
+    }
+
+    @Test
+    public void save_withDefectsInBuildXml_movesDefectsToFile() throws IOException {
+        String oldBuildXml = "<jenkins.plugins.coverity.CoverityBuildAction plugin=\"coverity@1.10.0\">\n" +
+            "      <projectId>project0</projectId>\n" +
+            "      <streamId>stream1</streamId>\n" +
+            "      <cimInstance>test-cim-instance</cimInstance>\n" +
+            "      <defects>\n" +
+            "        <jenkins.plugins.coverity.CoverityDefect>\n" +
+            "          <cid>10260</cid>\n" +
+            "          <checkerName>NULL_RETURNS</checkerName>\n" +
+            "          <functionDisplayName>main()</functionDisplayName>\n" +
+            "          <filePathname>/src/main.c</filePathname>\n" +
+            "        </jenkins.plugins.coverity.CoverityDefect>\n" +
+            "      </defects>\n" +
+            "    </jenkins.plugins.coverity.CoverityBuildAction>";
+        Run run = mock(Run.class);
+        when(run.getRootDir()).thenReturn(buildDirectory.getRoot());
+
+        final CoverityBuildAction coverityBuildAction = (CoverityBuildAction)new XStream2().fromXML(oldBuildXml);
+        coverityBuildAction.onLoad(run);
+
+        verify(run, never()).save();
+        assertEquals(0, buildDirectory.getRoot().listFiles().length);
+        assertEquals(1, coverityBuildAction.getDefectCount());
+        assertEquals(Long.valueOf(10260), coverityBuildAction.getDefects().get(0).getCid());
+
+        final String buildXml = new XStream2().toXML(coverityBuildAction);
+        assertEquals(1, buildDirectory.getRoot().listFiles().length);
+        assertFalse(buildXml.contains("<defects>"));
+        assertTrue(buildXml.contains("<defectsFile>"));
+        assertEquals(1, coverityBuildAction.getDefectCount());
+        assertEquals(Long.valueOf(10260), coverityBuildAction.getDefects().get(0).getCid());
+        assertEquals("NULL_RETURNS", coverityBuildAction.getDefects().get(0).getCheckerName());
+    }
+
     @Test
     public void getProjectActions_includesCoverityProjectAction() {
         CoverityBuildAction coverityBuildAction = new CoverityBuildAction(mock(Run.class), "project0", "stream1", cimInstance.getName(), new ArrayList<CoverityDefect>());
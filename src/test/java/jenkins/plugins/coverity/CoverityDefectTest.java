@@ -0,0 +1,50 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Synopsys, Inc
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Synopsys, Inc - initial implementation and documentation
+ *******************************************************************************/
+package jenkins.plugins.coverity;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+import hudson.util.XStream2;
+
+public class CoverityDefectTest {
+    @Test
+    public void constructor_sharesEqualStrings() {
+        CoverityDefect first = new CoverityDefect(10001L, new String("NULL_RETURNS"), new String("main()"), new String("/src/main.c"));
+        CoverityDefect second = new CoverityDefect(10002L, new String("NULL_RETURNS"), new String("main()"), null);
+
+        assertSame(first.getCheckerName(), second.getCheckerName());
+        assertSame(first.getFunctionDisplayName(), second.getFunctionDisplayName());
+        assertNull(second.getFilePathname());
+    }
+
+    @Test
+    public void readResolve_sharesStringsOfUnmarshalledDefects() {
+        String defectXml = "<jenkins.plugins.coverity.CoverityDefect>\n" +
+            "  <cid>10260</cid>\n" +
+            "  <checkerName>RESOURCE_LEAK</checkerName>\n" +
+            "  <functionDisplayName>close()</functionDisplayName>\n" +
+            "  <filePathname>/src/io.c</filePathname>\n" +
+            "</jenkins.plugins.coverity.CoverityDefect>";
+        XStream2 xstream = new XStream2();
+
+        CoverityDefect first = (CoverityDefect)xstream.fromXML(defectXml);
+        CoverityDefect second = (CoverityDefect)xstream.fromXML(defectXml);
+
+        assertEquals(Long.valueOf(10260), first.getCid());
+        assertSame(first.getCheckerName(), second.getCheckerName());
+        assertSame(first.getFunctionDisplayName(), second.getFunctionDisplayName());
+        assertSame(first.getFilePathname(), second.getFilePathname());
+    }
+}
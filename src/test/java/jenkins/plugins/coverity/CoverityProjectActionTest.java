@@ -0,0 +1,76 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Synopsys, Inc
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Synopsys, Inc - initial implementation and documentation
+ *******************************************************************************/
+package jenkins.plugins.coverity;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import net.sf.json.JSONArray;
+import net.sf.json.JSONNull;
+import net.sf.json.JSONObject;
+
+public class CoverityProjectActionTest {
+    /**
+     * Creates trend index entries for the builds, the newest build first, with a second stream in even builds
+     */
+    private static List<CoverityTrendIndex.Entry> createEntries(int builds) {
+        List<CoverityTrendIndex.Entry> entries = new ArrayList<>();
+        for (int number = builds; number > 0; number--) {
+            entries.add(new CoverityTrendIndex.Entry(number, number * 10, "stream0", "#" + number));
+            if (number % 2 == 0) {
+                entries.add(new CoverityTrendIndex.Entry(number, number, "stream1", "#" + number));
+            }
+        }
+        return entries;
+    }
+
+    @Test
+    public void getTrend_returnsLastBuildsOldestFirst() {
+        JSONObject trend = CoverityProjectAction.getTrend(createEntries(10), 3, 0, null);
+
+        JSONArray builds = trend.getJSONArray("builds");
+        assertEquals(3, builds.size());
+        assertEquals(8, builds.getJSONObject(0).getInt("number"));
+        assertEquals("#10", builds.getJSONObject(2).getString("displayName"));
+
+        JSONArray series = trend.getJSONArray("series");
+        assertEquals(2, series.size());
+        assertEquals("stream0", series.getJSONObject(0).getString("name"));
+        assertEquals(80, series.getJSONObject(0).getJSONArray("counts").getInt(0));
+        assertEquals("stream1", series.getJSONObject(1).getString("name"));
+        assertTrue(JSONNull.getInstance().equals(series.getJSONObject(1).getJSONArray("counts").get(1)));
+    }
+
+    @Test
+    public void getTrend_withStream_returnsOnlyBuildsOfStream() {
+        JSONObject trend = CoverityProjectAction.getTrend(createEntries(10), 100, 0, "stream1");
+
+        assertEquals(5, trend.getJSONArray("builds").size());
+        assertEquals(1, trend.getJSONArray("series").size());
+        assertEquals(2, trend.getJSONArray("streams").size());
+    }
+
+    @Test
+    public void getTrend_withPoints_downsamplesBuilds() {
+        JSONObject trend = CoverityProjectAction.getTrend(createEntries(1000), 1000, 5, null);
+
+        JSONArray builds = trend.getJSONArray("builds");
+        assertEquals(5, builds.size());
+        assertEquals(1, builds.getJSONObject(0).getInt("number"));
+        assertEquals(500, builds.getJSONObject(2).getInt("number"));
+        assertEquals(1000, builds.getJSONObject(4).getInt("number"));
+    }
+}
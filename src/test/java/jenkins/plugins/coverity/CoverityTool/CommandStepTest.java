@@ -0,0 +1,143 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Synopsys, Inc
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Synopsys, Inc - initial implementation and documentation
+ *******************************************************************************/
+package jenkins.plugins.coverity.CoverityTool;
+
+import hudson.EnvVars;
+import hudson.Launcher;
+import hudson.model.AbstractBuild;
+import hudson.model.TaskListener;
+import jenkins.plugins.coverity.CoverityPublisher;
+import jenkins.plugins.coverity.CoverityUtils;
+import jenkins.plugins.coverity.Utils.CoverityPublisherBuilder;
+import jenkins.plugins.coverity.Utils.InvocationAssistanceBuilder;
+import jenkins.plugins.coverity.Utils.ScmOptionBlockBuilder;
+import org.apache.commons.lang.StringUtils;
+import org.junit.Test;
+import org.mockito.Matchers;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.powermock.api.mockito.PowerMockito.when;
+
+public class CommandStepTest extends CommandTestBase {
+
+    private CoverityPublisher createPublisher() {
+        return new CoverityPublisherBuilder()
+                .withInvocationAssistance(new InvocationAssistanceBuilder().build())
+                .withScmOptionBlock(new ScmOptionBlockBuilder().withScmSystem("git").build())
+                .build();
+    }
+
+    @Test
+    public void getDependencies_scmImportDoesNotBlockAnalysis() {
+        CoverityPublisher publisher = createPublisher();
+        StepScheduler.Step history = new StepScheduler.CommandStep("cov-manage-history",
+                new CovManageHistoryCommand(build, launcher, listener, publisher, StringUtils.EMPTY, envVars, null, null));
+        StepScheduler.Step scm = new StepScheduler.CommandStep("cov-import-scm",
+                new CovImportScmCommand(build, launcher, listener, publisher, StringUtils.EMPTY, envVars));
+        StepScheduler.Step analyze = new StepScheduler.CommandStep("cov-analyze",
+                new CovAnalyzeCommand(build, launcher, listener, publisher, StringUtils.EMPTY, envVars));
+        StepScheduler.Step commit = new StepScheduler.CommandStep("cov-commit-defects",
+                new CovCommitDefectsCommand(build, launcher, listener, publisher, StringUtils.EMPTY, envVars, null, null));
+
+        List<StepScheduler.Step> steps = new ArrayList<>();
+        Collections.addAll(steps, history, scm, analyze, commit);
+        Map<StepScheduler.Step, List<StepScheduler.Step>> dependencies = StepScheduler.getDependencies(steps);
+
+        assertTrue(dependencies.get(scm).isEmpty());
+        assertEquals(Collections.singletonList(history), dependencies.get(analyze));
+        assertTrue(dependencies.get(commit).contains(scm));
+        assertTrue(dependencies.get(commit).contains(analyze));
+    }
+
+    @Test
+    public void run_overlapsScmImportAndAnalysis() throws IOException, InterruptedException {
+        // each command waits until the other one has started as well
+        final CountDownLatch started = new CountDownLatch(2);
+        final List<String> commands = Collections.synchronizedList(new ArrayList<String>());
+        when(
+                CoverityUtils.runCmd(
+                        Matchers.anyList(),
+                        Matchers.any(AbstractBuild.class),
+                        Matchers.any(Launcher.class),
+                        Matchers.any(TaskListener.class),
+                        Matchers.any(EnvVars.class),
+                        Matchers.anyBoolean())).thenAnswer(new Answer<Integer>() {
+            public Integer answer(InvocationOnMock mock) throws Throwable {
+                started.countDown();
+                if (!started.await(10, TimeUnit.SECONDS)) {
+                    return 1;
+                }
+                commands.add((String)((List<?>)mock.getArguments()[0]).get(0));
+                return 0;
+            }
+        });
+
+        CoverityPublisher publisher = createPublisher();
+        StepScheduler scheduler = new StepScheduler(new PrintStream(new ByteArrayOutputStream()), 2);
+        scheduler.add(new StepScheduler.CommandStep("cov-import-scm",
+                new CovImportScmCommand(build, launcher, listener, publisher, StringUtils.EMPTY, envVars)));
+        scheduler.add(new StepScheduler.CommandStep("cov-analyze",
+                new CovAnalyzeCommand(build, launcher, listener, publisher, StringUtils.EMPTY, envVars)));
+
+        assertTrue(scheduler.run());
+        assertEquals(2, commands.size());
+        assertFalse(commands.contains(null));
+    }
+
+    @Test
+    public void run_passesEnvironmentVariablesToLaterSteps() throws IOException, InterruptedException {
+        final Map<String, String> analyzeEnvironment = new HashMap<>();
+        when(
+                CoverityUtils.runCmd(
+                        Matchers.anyList(),
+                        Matchers.any(AbstractBuild.class),
+                        Matchers.any(Launcher.class),
+                        Matchers.any(TaskListener.class),
+                        Matchers.any(EnvVars.class),
+                        Matchers.anyBoolean())).thenAnswer(new Answer<Integer>() {
+            public Integer answer(InvocationOnMock mock) throws Throwable {
+                if ("cov-analyze".equals(((List<?>)mock.getArguments()[0]).get(0))) {
+                    analyzeEnvironment.putAll((EnvVars)mock.getArguments()[4]);
+                }
+                return 0;
+            }
+        });
+
+        CoverityPublisher publisher = new CoverityPublisherBuilder()
+                .withInvocationAssistance(new InvocationAssistanceBuilder().build())
+                .withScmOptionBlock(new ScmOptionBlockBuilder().withScmSystem("perforce").withP4Port("perforce:1666").build())
+                .build();
+        StepScheduler scheduler = new StepScheduler(new PrintStream(new ByteArrayOutputStream()), 1);
+        scheduler.add(new StepScheduler.CommandStep("cov-import-scm",
+                new CovImportScmCommand(build, launcher, listener, publisher, StringUtils.EMPTY, envVars)));
+        scheduler.add(new StepScheduler.CommandStep("cov-analyze",
+                new CovAnalyzeCommand(build, launcher, listener, publisher, StringUtils.EMPTY, envVars)));
+
+        assertTrue(scheduler.run());
+        assertEquals("perforce:1666", analyzeEnvironment.get("P4PORT"));
+        assertEquals("perforce:1666", envVars.get("P4PORT"));
+    }
+}
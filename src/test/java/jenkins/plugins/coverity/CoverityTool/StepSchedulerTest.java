@@ -0,0 +1,159 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Synopsys, Inc
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Synopsys, Inc - initial implementation and documentation
+ *******************************************************************************/
+package jenkins.plugins.coverity.CoverityTool;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class StepSchedulerTest {
+    private final ByteArrayOutputStream output = new ByteArrayOutputStream();
+    private final List<String> completed = Collections.synchronizedList(new ArrayList<String>());
+
+    private class TestStep extends StepScheduler.Step {
+        private final Set<IntermediateData> inputs;
+        private final Set<IntermediateData> outputs;
+        private int result;
+        private boolean canRun = true;
+        private CountDownLatch latch;
+        // the steps which had completed when the step was checked
+        private List<String> checkedAfter;
+
+        TestStep(String name, Set<IntermediateData> inputs, Set<IntermediateData> outputs) {
+            super(name);
+            this.inputs = inputs;
+            this.outputs = outputs;
+        }
+
+        @Override
+        public Set<IntermediateData> getInputs() {
+            return inputs;
+        }
+
+        @Override
+        public Set<IntermediateData> getOutputs() {
+            return outputs;
+        }
+
+        @Override
+        protected boolean canRun() {
+            checkedAfter = new ArrayList<>(completed);
+            return canRun;
+        }
+
+        @Override
+        protected int run() throws IOException, InterruptedException {
+            if (latch != null) {
+                // waits for the other steps which count down the latch
+                latch.countDown();
+                if (!latch.await(10, TimeUnit.SECONDS)) {
+                    return 1;
+                }
+            }
+            completed.add(getName());
+            return result;
+        }
+    }
+
+    private static final Set<IntermediateData> NONE = EnumSet.noneOf(IntermediateData.class);
+
+    @Test
+    public void getDependencies_followsData() {
+        TestStep capture = new TestStep("capture", NONE, EnumSet.of(IntermediateData.EMIT));
+        TestStep postCapture = new TestStep("post capture", EnumSet.of(IntermediateData.EMIT), EnumSet.of(IntermediateData.EMIT));
+        TestStep history = new TestStep("history", EnumSet.of(IntermediateData.SNAPSHOTS), EnumSet.of(IntermediateData.HISTORY));
+        TestStep scm = new TestStep("scm", EnumSet.of(IntermediateData.EMIT), EnumSet.of(IntermediateData.SCM));
+        TestStep commit = new TestStep("commit", EnumSet.of(IntermediateData.EMIT), EnumSet.of(IntermediateData.SNAPSHOTS));
+
+        Map<StepScheduler.Step, List<StepScheduler.Step>> dependencies =
+            StepScheduler.getDependencies(Arrays.<StepScheduler.Step>asList(capture, postCapture, history, scm, commit));
+
+        assertEquals(Arrays.asList(capture), dependencies.get(postCapture));
+        assertTrue(dependencies.get(history).isEmpty());
+        assertEquals(Arrays.asList(capture, postCapture), dependencies.get(scm));
+        // the history has to be downloaded before the snapshot is committed
+        assertEquals(Arrays.asList(capture, postCapture, history), dependencies.get(commit));
+    }
+
+    @Test
+    public void run_startsIndependentStepsConcurrently() throws IOException, InterruptedException {
+        StepScheduler scheduler = new StepScheduler(new PrintStream(output), 2);
+        CountDownLatch latch = new CountDownLatch(2);
+        scheduler.add(new TestStep("capture", NONE, EnumSet.of(IntermediateData.EMIT))).latch = latch;
+        scheduler.add(new TestStep("history", NONE, EnumSet.of(IntermediateData.HISTORY))).latch = latch;
+        TestStep analyze = scheduler.add(new TestStep("analyze",
+            EnumSet.of(IntermediateData.EMIT, IntermediateData.HISTORY), EnumSet.of(IntermediateData.ANALYSIS)));
+
+        assertTrue(scheduler.run());
+        assertEquals(3, completed.size());
+        assertEquals("analyze", completed.get(2));
+        assertEquals(StepScheduler.Step.Status.SUCCEEDED, analyze.getStatus());
+        assertTrue(analyze.getDuration() >= 0);
+    }
+
+    @Test
+    public void run_skipsStepsWhichCannotRun() throws IOException, InterruptedException {
+        StepScheduler scheduler = new StepScheduler(new PrintStream(output), 2);
+        TestStep capture = scheduler.add(new TestStep("capture", NONE, EnumSet.of(IntermediateData.EMIT)));
+        TestStep scm = scheduler.add(new TestStep("scm", EnumSet.of(IntermediateData.EMIT), EnumSet.of(IntermediateData.SCM)));
+        scm.canRun = false;
+        scheduler.add(new TestStep("analyze", EnumSet.of(IntermediateData.EMIT, IntermediateData.SCM), EnumSet.of(IntermediateData.ANALYSIS)));
+
+        assertTrue(scheduler.run());
+        assertEquals(Arrays.asList("capture", "analyze"), completed);
+        assertEquals(StepScheduler.Step.Status.SUCCEEDED, capture.getStatus());
+        assertEquals(StepScheduler.Step.Status.SKIPPED, scm.getStatus());
+        assertEquals(-1, scm.getDuration());
+    }
+
+    @Test
+    public void run_checksStepsWhenTheirTurnComes() throws IOException, InterruptedException {
+        StepScheduler scheduler = new StepScheduler(new PrintStream(output), 1);
+        scheduler.add(new TestStep("capture", NONE, EnumSet.of(IntermediateData.EMIT)));
+        TestStep history = scheduler.add(new TestStep("history", NONE, EnumSet.of(IntermediateData.HISTORY)));
+        history.canRun = false;
+        TestStep analyze = scheduler.add(new TestStep("analyze", EnumSet.of(IntermediateData.EMIT), EnumSet.of(IntermediateData.ANALYSIS)));
+
+        assertTrue(scheduler.run());
+        assertEquals(Arrays.asList("capture"), history.checkedAfter);
+        assertEquals(Arrays.asList("capture"), analyze.checkedAfter);
+    }
+
+    @Test
+    public void run_stopsAfterFailedStep() throws IOException, InterruptedException {
+        StepScheduler scheduler = new StepScheduler(new PrintStream(output), 1);
+        scheduler.add(new TestStep("capture", NONE, EnumSet.of(IntermediateData.EMIT)));
+        TestStep analyze = scheduler.add(new TestStep("cov-analyze", EnumSet.of(IntermediateData.EMIT), EnumSet.of(IntermediateData.ANALYSIS)));
+        analyze.result = 3;
+        TestStep commit = scheduler.add(new TestStep("commit", EnumSet.of(IntermediateData.ANALYSIS), EnumSet.of(IntermediateData.SNAPSHOTS)));
+
+        assertFalse(scheduler.run());
+        assertEquals(Arrays.asList("capture", "cov-analyze"), completed);
+        assertEquals(StepScheduler.Step.Status.FAILED, analyze.getStatus());
+        assertEquals(StepScheduler.Step.Status.PENDING, commit.getStatus());
+        assertTrue(output.toString().contains("[Coverity] cov-analyze returned 3, aborting..."));
+    }
+}
@@ -0,0 +1,131 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Synopsys, Inc
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Synopsys, Inc - initial implementation and documentation
+ *******************************************************************************/
+package jenkins.plugins.coverity;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import hudson.model.Job;
+import hudson.model.Run;
+
+public class CoverityTrendIndexTest {
+    @Rule
+    public TemporaryFolder jobDirectory = new TemporaryFolder();
+
+    private Job job;
+
+    @Before
+    public void setup() {
+        job = mock(Job.class);
+        when(job.getRootDir()).thenReturn(jobDirectory.getRoot());
+    }
+
+    private Run createBuild(int number, int defectCount, Run previousBuild) {
+        Run run = mock(Run.class);
+        List<CoverityDefect> defects = new ArrayList<>();
+        for (long cid = 0; cid < defectCount; cid++) {
+            defects.add(new CoverityDefect(cid, "TEST_CHECKER", "function()", "/src/file.c"));
+        }
+        CoverityBuildAction action = new CoverityBuildAction(run, "project0", "stream0", "test-cim-instance", defects);
+        when(run.getNumber()).thenReturn(number);
+        when(run.getDisplayName()).thenReturn("#" + number);
+        when(run.getActions(CoverityBuildAction.class)).thenReturn(Collections.singletonList(action));
+        when(run.getPreviousBuild()).thenReturn(previousBuild);
+        return run;
+    }
+
+    private List<String> readIndexFile() throws IOException {
+        return Files.readAllLines(new File(jobDirectory.getRoot(), CoverityTrendIndex.INDEX_FILE_NAME).toPath(), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void getEntries_withoutIndex_readsBuildsOnce() {
+        Run firstBuild = createBuild(1, 10, null);
+        Run secondBuild = createBuild(2, 7, firstBuild);
+        when(job.getLastCompletedBuild()).thenReturn(secondBuild);
+        CoverityTrendIndex index = new CoverityTrendIndex(job);
+
+        List<CoverityTrendIndex.Entry> entries = index.getEntries();
+        assertEquals(2, entries.size());
+        assertEquals(2, entries.get(0).getBuildNumber());
+        assertEquals(7, entries.get(0).getDefectCount());
+        assertEquals("Coverity Defects (stream0)", entries.get(0).getGraphDisplayName());
+        assertEquals(1, entries.get(1).getBuildNumber());
+        assertEquals(10, entries.get(1).getDefectCount());
+
+        assertEquals(2, new CoverityTrendIndex(job).getEntries().size());
+        verify(job, times(1)).getLastCompletedBuild();
+    }
+
+    @Test
+    public void add_replacesEntriesOfBuild() {
+        CoverityTrendIndex index = new CoverityTrendIndex(job);
+        index.add(createBuild(1, 10, null));
+        index.add(createBuild(2, 7, null));
+        index.add(createBuild(2, 5, null));
+
+        List<CoverityTrendIndex.Entry> entries = index.getEntries();
+        assertEquals(2, entries.size());
+        assertEquals(2, entries.get(0).getBuildNumber());
+        assertEquals(5, entries.get(0).getDefectCount());
+        assertEquals("#2", entries.get(0).getBuildDisplayName());
+    }
+
+    @Test
+    public void remove_compactsIndex() throws IOException {
+        CoverityTrendIndex index = new CoverityTrendIndex(job);
+        for (int number = 1; number <= 5; number++) {
+            index.add(createBuild(number, number, null));
+        }
+
+        index.remove(1);
+        index.remove(2);
+        assertEquals(3, index.getEntries().size());
+
+        index.remove(3);
+        List<CoverityTrendIndex.Entry> entries = index.getEntries();
+        assertEquals(2, entries.size());
+        assertEquals(5, entries.get(0).getBuildNumber());
+        assertEquals(4, entries.get(1).getBuildNumber());
+        assertTrue(readIndexFile().size() <= 4);
+    }
+
+    @Test
+    public void addAndRemove_bumpModificationCount() {
+        CoverityTrendIndex index = new CoverityTrendIndex(job);
+        assertEquals(0, index.getModificationCount());
+
+        index.add(createBuild(1, 10, null));
+        index.add(createBuild(2, 10, null));
+        index.remove(1);
+        assertEquals(3, index.getModificationCount());
+
+        index.getEntries();
+        assertEquals(3, index.getModificationCount());
+    }
+}
@@ -0,0 +1,76 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Synopsys, Inc
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Synopsys, Inc - initial implementation and documentation
+ *******************************************************************************/
+package jenkins.plugins.coverity;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.times;
+
+import java.io.File;
+
+import org.acegisecurity.Authentication;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Matchers;
+import org.powermock.api.mockito.PowerMockito;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.powermock.modules.junit4.PowerMockRunner;
+
+import com.cloudbees.plugins.credentials.Credentials;
+import com.cloudbees.plugins.credentials.CredentialsMatchers;
+import com.cloudbees.plugins.credentials.CredentialsProvider;
+import com.cloudbees.plugins.credentials.domains.DomainRequirement;
+
+import hudson.XmlFile;
+import hudson.model.ItemGroup;
+import hudson.util.Secret;
+import jenkins.plugins.coverity.Utils.CIMInstanceBuilder;
+import jenkins.plugins.coverity.Utils.CredentialUtil;
+
+@RunWith(PowerMockRunner.class)
+@PrepareForTest({Secret.class, CredentialsMatchers.class, CredentialsProvider.class})
+public class CredentialsCacheTest {
+
+    private void verifyLookups(int count) {
+        PowerMockito.verifyStatic(times(count));
+        CredentialsProvider.lookupCredentials(
+                Matchers.<Class<Credentials>>any(),
+                Matchers.any(ItemGroup.class),
+                Matchers.any(Authentication.class),
+                Matchers.anyListOf(DomainRequirement.class));
+    }
+
+    @Test
+    public void getCoverityUser_looksUpCredentialsOnce() {
+        CredentialUtil.setCredentialManager("admin", "password");
+        CIMInstance cimInstance = new CIMInstanceBuilder().withName("test").withHost("test.coverity").withPort(8080)
+                .withDefaultCredentialId().build();
+
+        for (int i = 0; i < 3; i++) {
+            assertEquals("admin", cimInstance.getCoverityUser());
+            assertEquals("password", cimInstance.getCoverityPassword());
+        }
+
+        verifyLookups(1);
+    }
+
+    @Test
+    public void credentialsChange_invalidatesCache() {
+        CredentialUtil.setCredentialManager("admin", "password");
+        CIMInstance cimInstance = new CIMInstanceBuilder().withName("test").withHost("test.coverity").withPort(8080)
+                .withDefaultCredentialId().build();
+        assertEquals("admin", cimInstance.getCoverityUser());
+
+        new CredentialsCache.CredentialsChangeListener().onChange(null, new XmlFile(new File("credentials.xml")));
+        assertEquals("admin", cimInstance.getCoverityUser());
+
+        verifyLookups(2);
+    }
+}
@@ -0,0 +1,88 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Synopsys, Inc
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Synopsys, Inc - initial implementation and documentation
+ *******************************************************************************/
+package jenkins.plugins.coverity;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+public class DefectDiffTest {
+    @Test
+    public void getCids_returnsDistinctSortedCids() {
+        List<CoverityDefect> defects = Arrays.asList(
+            new CoverityDefect(10003L, "CHECKER", null, null),
+            new CoverityDefect(10001L, "CHECKER", null, null),
+            new CoverityDefect(null, "CHECKER", null, null),
+            new CoverityDefect(10003L, "OTHER_CHECKER", null, null));
+
+        assertArrayEquals(new long[] {10001, 10003}, DefectDiff.getCids(defects));
+        assertEquals(0, DefectDiff.getCids(new ArrayList<CoverityDefect>()).length);
+    }
+
+    @Test
+    public void compare_returnsNewFixedAndPersistingCids() {
+        DefectDiff diff = DefectDiff.compare(new long[] {1, 2, 3, 5, 8}, new long[] {2, 3, 4, 8, 9, 10});
+
+        assertArrayEquals(new long[] {4, 9, 10}, diff.getNewCids());
+        assertArrayEquals(new long[] {1, 5}, diff.getFixedCids());
+        assertEquals(3, diff.getPersistingCount());
+        assertTrue(diff.isNew(9));
+        assertFalse(diff.isNew(8));
+        assertTrue(diff.isFixed(5));
+        assertEquals("4, 9, ...", diff.getNewCidsText(2));
+        assertEquals("1, 5", diff.getFixedCidsText(10));
+    }
+
+    @Test
+    public void write_thenRead_returnsSameCids() throws IOException {
+        DefectDiff diff = DefectDiff.compare(new long[] {1, 2, 3, 5, 8}, new long[] {2, 3, 4, 8, 9, 10});
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        diff.write(out);
+        DefectDiff readDiff = DefectDiff.read(new ByteArrayInputStream(out.toByteArray()));
+
+        assertArrayEquals(new long[] {4, 9, 10}, readDiff.getNewCids());
+        assertArrayEquals(new long[] {1, 5}, readDiff.getFixedCids());
+        assertEquals(3, readDiff.getPersistingCount());
+    }
+
+    @Test
+    public void compare_withLargeStreams() {
+        // 100k defects, every third defect of the previous build was fixed and 10k defects are new
+        List<CoverityDefect> previous = new ArrayList<>();
+        List<CoverityDefect> current = new ArrayList<>();
+        for (long cid = 0; cid < 100000; cid++) {
+            previous.add(new CoverityDefect(cid, "CHECKER", null, null));
+            if (cid % 3 != 0) {
+                current.add(new CoverityDefect(cid, "CHECKER", null, null));
+            }
+        }
+        for (long cid = 100000; cid < 110000; cid++) {
+            current.add(new CoverityDefect(cid, "CHECKER", null, null));
+        }
+
+        DefectDiff diff = DefectDiff.compare(DefectDiff.getCids(previous), DefectDiff.getCids(current));
+
+        assertEquals(10000, diff.getNewCount());
+        assertEquals(33334, diff.getFixedCount());
+        assertEquals(66666, diff.getPersistingCount());
+    }
+}
@@ -0,0 +1,86 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Synopsys, Inc
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Synopsys, Inc - initial implementation and documentation
+ *******************************************************************************/
+package jenkins.plugins.coverity;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import net.sf.json.JSONArray;
+import net.sf.json.JSONObject;
+
+public class DefectExporterTest {
+    private static final String URL_PREFIX = "https://cim:8443/sourcebrowser.htm?projectId=1&mergedDefectId=";
+
+    private static String export(DefectExporter.Format format) throws IOException {
+        List<CoverityDefect> defects = new ArrayList<>();
+        defects.add(new CoverityDefect(10001L, "NULL_RETURNS", "main(int, char **)", "/src/main.c"));
+        defects.add(new CoverityDefect(10002L, "RESOURCE_LEAK", "say \"hello\"", null));
+        CoverityBuildAction action = new CoverityBuildAction(null, "project0", "stream0", "test-cim-instance", defects);
+
+        StringWriter writer = new StringWriter();
+        DefectExporter exporter = DefectExporter.create(format, writer, action, URL_PREFIX);
+        exporter.start();
+        action.forEachDefect(exporter);
+        exporter.finish();
+        return writer.toString();
+    }
+
+    @Test
+    public void fromName_ignoresCase() {
+        assertEquals(DefectExporter.Format.SARIF, DefectExporter.Format.fromName("Sarif"));
+        assertNull(DefectExporter.Format.fromName("xml"));
+    }
+
+    @Test
+    public void export_asJson() throws IOException {
+        JSONObject json = JSONObject.fromObject(export(DefectExporter.Format.JSON));
+
+        assertEquals("stream0", json.getString("stream"));
+        JSONArray defects = json.getJSONArray("defects");
+        assertEquals(2, defects.size());
+        assertEquals(10001L, defects.getJSONObject(0).getLong("cid"));
+        assertEquals(URL_PREFIX + "10001", defects.getJSONObject(0).getString("url"));
+        assertEquals("say \"hello\"", defects.getJSONObject(1).getString("function"));
+    }
+
+    @Test
+    public void export_asCsv_quotesValues() throws IOException {
+        String[] lines = export(DefectExporter.Format.CSV).split("\r\n");
+
+        assertEquals(3, lines.length);
+        assertEquals("CID,Checker,Function,File,URL", lines[0]);
+        assertEquals("10001,NULL_RETURNS,\"main(int, char **)\",/src/main.c," + URL_PREFIX + "10001", lines[1]);
+        assertEquals("10002,RESOURCE_LEAK,\"say \"\"hello\"\"\",," + URL_PREFIX + "10002", lines[2]);
+    }
+
+    @Test
+    public void export_asSarif() throws IOException {
+        JSONObject sarif = JSONObject.fromObject(export(DefectExporter.Format.SARIF));
+
+        assertEquals("2.1.0", sarif.getString("version"));
+        JSONArray results = sarif.getJSONArray("runs").getJSONObject(0).getJSONArray("results");
+        assertEquals(2, results.size());
+        JSONObject result = results.getJSONObject(0);
+        assertEquals("NULL_RETURNS", result.getString("ruleId"));
+        assertEquals("10001", result.getJSONObject("partialFingerprints").getString("coverityCid"));
+        assertEquals("/src/main.c", result.getJSONArray("locations").getJSONObject(0)
+            .getJSONObject("physicalLocation").getJSONObject("artifactLocation").getString("uri"));
+        assertFalse(results.getJSONObject(1).getJSONArray("locations").getJSONObject(0).has("physicalLocation"));
+    }
+}
@@ -22,6 +22,9 @@ public class CoverityPublisherBuilder {
     private InvocationAssistance invocationAssistance;
     private boolean failBuild;
     private boolean unstable;
+    private int defectThreshold;
+    private boolean countDefectsOnly;
+    private boolean incrementalDefects;
     private boolean keepIntDir;
     private boolean skipFetchingDefects;
     private boolean hideChart;
@@ -48,6 +51,21 @@ public class CoverityPublisherBuilder {
         return this;
     }
 
+    public CoverityPublisherBuilder withDefectThreshold(int defectThreshold) {
+        this.defectThreshold = defectThreshold;
+        return this;
+    }
+
+    public CoverityPublisherBuilder withCountDefectsOnly(boolean countDefectsOnly) {
+        this.countDefectsOnly = countDefectsOnly;
+        return this;
+    }
+
+    public CoverityPublisherBuilder withIncrementalDefects(boolean incrementalDefects) {
+        this.incrementalDefects = incrementalDefects;
+        return this;
+    }
+
     public CoverityPublisherBuilder withKeepIntDir(boolean keepIntDir) {
         this.keepIntDir = keepIntDir;
         return this;
@@ -78,6 +96,9 @@ public class CoverityPublisherBuilder {
         publisher.setInvocationAssistance(invocationAssistance);
         publisher.setFailBuild(failBuild);
         publisher.setUnstable(unstable);
+        publisher.setDefectThreshold(defectThreshold);
+        publisher.setCountDefectsOnly(countDefectsOnly);
+        publisher.setIncrementalDefects(incrementalDefects);
         publisher.setKeepIntDir(keepIntDir);
         publisher.setSkipFetchingDefects(skipFetchingDefects);
         publisher.setHideChart(hideChart);
@@ -21,6 +21,7 @@ import com.cloudbees.plugins.credentials.domains.DomainRequirement;
 import com.cloudbees.plugins.credentials.impl.UsernamePasswordCredentialsImpl;
 import hudson.model.ItemGroup;
 import hudson.util.Secret;
+import jenkins.plugins.coverity.CredentialsCache;
 import org.acegisecurity.Authentication;
 import org.mockito.Matchers;
 import org.mockito.Mockito;
@@ -31,6 +32,9 @@ import java.util.ArrayList;
 public class CredentialUtil {
 
     public static void setCredentialManager(String username, String password) {
+        // tests use the same credential id with different user names
+        CredentialsCache.getInstance().invalidateAll();
+
         PowerMockito.mockStatic(CredentialsMatchers.class);
         PowerMockito.mockStatic(CredentialsProvider.class);
         UsernamePasswordCredentials credentials = Mockito.mock(UsernamePasswordCredentialsImpl.class);
@@ -0,0 +1,80 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Synopsys, Inc
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Synopsys, Inc - initial implementation and documentation
+ *******************************************************************************/
+package jenkins.plugins.coverity.ws;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class AdaptivePagerTest {
+    private static final long TARGET_RESPONSE_TIME = 5000;
+    private static final long MAX_PAGE_BYTES = 8 * 1024 * 1024;
+
+    private AdaptivePager createPager(int initialPageSize) {
+        return new AdaptivePager(initialPageSize, 100, 5000, TARGET_RESPONSE_TIME, MAX_PAGE_BYTES);
+    }
+
+    @Test
+    public void recordPage_withFastResponse_growsPageSize() {
+        AdaptivePager pager = createPager(1000);
+
+        pager.recordPage(1000, 1000, 500, -1);
+        assertEquals(2000, pager.getPageSize());
+
+        pager.recordPage(2000, 2000, 1000, -1);
+        assertEquals(4000, pager.getPageSize());
+
+        pager.recordPage(4000, 4000, 2000, -1);
+        assertEquals(5000, pager.getPageSize());
+    }
+
+    @Test
+    public void recordPage_withSlowResponse_shrinksPageSize() {
+        AdaptivePager pager = createPager(1000);
+
+        pager.recordPage(1000, 1000, 20000, -1);
+        assertEquals(500, pager.getPageSize());
+    }
+
+    @Test
+    public void recordPage_withLargePayload_limitsPageSize() {
+        AdaptivePager pager = createPager(1000);
+
+        // 8 KB per row allows 1024 rows per page
+        pager.recordPage(1000, 1000, 100, 1000 * 8192);
+        assertEquals(1024, pager.getPageSize());
+    }
+
+    @Test
+    public void recordPage_withShortLastPage_keepsPageSize() {
+        AdaptivePager pager = createPager(1000);
+
+        pager.recordPage(1000, 1000, 2500, -1);
+        assertEquals(2000, pager.getPageSize());
+
+        // 10 rows in 1 second are mostly the latency of the request, not 100 milliseconds per row
+        pager.recordPage(2000, 10, 1000, -1);
+        assertEquals(2000, pager.getPageSize());
+        assertEquals(2, pager.getPageCount());
+    }
+
+    @Test
+    public void recordFailure_halvesPageSizeWithinBounds() {
+        AdaptivePager pager = createPager(300);
+
+        pager.recordFailure();
+        assertEquals(150, pager.getPageSize());
+
+        pager.recordFailure();
+        assertEquals(100, pager.getPageSize());
+        assertEquals(2, pager.getFailureCount());
+    }
+}
@@ -0,0 +1,103 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Synopsys, Inc
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Synopsys, Inc - initial implementation and documentation
+ *******************************************************************************/
+package jenkins.plugins.coverity.ws;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.lang.NotImplementedException;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.powermock.modules.junit4.PowerMockRunner;
+
+import com.cloudbees.plugins.credentials.CredentialsMatchers;
+import com.cloudbees.plugins.credentials.CredentialsProvider;
+import com.coverity.ws.v9.MergedDefectsPageDataObj;
+import com.coverity.ws.v9.PageSpecDataObj;
+import com.coverity.ws.v9.ProjectDataObj;
+import com.coverity.ws.v9.ProjectFilterSpecDataObj;
+import com.coverity.ws.v9.SnapshotScopeSpecDataObj;
+import com.coverity.ws.v9.StreamDataObj;
+import com.coverity.ws.v9.StreamFilterSpecDataObj;
+import com.coverity.ws.v9.StreamIdDataObj;
+import com.google.common.util.concurrent.ListenableFuture;
+
+import hudson.util.Secret;
+import jenkins.plugins.coverity.CIMInstance;
+import jenkins.plugins.coverity.Utils.CIMInstanceBuilder;
+import jenkins.plugins.coverity.ws.TestWebServiceFactory.TestConfigurationService;
+import jenkins.plugins.coverity.ws.TestWebServiceFactory.TestDefectService;
+
+@RunWith(PowerMockRunner.class)
+@PrepareForTest({Secret.class, CredentialsMatchers.class, CredentialsProvider.class})
+public class AsyncWebServicesTest {
+    private CIMInstance cimInstance = new CIMInstanceBuilder().withName("test").withHost("cim-host").withPort(8080)
+            .withUseSSL(false).withDefaultCredentialId().build();
+
+    @Test
+    public void getProjectsAndStreams_runConcurrently() throws Exception {
+        TestWebServiceFactory factory = new TestWebServiceFactory();
+        TestConfigurationService configurationService = (TestConfigurationService)factory.getConfigurationService(cimInstance);
+        configurationService.setupProjects("project", 2, "stream", 3);
+
+        AsyncWebServices asyncWebServices = factory.getAsyncWebServices(cimInstance);
+        ListenableFuture<List<ProjectDataObj>> projects = asyncWebServices.getProjects(new ProjectFilterSpecDataObj());
+        ListenableFuture<List<StreamDataObj>> streams = asyncWebServices.getStreams(new StreamFilterSpecDataObj());
+
+        Assert.assertEquals(2, projects.get(5, TimeUnit.SECONDS).size());
+        Assert.assertEquals(6, streams.get(5, TimeUnit.SECONDS).size());
+    }
+
+    @Test
+    public void getMergedDefectsForStreams_returnsRequestedPages() throws Exception {
+        TestWebServiceFactory factory = new TestWebServiceFactory();
+        TestDefectService defectService = (TestDefectService)factory.getDefectService(cimInstance);
+        defectService.setupMergedDefects(25);
+
+        AsyncWebServices asyncWebServices = factory.getAsyncWebServices(cimInstance);
+        List<ListenableFuture<MergedDefectsPageDataObj>> pages = new ArrayList<>();
+        for (int startIndex = 0; startIndex < 25; startIndex += 10) {
+            PageSpecDataObj pageSpec = new PageSpecDataObj();
+            pageSpec.setPageSize(10);
+            pageSpec.setStartIndex(startIndex);
+            pages.add(asyncWebServices.getMergedDefectsForStreams(
+                new ArrayList<StreamIdDataObj>(), null, pageSpec, new SnapshotScopeSpecDataObj()));
+        }
+
+        Assert.assertEquals(10, pages.get(0).get(5, TimeUnit.SECONDS).getMergedDefects().size());
+        Assert.assertEquals(10, pages.get(1).get(5, TimeUnit.SECONDS).getMergedDefects().size());
+        Assert.assertEquals(5, pages.get(2).get(5, TimeUnit.SECONDS).getMergedDefects().size());
+        Assert.assertEquals(Long.valueOf(20), pages.get(2).get().getMergedDefects().get(0).getCid());
+    }
+
+    @Test
+    public void failedCall_completesFutureExceptionallyAndInvalidatesConnection() throws Exception {
+        TestWebServiceFactory factory = new TestWebServiceFactory();
+        factory.getDefectService(cimInstance);
+
+        ListenableFuture<MergedDefectsPageDataObj> result = factory.getAsyncWebServices(cimInstance)
+            .getMergedDefectsForSnapshotScope(null, null, new PageSpecDataObj(), new SnapshotScopeSpecDataObj());
+
+        try {
+            result.get(5, TimeUnit.SECONDS);
+            Assert.fail("Expected the call to fail");
+        } catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause() instanceof NotImplementedException);
+        }
+
+        factory.getDefectService(cimInstance);
+        Assert.assertEquals(2, factory.getCheckWsResponseCount());
+    }
+}
@@ -0,0 +1,167 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Synopsys, Inc
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Synopsys, Inc - initial implementation and documentation
+ *******************************************************************************/
+package jenkins.plugins.coverity.ws;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+import javax.xml.soap.MessageFactory;
+import javax.xml.soap.SOAPElement;
+import javax.xml.soap.SOAPException;
+import javax.xml.soap.SOAPMessage;
+import javax.xml.ws.handler.MessageContext;
+import javax.xml.ws.handler.soap.SOAPHandler;
+import javax.xml.ws.handler.soap.SOAPMessageContext;
+
+/**
+ * Compares the cost per outbound message of the two ws-security handlers: {@link ClientAuthenticationHandlerWSS},
+ * which runs the XWSS pipeline, and {@link ClientAuthenticationHeaderHandler}, which copies a cached header. JMH is
+ * not a dependency of the plugin, so this is a plain harness with warm-up rounds which is run from the test classpath,
+ * for example:
+ *
+ * <pre>
+ * mvn test-compile dependency:build-classpath -Dmdep.outputFile=target/classpath.txt
+ * java -cp target/test-classes:target/classes:$(cat target/classpath.txt) jenkins.plugins.coverity.ws.AuthenticationHandlerBenchmark
+ * </pre>
+ *
+ * Every message is a new getMergedDefectsForStreams request. Creating the message is measured on its own as well and
+ * subtracted from the cost of the handlers. The allocated bytes are only reported on JVMs which can count them.
+ */
+public final class AuthenticationHandlerBenchmark {
+    private static final int WARMUP_ROUNDS = 5;
+    private static final int ROUNDS = 10;
+    private static final int DEFAULT_MESSAGES_PER_ROUND = 2000;
+
+    // keeps the JIT from discarding the work of a round
+    private static long sink;
+
+    private AuthenticationHandlerBenchmark() {
+    }
+
+    public static void main(String[] args) throws SOAPException {
+        final int messages = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_MESSAGES_PER_ROUND;
+
+        final Result baseline = measure(null, messages);
+        final Result xwss = measure(new ClientAuthenticationHandlerWSS("benchmark-user", "benchmark-password"), messages);
+        final Result header = measure(new ClientAuthenticationHeaderHandler("benchmark-user", "benchmark-password"), messages);
+
+        System.out.println(String.format("%d messages per round, best of %d rounds after %d warm-up rounds", messages, ROUNDS, WARMUP_ROUNDS));
+        System.out.println(String.format("%-20s %15s %15s", "", "ns/message", "bytes/message"));
+        print("create message", baseline, null);
+        print("xwss", xwss, baseline);
+        print("header", header, baseline);
+        System.out.println(String.format("xwss/header: %.1fx", (double)(xwss.nanos - baseline.nanos) / Math.max(1, header.nanos - baseline.nanos)));
+        if (sink == 0) {
+            throw new IllegalStateException("No message has a SOAP header");
+        }
+    }
+
+    private static void print(String name, Result result, Result baseline) {
+        final long nanos = baseline != null ? result.nanos - baseline.nanos : result.nanos;
+        final long bytes = baseline != null && result.bytes >= 0 ? result.bytes - baseline.bytes : result.bytes;
+        System.out.println(String.format("%-20s %15d %15s", name, nanos, bytes >= 0 ? String.valueOf(bytes) : "n/a"));
+    }
+
+    /**
+     * Runs the handler on new messages and returns the cost per message of the fastest round, or of creating the
+     * messages alone if there is no handler
+     */
+    private static Result measure(SOAPHandler<SOAPMessageContext> handler, int messages) throws SOAPException {
+        final MessageFactory messageFactory = MessageFactory.newInstance();
+        Result best = null;
+        for (int round = 0; round < WARMUP_ROUNDS + ROUNDS; round++) {
+            final long allocatedBefore = getAllocatedBytes();
+            final long start = System.nanoTime();
+            for (int i = 0; i < messages; i++) {
+                final MessageHolder holder = new MessageHolder(createRequest(messageFactory));
+                if (handler != null) {
+                    handler.handleMessage(holder.createContext());
+                }
+                sink += holder.message.getSOAPPart().getEnvelope().getHeader() != null ? 1 : 0;
+            }
+            final long nanos = (System.nanoTime() - start) / messages;
+            final long allocatedAfter = getAllocatedBytes();
+
+            if (round >= WARMUP_ROUNDS) {
+                final long bytes = allocatedBefore >= 0 && allocatedAfter >= 0 ? (allocatedAfter - allocatedBefore) / messages : -1;
+                if (best == null || nanos < best.nanos) {
+                    best = new Result(nanos, bytes);
+                }
+            }
+        }
+        return best;
+    }
+
+    private static SOAPMessage createRequest(MessageFactory messageFactory) throws SOAPException {
+        final SOAPMessage message = messageFactory.createMessage();
+        final SOAPElement request = message.getSOAPBody().addChildElement("getMergedDefectsForStreams", "ws", "http://ws.coverity.com/v9");
+        request.addChildElement("streamIds").addChildElement("name").addTextNode("benchmark-stream");
+        final SOAPElement pageSpec = request.addChildElement("pageSpec");
+        pageSpec.addChildElement("pageSize").addTextNode("1000");
+        pageSpec.addChildElement("startIndex").addTextNode("0");
+        message.saveChanges();
+        return message;
+    }
+
+    /**
+     * The bytes allocated by the current thread so far, or -1 if the JVM does not count them
+     */
+    private static long getAllocatedBytes() {
+        final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (threads instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean)threads).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return -1;
+    }
+
+    private static class Result {
+        private final long nanos;
+        private final long bytes;
+
+        Result(long nanos, long bytes) {
+            this.nanos = nanos;
+            this.bytes = bytes;
+        }
+    }
+
+    /**
+     * The outbound message of a message context, which the XWSS handler replaces with the secured message
+     */
+    private static class MessageHolder {
+        private SOAPMessage message;
+
+        MessageHolder(SOAPMessage message) {
+            this.message = message;
+        }
+
+        SOAPMessageContext createContext() {
+            return (SOAPMessageContext)Proxy.newProxyInstance(SOAPMessageContext.class.getClassLoader(),
+                new Class<?>[] { SOAPMessageContext.class }, new InvocationHandler() {
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        switch (method.getName()) {
+                            case "getMessage":
+                                return message;
+                            case "setMessage":
+                                message = (SOAPMessage)args[0];
+                                return null;
+                            case "get":
+                                return MessageContext.MESSAGE_OUTBOUND_PROPERTY.equals(args[0]) ? Boolean.TRUE : null;
+                            default:
+                                throw new UnsupportedOperationException(method.getName());
+                        }
+                    }
+                });
+        }
+    }
+}
@@ -0,0 +1,92 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Synopsys, Inc
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Synopsys, Inc - initial implementation and documentation
+ *******************************************************************************/
+package jenkins.plugins.coverity.ws;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import javax.xml.soap.MessageFactory;
+import javax.xml.soap.SOAPException;
+import javax.xml.soap.SOAPHeader;
+import javax.xml.soap.SOAPMessage;
+import javax.xml.ws.handler.MessageContext;
+import javax.xml.ws.handler.soap.SOAPMessageContext;
+
+import org.junit.Test;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+public class ClientAuthenticationHeaderHandlerTest {
+
+    private SOAPMessageContext createContext(SOAPMessage message, boolean outbound) {
+        SOAPMessageContext context = mock(SOAPMessageContext.class);
+        when(context.get(MessageContext.MESSAGE_OUTBOUND_PROPERTY)).thenReturn(outbound);
+        when(context.getMessage()).thenReturn(message);
+        return context;
+    }
+
+    private Element getSecurityHeader(SOAPMessage message) throws SOAPException {
+        SOAPHeader header = message.getSOAPHeader();
+        assertNotNull(header);
+
+        NodeList securityHeaders = header.getElementsByTagNameNS(ClientAuthenticationHandlerWSS.WSS_AUTH_URI, ClientAuthenticationHandlerWSS.WSS_AUTH_LNAME);
+        assertEquals(1, securityHeaders.getLength());
+        return (Element)securityHeaders.item(0);
+    }
+
+    private String getTokenValue(Element securityHeader, String localName) {
+        NodeList elements = securityHeader.getElementsByTagNameNS(ClientAuthenticationHandlerWSS.WSS_AUTH_URI, localName);
+        assertEquals(1, elements.getLength());
+        return elements.item(0).getTextContent();
+    }
+
+    @Test
+    public void handleMessage_addsUsernameTokenToOutboundMessage() throws SOAPException {
+        ClientAuthenticationHeaderHandler handler = new ClientAuthenticationHeaderHandler("test-user", "pass<&>\"word");
+        SOAPMessage message = MessageFactory.newInstance().createMessage();
+
+        assertTrue(handler.handleMessage(createContext(message, true)));
+
+        Element securityHeader = getSecurityHeader(message);
+        assertEquals("test-user", getTokenValue(securityHeader, "Username"));
+        assertEquals("pass<&>\"word", getTokenValue(securityHeader, "Password"));
+        assertEquals("1", securityHeader.getAttributeNS(message.getSOAPPart().getEnvelope().getNamespaceURI(), "mustUnderstand"));
+
+        Element password = (Element)securityHeader.getElementsByTagNameNS(ClientAuthenticationHandlerWSS.WSS_AUTH_URI, "Password").item(0);
+        assertEquals(ClientAuthenticationHeaderHandler.PASSWORD_TEXT_TYPE, password.getAttribute("Type"));
+    }
+
+    @Test
+    public void handleMessage_reusesHeaderForEveryMessage() throws SOAPException {
+        ClientAuthenticationHeaderHandler handler = new ClientAuthenticationHeaderHandler("test-user", "password");
+
+        for (int i = 0; i < 3; i++) {
+            SOAPMessage message = MessageFactory.newInstance().createMessage();
+            handler.handleMessage(createContext(message, true));
+
+            assertEquals("test-user", getTokenValue(getSecurityHeader(message), "Username"));
+        }
+    }
+
+    @Test
+    public void handleMessage_ignoresInboundMessage() throws SOAPException {
+        ClientAuthenticationHeaderHandler handler = new ClientAuthenticationHeaderHandler("test-user", "password");
+        SOAPMessage message = MessageFactory.newInstance().createMessage();
+
+        assertTrue(handler.handleMessage(createContext(message, false)));
+
+        SOAPHeader header = message.getSOAPHeader();
+        assertTrue(header == null || !header.hasChildNodes());
+    }
+}
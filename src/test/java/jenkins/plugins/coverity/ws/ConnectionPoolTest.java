@@ -0,0 +1,188 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Synopsys, Inc
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Synopsys, Inc - initial implementation and documentation
+ *******************************************************************************/
+package jenkins.plugins.coverity.ws;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import javax.ws.rs.client.Client;
+import javax.xml.ws.handler.MessageContext;
+import javax.xml.ws.handler.soap.SOAPHandler;
+import javax.xml.ws.handler.soap.SOAPMessageContext;
+
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+public class ConnectionPoolTest {
+
+    /**
+     * Creates a message context which stores its properties in a map, like the JAX-WS runtime does
+     */
+    private SOAPMessageContext createContext(boolean outbound) {
+        final Map<String, Object> properties = new HashMap<>();
+        properties.put(MessageContext.MESSAGE_OUTBOUND_PROPERTY, outbound);
+
+        SOAPMessageContext context = mock(SOAPMessageContext.class);
+        when(context.get(anyString())).thenAnswer(new Answer<Object>() {
+            public Object answer(InvocationOnMock invocation) throws Throwable {
+                return properties.get(invocation.getArguments()[0]);
+            }
+        });
+        when(context.put(anyString(), any())).thenAnswer(new Answer<Object>() {
+            public Object answer(InvocationOnMock invocation) throws Throwable {
+                return properties.put((String)invocation.getArguments()[0], invocation.getArguments()[1]);
+            }
+        });
+        when(context.remove(anyString())).thenAnswer(new Answer<Object>() {
+            public Object answer(InvocationOnMock invocation) throws Throwable {
+                return properties.remove(invocation.getArguments()[0]);
+            }
+        });
+        return context;
+    }
+
+    @Test
+    public void acquire_waitsForReleasedConnection() throws InterruptedException {
+        final ConnectionPool pool = new ConnectionPool("test", 1, 0, 1000, 1000);
+        pool.acquire(false);
+
+        final CountDownLatch acquired = new CountDownLatch(1);
+        Thread waiting = new Thread(new Runnable() {
+            public void run() {
+                try {
+                    pool.acquire(false);
+                    acquired.countDown();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        waiting.start();
+
+        assertFalse(acquired.await(100, TimeUnit.MILLISECONDS));
+        pool.release(false);
+        assertTrue(acquired.await(5, TimeUnit.SECONDS));
+        pool.release(false);
+        waiting.join();
+
+        assertEquals(2, pool.getRequestCount());
+        assertEquals(1, pool.getWaitCount());
+        assertEquals(1, pool.getPeakCount());
+        assertEquals(0, pool.getActiveCount());
+    }
+
+    @Test
+    public void acquire_withInteractiveRequest_doesNotWaitForOtherRequests() throws InterruptedException {
+        ConnectionPool pool = new ConnectionPool("test", 1, 1, 0, 1000, 1000);
+        pool.acquire(false);
+
+        pool.acquire(true);
+        assertEquals(2, pool.getActiveCount());
+        assertEquals(0, pool.getWaitCount());
+
+        pool.release(true);
+        pool.release(false);
+        assertEquals(0, pool.getActiveCount());
+    }
+
+    @Test
+    public void handler_holdsConnectionUntilMessageExchangeIsClosed() {
+        ConnectionPool pool = new ConnectionPool("test", 2, 0, 1000, 1000);
+        SOAPHandler<SOAPMessageContext> handler = pool.createHandler();
+        SOAPMessageContext context = createContext(true);
+
+        assertTrue(handler.handleMessage(context));
+        assertEquals(1, pool.getActiveCount());
+
+        handler.close(context);
+        assertEquals(0, pool.getActiveCount());
+
+        // closing again must not release another connection
+        handler.close(context);
+        assertEquals(0, pool.getActiveCount());
+        assertEquals(1, pool.getRequestCount());
+    }
+
+    @Test
+    public void getRestClient_reusesClientForSameCredentials() {
+        ConnectionPool pool = new ConnectionPool("test", 2, 60000, 1000, 1000);
+        Client client = mock(Client.class);
+
+        assertNull(pool.getRestClient("user", "password"));
+        pool.setRestClient(client, "user", "password");
+
+        assertSame(client, pool.getRestClient("user", "password"));
+        assertNull(pool.getRestClient("user", "other password"));
+        verify(client).close();
+        assertEquals(0, pool.getEvictionCount());
+    }
+
+    @Test
+    public void getRestClient_evictsIdleClient() throws InterruptedException {
+        ConnectionPool pool = new ConnectionPool("test", 2, 1, 1000, 1000);
+        Client client = mock(Client.class);
+        pool.setRestClient(client, "user", "password");
+
+        Thread.sleep(20);
+
+        assertNull(pool.getRestClient("user", "password"));
+        verify(client).close();
+        assertEquals(1, pool.getEvictionCount());
+    }
+
+    @Test
+    public void getRestClient_keepsIdleClientWhichIsInUse() throws InterruptedException {
+        ConnectionPool pool = new ConnectionPool("test", 2, 1, 1000, 1000);
+        Client client = mock(Client.class);
+        pool.setRestClient(client, "user", "password");
+        pool.acquireRestClient(client);
+
+        Thread.sleep(20);
+
+        assertSame(client, pool.getRestClient("user", "password"));
+        verify(client, never()).close();
+        assertEquals(0, pool.getEvictionCount());
+
+        pool.releaseRestClient(client);
+        assertSame(client, pool.getRestClient("user", "password"));
+    }
+
+    @Test
+    public void releaseRestClient_closesReplacedClientAfterLastRequest() {
+        ConnectionPool pool = new ConnectionPool("test", 2, 60000, 1000, 1000);
+        Client client = mock(Client.class);
+        pool.setRestClient(client, "user", "password");
+        pool.acquireRestClient(client);
+        pool.acquireRestClient(client);
+
+        assertNull(pool.getRestClient("user", "other password"));
+        pool.releaseRestClient(client);
+        verify(client, never()).close();
+
+        pool.releaseRestClient(client);
+        verify(client).close();
+    }
+}
@@ -0,0 +1,250 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Synopsys, Inc
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Synopsys, Inc - initial implementation and documentation
+ *******************************************************************************/
+package jenkins.plugins.coverity.ws;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.coverity.ws.v9.CovRemoteServiceException_Exception;
+
+import jenkins.plugins.coverity.CoverityDefect;
+
+public class DefectCacheTest {
+    @Rule
+    public TemporaryFolder spillDirectory = new TemporaryFolder();
+
+    private static DefectCache.Key createKey(long snapshotId) {
+        return new DefectCache.Key("cim-instance", "credential", "test-stream", snapshotId, "filter");
+    }
+
+    private static class TestLoader implements DefectCache.Loader {
+        private final int defectCount;
+        private final AtomicInteger loadCount = new AtomicInteger();
+
+        TestLoader(int defectCount) {
+            this.defectCount = defectCount;
+        }
+
+        public List<CoverityDefect> load() throws IOException, CovRemoteServiceException_Exception {
+            loadCount.incrementAndGet();
+            List<CoverityDefect> defects = new ArrayList<>();
+            for (long cid = 0; cid < defectCount; cid++) {
+                defects.add(new CoverityDefect(cid, "TEST_CHECKER", "defect_function_" + cid + "()", null));
+            }
+            return defects;
+        }
+    }
+
+    private static final DefectCache.Loader FAILING_LOADER = new DefectCache.Loader() {
+        public List<CoverityDefect> load() {
+            fail("Defects should have been cached");
+            return null;
+        }
+    };
+
+    @Test
+    public void getDefects_readsDefectsOncePerSnapshot() throws Exception {
+        DefectCache cache = new DefectCache(100, TimeUnit.HOURS.toMillis(1), null);
+        TestLoader loader = new TestLoader(10);
+
+        assertEquals(10, cache.getDefects(createKey(10001), loader).size());
+        assertEquals(10, cache.getDefects(createKey(10001), loader).size());
+        assertEquals(1, loader.loadCount.get());
+
+        cache.getDefects(createKey(10002), loader);
+        assertEquals(2, loader.loadCount.get());
+        assertEquals(1, cache.getHitCount());
+        assertEquals(2, cache.getMissCount());
+    }
+
+    @Test
+    public void getDefects_withBaseSnapshot_doesNotShareDefectsWithFullRead() throws Exception {
+        DefectCache cache = new DefectCache(100, TimeUnit.HOURS.toMillis(1), null);
+        TestLoader loader = new TestLoader(10);
+
+        cache.getDefects(createKey(10001), loader);
+        cache.getDefects(new DefectCache.Key("cim-instance", "credential", "test-stream", 10001, "filter", 10000L), loader);
+        cache.getDefects(new DefectCache.Key("cim-instance", "credential", "test-stream", 10001, "filter", 10000L), loader);
+
+        assertEquals(2, loader.loadCount.get());
+    }
+
+    @Test
+    public void getDefects_withExpiredDefects_readsDefectsAgain() throws Exception {
+        DefectCache cache = new DefectCache(100, 0, null);
+        TestLoader loader = new TestLoader(10);
+
+        cache.getDefects(createKey(10001), loader);
+        cache.getDefects(createKey(10001), loader);
+
+        assertEquals(2, loader.loadCount.get());
+    }
+
+    @Test
+    public void getDefects_spillsLeastRecentlyUsedDefects() throws Exception {
+        DefectCache cache = new DefectCache(10, TimeUnit.HOURS.toMillis(1), spillDirectory.getRoot());
+
+        cache.getDefects(createKey(10001), new TestLoader(6));
+        cache.getDefects(new DefectCache.Key("cim-instance", "credential", "other-stream", 10001, "filter"), new TestLoader(6));
+        assertEquals(1, cache.getEntryCount());
+        assertEquals(1, cache.getSpillCount());
+
+        List<CoverityDefect> defects = cache.getDefects(createKey(10001), FAILING_LOADER);
+        assertEquals(6, defects.size());
+        assertEquals(Long.valueOf(5), defects.get(5).getCid());
+        assertEquals("defect_function_5()", defects.get(5).getFunctionDisplayName());
+        assertEquals(null, defects.get(5).getFilePathname());
+    }
+
+    @Test
+    public void getDefects_coalescesConcurrentRequests() throws Exception {
+        final DefectCache cache = new DefectCache(100, TimeUnit.HOURS.toMillis(1), null);
+        final CountDownLatch release = new CountDownLatch(1);
+        final TestLoader loader = new TestLoader(10) {
+            @Override
+            public List<CoverityDefect> load() throws IOException, CovRemoteServiceException_Exception {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    throw new IOException(e);
+                }
+                return super.load();
+            }
+        };
+        Callable<List<CoverityDefect>> request = new Callable<List<CoverityDefect>>() {
+            public List<CoverityDefect> call() throws Exception {
+                return cache.getDefects(createKey(10001), loader);
+            }
+        };
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<List<CoverityDefect>> first = executor.submit(request);
+            Future<List<CoverityDefect>> second = executor.submit(request);
+            while (cache.getCoalescedCount() == 0) {
+                Thread.sleep(10);
+            }
+            release.countDown();
+
+            assertEquals(10, first.get().size());
+            assertEquals(10, second.get().size());
+            assertEquals(1, loader.loadCount.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void getDefects_withAbortedConcurrentRequest_readsDefectsAgain() throws Exception {
+        final DefectCache cache = new DefectCache(100, TimeUnit.HOURS.toMillis(1), null);
+        final CountDownLatch loading = new CountDownLatch(1);
+        final TestLoader abortedLoader = new TestLoader(10) {
+            @Override
+            public List<CoverityDefect> load() throws IOException, CovRemoteServiceException_Exception {
+                loading.countDown();
+                try {
+                    new CountDownLatch(1).await();
+                } catch (InterruptedException e) {
+                    throw new InterruptedIOException();
+                }
+                return super.load();
+            }
+        };
+        final TestLoader loader = new TestLoader(10);
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<List<CoverityDefect>> aborted = executor.submit(new Callable<List<CoverityDefect>>() {
+                public List<CoverityDefect> call() throws Exception {
+                    return cache.getDefects(createKey(10001), abortedLoader);
+                }
+            });
+            loading.await();
+            Future<List<CoverityDefect>> waiting = executor.submit(new Callable<List<CoverityDefect>>() {
+                public List<CoverityDefect> call() throws Exception {
+                    return cache.getDefects(createKey(10001), loader);
+                }
+            });
+            while (cache.getCoalescedCount() == 0) {
+                Thread.sleep(10);
+            }
+            aborted.cancel(true);
+
+            assertEquals(10, waiting.get().size());
+            assertEquals(1, loader.loadCount.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void getDefects_withServiceError_failsConcurrentRequests() throws Exception {
+        final DefectCache cache = new DefectCache(100, TimeUnit.HOURS.toMillis(1), null);
+        final CountDownLatch release = new CountDownLatch(1);
+        final DefectCache.Loader loader = new DefectCache.Loader() {
+            public List<CoverityDefect> load() throws IOException, CovRemoteServiceException_Exception {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    throw new InterruptedIOException();
+                }
+                throw new CovRemoteServiceException_Exception("No such stream", null);
+            }
+        };
+        Callable<List<CoverityDefect>> request = new Callable<List<CoverityDefect>>() {
+            public List<CoverityDefect> call() throws Exception {
+                return cache.getDefects(createKey(10001), loader);
+            }
+        };
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<List<CoverityDefect>> first = executor.submit(request);
+            Future<List<CoverityDefect>> second = executor.submit(request);
+            while (cache.getCoalescedCount() == 0) {
+                Thread.sleep(10);
+            }
+            release.countDown();
+
+            assertFailsWithServiceError(first);
+            assertFailsWithServiceError(second);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static void assertFailsWithServiceError(Future<List<CoverityDefect>> request) throws InterruptedException {
+        try {
+            request.get();
+            fail("Expected the error of the service");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof CovRemoteServiceException_Exception);
+        }
+    }
+}
@@ -10,9 +10,16 @@
  *******************************************************************************/
 package jenkins.plugins.coverity.ws;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -20,6 +27,7 @@ import java.io.IOException;
 import java.text.ParseException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 
 import javax.xml.datatype.DatatypeConfigurationException;
 
@@ -33,6 +41,7 @@ import org.powermock.core.classloader.annotations.PrepareForTest;
 import org.powermock.modules.junit4.PowerMockRunner;
 
 import com.coverity.ws.v9.CovRemoteServiceException_Exception;
+import com.coverity.ws.v9.SnapshotIdDataObj;
 
 import hudson.model.AbstractBuild;
 import hudson.model.BuildListener;
@@ -42,11 +51,13 @@ import jenkins.model.Jenkins;
 import jenkins.plugins.coverity.CIMInstance;
 import jenkins.plugins.coverity.CIMStream;
 import jenkins.plugins.coverity.CoverityBuildAction;
+import jenkins.plugins.coverity.CoverityDefect;
 import jenkins.plugins.coverity.CoverityPublisher;
 import jenkins.plugins.coverity.CoverityPublisher.DescriptorImpl;
 import jenkins.plugins.coverity.DefectFilters;
 import jenkins.plugins.coverity.Utils.CoverityPublisherBuilder;
 import jenkins.plugins.coverity.Utils.TestableConsoleLogger;
+import jenkins.plugins.coverity.ws.TestWebServiceFactory.TestConfigurationService;
 import jenkins.plugins.coverity.ws.TestWebServiceFactory.TestDefectService;
 
 @RunWith(PowerMockRunner.class)
@@ -66,6 +77,7 @@ public class DefectReaderTest {
 
     private TestableConsoleLogger consoleLogger;
     private TestDefectService defectService;
+    private TestConfigurationService configurationService;
     private static final String cimInstanceName = "cim-instance";
 
     @Before
@@ -80,10 +92,16 @@ public class DefectReaderTest {
 
         // setup global configuration (DescriptorImpl) with TestWebService
         CIMInstance cimInstance = mock(CIMInstance.class);
-        defectService = (TestDefectService)new TestWebServiceFactory().getDefectService(cimInstance);
+        TestWebServiceFactory testWsFactory = new TestWebServiceFactory();
+        defectService = (TestDefectService)testWsFactory.getDefectService(cimInstance);
         when(cimInstance.getDefectService()).thenReturn(defectService);
+        configurationService = (TestConfigurationService)testWsFactory.getConfigurationService(cimInstance);
+        when(cimInstance.getAsyncWebServices()).thenReturn(testWsFactory.getAsyncWebServices(cimInstance));
         when(descriptor.getInstance(any(CoverityPublisher.class))).thenReturn(cimInstance);
         when(jenkins.getDescriptorOrDie(CoverityPublisher.class)).thenReturn(descriptor);
+
+        // the defect cache is shared by all tests
+        DefectCache.getInstance().invalidateAll();
     }
 
     private DefectFilters getMatchingDefectFilters(){
@@ -103,6 +121,30 @@ public class DefectReaderTest {
         }
     }
 
+    private void setupSnapshots(long... snapshotIds) {
+        List<SnapshotIdDataObj> snapshots = new ArrayList<>();
+        for (long snapshotId : snapshotIds) {
+            SnapshotIdDataObj snapshot = new SnapshotIdDataObj();
+            snapshot.setId(snapshotId);
+            snapshots.add(snapshot);
+        }
+        configurationService.setupSnapshotList(snapshots);
+    }
+
+    private CoverityBuildAction setupPreviousBuild(long snapshotId, long firstCid, int defectCount) {
+        List<CoverityDefect> defects = new ArrayList<>();
+        for (long cid = firstCid; cid < firstCid + defectCount; cid++) {
+            defects.add(new CoverityDefect(cid, "TEST_CHECKER", "defect_function_" + cid + "()", "/defect/file/test." + cid + ".java"));
+        }
+
+        AbstractBuild<?, ?> previousBuild = mock(AbstractBuild.class);
+        CoverityBuildAction previousAction = new CoverityBuildAction(previousBuild, "test-project", "test-stream", cimInstanceName, defects);
+        previousAction.setSnapshot(snapshotId, new DefectFilters().getFilterKey());
+        when(previousBuild.getAction(CoverityBuildAction.class)).thenReturn(previousAction);
+        doReturn(previousBuild).when(build).getPreviousBuild();
+        return previousAction;
+    }
+
     @Test
     public void getLatestDefectsForBuild_withNoDefectFilters_addDefectsToBuildAction() throws ParseException, DatatypeConfigurationException, IOException, CovRemoteServiceException_Exception {
 
@@ -190,6 +232,32 @@ public class DefectReaderTest {
             "Coverity details: rootUrl/buildUrl/coverity_defects");
     }
 
+    @Test
+    public void getLatestDefectsForBuild_fetchesPagesConcurrently() throws ParseException, DatatypeConfigurationException {
+        CIMStream cimStream = new CIMStream(cimInstanceName, "test-project", "test-stream");
+        CoverityPublisher publisher = new CoverityPublisherBuilder().withCimStream(cimStream).build();
+
+        final int pageCount = 8;
+        defectService.setupMergedDefects(pageCount * 1000);
+        // each request waits for another one, only the first page is requested on its own
+        defectService.setupConcurrentRequests(2, 1000);
+
+        DefectReader reader = new DefectReader(build, listener, publisher);
+        reader.getLatestDefectsForBuild();
+
+        // sequential paging never has more than one request in flight
+        assertTrue(defectService.getMaxInFlightCount() >= 2);
+
+        // pages are collected in order
+        ArgumentCaptor<CoverityBuildAction> buildAction = ArgumentCaptor.forClass(CoverityBuildAction.class);
+        verify(build).addAction(buildAction.capture());
+        List<CoverityDefect> defects = buildAction.getValue().getDefects();
+        assertEquals(pageCount * 1000, defects.size());
+        for (int i = 0; i < defects.size(); i++) {
+            assertEquals(Long.valueOf(i), defects.get(i).getCid());
+        }
+    }
+
     @Test
     public void getLatestDefectsForBuild_withMatchingDefectFilters_setsBuildResultAsFailed() throws ParseException, DatatypeConfigurationException, IOException, CovRemoteServiceException_Exception {
         // set initial state as success (result can only get worse)
@@ -217,6 +285,172 @@ public class DefectReaderTest {
             "[Coverity] Found 3 defects matching all filters");
     }
 
+    @Test
+    public void getLatestDefectsForBuild_withDefectsWithinThreshold_doesNotFailBuild() throws ParseException, DatatypeConfigurationException {
+        when(build.getResult()).thenReturn(Result.SUCCESS);
+
+        CIMStream cimStream = new CIMStream(cimInstanceName, "test-project", "test-stream");
+        CoverityPublisher publisher = new CoverityPublisherBuilder().withCimStream(cimStream)
+            .withFailBuild(true).withUnstableBuild(true).withDefectThreshold(3).build();
+
+        defectService.setupMergedDefects(3);
+
+        DefectReader reader = new DefectReader(build, listener, publisher);
+
+        reader.getLatestDefectsForBuild();
+
+        verify(build, never()).setResult(any(Result.class));
+        assertFalse(publisher.isUnstableBuild());
+
+        consoleLogger.verifyMessages(
+            "[Coverity] Fetching defects for stream \"test-stream\"",
+            "[Coverity] Found 3 defects matching all filters",
+            "[Coverity] Defect count does not exceed the threshold of 3");
+    }
+
+    @Test
+    public void getLatestDefectsForBuild_countDefectsOnly_setsBuildResultWithoutFetchingDefects() throws ParseException, DatatypeConfigurationException {
+        when(build.getResult()).thenReturn(Result.SUCCESS);
+
+        CIMStream cimStream = new CIMStream(cimInstanceName, "test-project", "test-stream");
+        CoverityPublisher publisher = new CoverityPublisherBuilder().withCimStream(cimStream)
+            .withFailBuild(true).withDefectThreshold(1000).withCountDefectsOnly(true).build();
+
+        defectService.setupMergedDefects(3750);
+
+        DefectReader reader = new DefectReader(build, listener, publisher);
+
+        reader.getLatestDefectsForBuild();
+
+        verify(build).setResult(Result.FAILURE);
+        verify(build, never()).addAction(any(CoverityBuildAction.class));
+        assertEquals(1, defectService.getRequestedDefectCount());
+
+        consoleLogger.verifyMessages(
+            "[Coverity] Counting defects for stream \"test-stream\"",
+            "[Coverity] Found 3,750 defects matching all filters");
+    }
+
+    @Test
+    public void getLatestDefectsForBuild_withPreviousBuild_recordsNewAndFixedDefects() throws ParseException, DatatypeConfigurationException {
+        CIMStream cimStream = new CIMStream(cimInstanceName, "test-project", "test-stream");
+        CoverityPublisher publisher = new CoverityPublisherBuilder().withCimStream(cimStream).build();
+
+        defectService.setupMergedDefects(10);
+        setupSnapshots(10001, 10002);
+        setupPreviousBuild(10001, 5, 10);
+
+        DefectReader reader = new DefectReader(build, listener, publisher);
+
+        reader.getLatestDefectsForBuild();
+
+        ArgumentCaptor<CoverityBuildAction> buildAction = ArgumentCaptor.forClass(CoverityBuildAction.class);
+        verify(build).addAction(buildAction.capture());
+        assertEquals(10, buildAction.getValue().getDefects().size());
+        assertEquals(Long.valueOf(10002), buildAction.getValue().getSnapshotId());
+        // only the last snapshot is requested
+        assertNotNull(configurationService.getSnapshotFilter().getLastBeforeCodeVersionDate());
+        assertEquals(Integer.valueOf(5), buildAction.getValue().getNewDefectCount());
+        assertEquals(Integer.valueOf(5), buildAction.getValue().getFixedDefectCount());
+        assertArrayEquals(new long[] {0, 1, 2, 3, 4}, buildAction.getValue().getDefectDiff().getNewCids());
+        assertArrayEquals(new long[] {10, 11, 12, 13, 14}, buildAction.getValue().getDefectDiff().getFixedCids());
+
+        consoleLogger.verifyMessages(
+            "[Coverity] Fetching defects for stream \"test-stream\"",
+            "[Coverity] Found 10 defects matching all filters",
+            "[Coverity] 5 new, 5 fixed and 5 persisting defects since the previous build");
+    }
+
+    @Test
+    public void getLatestDefectsForBuild_withPreviousBuildBeyondLimit_doesNotCompare() throws ParseException, DatatypeConfigurationException {
+        CIMStream cimStream = new CIMStream(cimInstanceName, "test-project", "test-stream");
+        CoverityPublisher publisher = new CoverityPublisherBuilder().withCimStream(cimStream).build();
+
+        defectService.setupMergedDefects(10);
+        setupSnapshots(10001, 10002);
+        setupPreviousBuild(10001, 5, 10);
+        AbstractBuild<?, ?> previousBuild = build.getPreviousBuild();
+        for (int i = 0; i < DefectReader.DEFAULT_PREVIOUS_BUILDS; i++) {
+            // builds without defects between the build and the previous build with defects
+            AbstractBuild<?, ?> buildWithoutDefects = mock(AbstractBuild.class);
+            doReturn(previousBuild).when(buildWithoutDefects).getPreviousBuild();
+            previousBuild = buildWithoutDefects;
+        }
+        doReturn(previousBuild).when(build).getPreviousBuild();
+
+        DefectReader reader = new DefectReader(build, listener, publisher);
+
+        reader.getLatestDefectsForBuild();
+
+        ArgumentCaptor<CoverityBuildAction> buildAction = ArgumentCaptor.forClass(CoverityBuildAction.class);
+        verify(build).addAction(buildAction.capture());
+        assertEquals(10, buildAction.getValue().getDefects().size());
+        assertNull(buildAction.getValue().getDefectDiff());
+    }
+
+    @Test
+    public void getLatestDefectsForBuild_incrementalDefects_appliesChangesSincePreviousSnapshot() throws ParseException, DatatypeConfigurationException {
+        CIMStream cimStream = new CIMStream(cimInstanceName, "test-project", "test-stream");
+        CoverityPublisher publisher = new CoverityPublisherBuilder().withCimStream(cimStream).withIncrementalDefects(true).build();
+
+        // CIDs 0 to 4 were fixed and CIDs 10 to 14 are new in the last snapshot
+        defectService.setupSnapshotDefects(10001, 0, 10);
+        defectService.setupSnapshotDefects(10002, 5, 10);
+        setupSnapshots(10001, 10002);
+        setupPreviousBuild(10001, 0, 10);
+
+        DefectReader reader = new DefectReader(build, listener, publisher);
+
+        reader.getLatestDefectsForBuild();
+
+        ArgumentCaptor<CoverityBuildAction> buildAction = ArgumentCaptor.forClass(CoverityBuildAction.class);
+        verify(build).addAction(buildAction.capture());
+        List<CoverityDefect> defects = buildAction.getValue().getDefects();
+        assertEquals(10, defects.size());
+        for (int i = 0; i < defects.size(); i++) {
+            assertEquals(Long.valueOf(i + 5), defects.get(i).getCid());
+        }
+        assertEquals(Long.valueOf(10002), buildAction.getValue().getSnapshotId());
+        assertEquals(Integer.valueOf(5), buildAction.getValue().getNewDefectCount());
+        assertEquals(Integer.valueOf(5), buildAction.getValue().getFixedDefectCount());
+
+        // only the changed defects are fetched
+        assertEquals(10, defectService.getRequestedDefectCount());
+
+        consoleLogger.verifyMessages(
+            "[Coverity] Fetching defects for stream \"test-stream\"",
+            "[Coverity] Fetching defects changed since snapshot 10001 for stream \"test-stream\"",
+            "[Coverity] Found 10 defects matching all filters",
+            "[Coverity] 5 new, 5 fixed and 5 persisting defects since the previous build");
+    }
+
+    @Test
+    public void getLatestDefectsForBuild_withSameSnapshot_usesCachedDefects() throws ParseException, DatatypeConfigurationException {
+        CIMStream cimStream = new CIMStream(cimInstanceName, "test-project", "test-stream");
+        CoverityPublisher publisher = new CoverityPublisherBuilder().withCimStream(cimStream).build();
+
+        defectService.setupMergedDefects(10);
+        setupSnapshots(10001);
+
+        new DefectReader(build, listener, publisher).getLatestDefectsForBuild();
+
+        // a build of another job reading the same stream
+        AbstractBuild<?, ?> otherBuild = mock(AbstractBuild.class);
+        new DefectReader(otherBuild, listener, publisher).getLatestDefectsForBuild();
+
+        ArgumentCaptor<CoverityBuildAction> buildAction = ArgumentCaptor.forClass(CoverityBuildAction.class);
+        verify(otherBuild).addAction(buildAction.capture());
+        assertEquals(10, buildAction.getValue().getDefects().size());
+        assertEquals(10, defectService.getRequestedDefectCount());
+
+        consoleLogger.verifyMessages(
+            "[Coverity] Fetching defects for stream \"test-stream\"",
+            "[Coverity] Found 10 defects matching all filters",
+            "[Coverity] Fetching defects for stream \"test-stream\"",
+            "[Coverity] Using cached defects of snapshot 10001",
+            "[Coverity] Found 10 defects matching all filters");
+    }
+
     @Test
     public void getLatestDefectsForBuild_skipsFetchingDefects() throws Descriptor.FormException, ParseException, DatatypeConfigurationException, IOException, CovRemoteServiceException_Exception {
         CoverityPublisher publisher = new CoverityPublisherBuilder().withSkipFetchingDefects(true).build();
@@ -0,0 +1,165 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Synopsys, Inc
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Synopsys, Inc - initial implementation and documentation
+ *******************************************************************************/
+package jenkins.plugins.coverity.ws;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+
+import javax.ws.rs.client.ClientRequestContext;
+import javax.ws.rs.client.ClientResponseContext;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MultivaluedHashMap;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.xml.ws.BindingProvider;
+import javax.xml.ws.handler.MessageContext;
+import javax.xml.ws.handler.soap.SOAPMessageContext;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+public class HttpCompressionTest {
+    private static final String CONTENT = "{\"viewContentsV1\": {\"totalRows\": 0, \"rows\": []}}";
+
+    private ClientResponseContext createResponse(byte[] body, String contentEncoding) {
+        MultivaluedMap<String, String> headers = new MultivaluedHashMap<>();
+        if (contentEncoding != null) {
+            headers.putSingle(HttpHeaders.CONTENT_ENCODING, contentEncoding);
+        }
+
+        ClientResponseContext response = mock(ClientResponseContext.class);
+        when(response.hasEntity()).thenReturn(true);
+        when(response.getEntityStream()).thenReturn(new ByteArrayInputStream(body));
+        when(response.getHeaderString(HttpHeaders.CONTENT_ENCODING)).thenReturn(contentEncoding);
+        when(response.getHeaders()).thenReturn(headers);
+        return response;
+    }
+
+    private String readEntity(ClientResponseContext response) throws IOException {
+        ArgumentCaptor<InputStream> entity = ArgumentCaptor.forClass(InputStream.class);
+        verify(response).setEntityStream(entity.capture());
+        try (InputStream in = entity.getValue()) {
+            return IOUtils.toString(in, "UTF-8");
+        }
+    }
+
+    @Test
+    public void restFilter_requestsCompressedResponse() throws IOException {
+        MultivaluedMap<String, Object> headers = new MultivaluedHashMap<>();
+        ClientRequestContext request = mock(ClientRequestContext.class);
+        when(request.getHeaders()).thenReturn(headers);
+
+        new HttpCompression.RestFilter(new ConnectionPool("test")).filter(request);
+
+        assertEquals(HttpCompression.GZIP, headers.getFirst(HttpHeaders.ACCEPT_ENCODING));
+    }
+
+    @Test
+    public void restFilter_decompressesResponseAndRecordsSizes() throws IOException {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (GZIPOutputStream out = new GZIPOutputStream(compressed)) {
+            out.write(CONTENT.getBytes(StandardCharsets.UTF_8));
+        }
+        ConnectionPool pool = new ConnectionPool("test");
+        ClientResponseContext response = createResponse(compressed.toByteArray(), "gzip");
+
+        new HttpCompression.RestFilter(pool).filter(mock(ClientRequestContext.class), response);
+
+        assertEquals(CONTENT, readEntity(response));
+        assertFalse(response.getHeaders().containsKey(HttpHeaders.CONTENT_ENCODING));
+        assertEquals(1, pool.getResponseCount());
+        assertEquals(compressed.size(), pool.getWireBytes());
+        assertEquals(CONTENT.length(), pool.getDecodedBytes());
+    }
+
+    @Test
+    public void restFilter_recordsUncompressedResponse() throws IOException {
+        ConnectionPool pool = new ConnectionPool("test");
+        ClientResponseContext response = createResponse(CONTENT.getBytes(StandardCharsets.UTF_8), null);
+
+        new HttpCompression.RestFilter(pool).filter(mock(ClientRequestContext.class), response);
+
+        assertEquals(CONTENT, readEntity(response));
+        assertEquals(CONTENT.length(), pool.getWireBytes());
+        assertEquals(CONTENT.length(), pool.getDecodedBytes());
+    }
+
+    private SOAPMessageContext createSoapResponse(String contentLength, String contentEncoding) {
+        Map<String, List<String>> headers = new HashMap<>();
+        headers.put("content-length", Collections.singletonList(contentLength));
+        if (contentEncoding != null) {
+            headers.put("Content-Encoding", Collections.singletonList(contentEncoding));
+        }
+
+        SOAPMessageContext context = mock(SOAPMessageContext.class);
+        when(context.get(MessageContext.MESSAGE_OUTBOUND_PROPERTY)).thenReturn(Boolean.FALSE);
+        when(context.get(MessageContext.HTTP_RESPONSE_HEADERS)).thenReturn(headers);
+        return context;
+    }
+
+    @Test
+    public void soapSizeHandler_recordsSizeOfResponses() {
+        ConnectionPool pool = new ConnectionPool("test");
+        HttpCompression.SoapSizeHandler handler = new HttpCompression.SoapSizeHandler(pool);
+
+        SOAPMessageContext compressed = createSoapResponse("1200", "gzip");
+        SOAPMessageContext fault = createSoapResponse("800", null);
+        handler.handleMessage(compressed);
+        handler.handleFault(fault);
+
+        assertEquals(2, pool.getSoapResponseCount());
+        assertEquals(1, pool.getSoapCompressedCount());
+        assertEquals(2000, pool.getSoapWireBytes());
+        // the message is not read
+        verify(compressed, never()).getMessage();
+        verify(fault, never()).getMessage();
+    }
+
+    @Test
+    public void soapSizeHandler_ignoresRequests() {
+        ConnectionPool pool = new ConnectionPool("test");
+        SOAPMessageContext context = mock(SOAPMessageContext.class);
+        when(context.get(MessageContext.MESSAGE_OUTBOUND_PROPERTY)).thenReturn(Boolean.TRUE);
+
+        new HttpCompression.SoapSizeHandler(pool).handleMessage(context);
+
+        assertEquals(0, pool.getSoapResponseCount());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void enable_addsAcceptEncodingHeaderToPort() {
+        Map<String, Object> requestContext = new HashMap<>();
+        BindingProvider port = mock(BindingProvider.class);
+        when(port.getRequestContext()).thenReturn(requestContext);
+
+        HttpCompression.enable(port);
+
+        Map<String, List<String>> headers = (Map<String, List<String>>)requestContext.get(MessageContext.HTTP_REQUEST_HEADERS);
+        assertTrue(headers.get(HttpHeaders.ACCEPT_ENCODING).contains(HttpCompression.GZIP));
+    }
+}
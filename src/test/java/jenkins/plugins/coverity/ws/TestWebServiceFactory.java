@@ -21,6 +21,7 @@ import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.*;
 import java.util.Map.Entry;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.xml.datatype.DatatypeConfigurationException;
 import javax.xml.datatype.DatatypeFactory;
@@ -37,6 +38,7 @@ import jenkins.plugins.coverity.CIMInstance;
 public class TestWebServiceFactory extends WebServiceFactory {
     private int wsResponseCode = 200;
     private String responseMsg = "OK";
+    private final AtomicInteger checkWsResponseCount = new AtomicInteger();
     private ViewsService _mockViewsService;
 
     @Override
@@ -51,11 +53,22 @@ public class TestWebServiceFactory extends WebServiceFactory {
             getURL(cimInstance, WebServiceType.ConfigurationService));
     }
 
+    @Override
+    protected AdaptivePager createPager(CIMInstance cimInstance) {
+        // fixed page size, to get predictable pages
+        return new AdaptivePager(1000, 1000, 1000, AdaptivePager.DEFAULT_TARGET_RESPONSE_TIME_MILLIS, AdaptivePager.DEFAULT_MAX_PAGE_BYTES);
+    }
+
     @Override
     public CheckWsResponse getCheckWsResponse(CIMInstance cimInstance) {
+        checkWsResponseCount.incrementAndGet();
         return new CheckWsResponse(wsResponseCode, responseMsg, StringUtils.EMPTY);
     }
 
+    public int getCheckWsResponseCount() {
+        return checkWsResponseCount.get();
+    }
+
     public void setWSResponseCode(int wsResponseCode, String responseMsg) {
         this.wsResponseCode = wsResponseCode;
         this.responseMsg = responseMsg;
@@ -77,6 +90,7 @@ public class TestWebServiceFactory extends WebServiceFactory {
     public static class TestConfigurationService implements ConfigurationService {
         private URL url;
         private List<SnapshotIdDataObj> snapshotList;
+        private SnapshotFilterSpecDataObj snapshotFilter;
         private List<ProjectDataObj> projects;
         private String externalVersion;
         private UserDataObj user;
@@ -110,6 +124,10 @@ public class TestWebServiceFactory extends WebServiceFactory {
             this.snapshotList = list;
         }
 
+        public SnapshotFilterSpecDataObj getSnapshotFilter() {
+            return snapshotFilter;
+        }
+
         public void setupProjects(String projectNamePrefix, int projectCount, String streamNamePrefix, int streamCount) {
             for (int i = 0; i < projectCount; i++) {
                 final ProjectDataObj projectDataObj = new ProjectDataObj();
@@ -421,6 +439,7 @@ public class TestWebServiceFactory extends WebServiceFactory {
 
         @Override
         public List<SnapshotIdDataObj> getSnapshotsForStream(StreamIdDataObj streamId, SnapshotFilterSpecDataObj filterSpec) throws CovRemoteServiceException_Exception {
+            snapshotFilter = filterSpec;
             return snapshotList;
         }
 
@@ -722,11 +741,69 @@ public class TestWebServiceFactory extends WebServiceFactory {
         private URL url;
         private List<MergedDefectIdDataObj> mergedDefectIds = new ArrayList<>();
         private List<MergedDefectDataObj> mergedDefects = new ArrayList<>();
+        private final AtomicInteger requestedDefectCount = new AtomicInteger();
+        private final Object requestLock = new Object();
+        private int concurrentRequests;
+        private long concurrencyTimeout;
+        private int inFlightCount;
+        private int maxInFlightCount;
+        private Map<Long, List<MergedDefectDataObj>> snapshotDefects = new HashMap<>();
 
         public TestDefectService(URL url) {
             this.url = url;
         }
 
+        /**
+         * Holds every getMergedDefectsForStreams request until the given number of requests were in flight at the same
+         * time, or until the timeout passed. Requests made one after the other therefore never see each other.
+         */
+        public void setupConcurrentRequests(int concurrentRequests, long timeoutMillis) {
+            this.concurrentRequests = concurrentRequests;
+            this.concurrencyTimeout = timeoutMillis;
+        }
+
+        /**
+         * The largest number of getMergedDefectsForStreams requests which were in flight at the same time
+         */
+        public int getMaxInFlightCount() {
+            synchronized (requestLock) {
+                return maxInFlightCount;
+            }
+        }
+
+        private void beginRequest() {
+            synchronized (requestLock) {
+                inFlightCount++;
+                maxInFlightCount = Math.max(maxInFlightCount, inFlightCount);
+                requestLock.notifyAll();
+
+                final long deadline = System.currentTimeMillis() + concurrencyTimeout;
+                long remaining = concurrencyTimeout;
+                while (maxInFlightCount < concurrentRequests && remaining > 0) {
+                    try {
+                        requestLock.wait(remaining);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                    remaining = deadline - System.currentTimeMillis();
+                }
+            }
+        }
+
+        private void endRequest() {
+            synchronized (requestLock) {
+                inFlightCount--;
+            }
+        }
+
+        /**
+         * The number of defects returned by all getMergedDefectsForStreams and getMergedDefectsForSnapshotScope requests
+         */
+        public int getRequestedDefectCount() {
+            return requestedDefectCount.get();
+        }
+
         public void setupMergedDefects(int defectCount) throws ParseException, DatatypeConfigurationException {
             for (long i = 0; i < defectCount; i++) {
                 MergedDefectIdDataObj idDataObj = new MergedDefectIdDataObj();
@@ -734,27 +811,42 @@ public class TestWebServiceFactory extends WebServiceFactory {
                 idDataObj.setMergeKey("MK_" + i);
                 mergedDefectIds.add(idDataObj);
 
-                MergedDefectDataObj defectDataObj = new MergedDefectDataObj();
-                defectDataObj.setCid(i);
-                defectDataObj.setMergeKey("MK_" + i);
-                defectDataObj.setCheckerName("TEST_CHECKER");
-                defectDataObj.setFilePathname("/defect/file/test." + i + ".java");
-                defectDataObj.setFunctionDisplayName("defect_function_" + i + "()");
+                mergedDefects.add(newMergedDefect(i));
+            }
+        }
+
+        /**
+         * Sets up the defects of a snapshot, which are compared by getMergedDefectsForSnapshotScope
+         */
+        public void setupSnapshotDefects(long snapshotId, long firstCid, int defectCount) throws ParseException, DatatypeConfigurationException {
+            List<MergedDefectDataObj> defects = new ArrayList<>();
+            for (long i = firstCid; i < firstCid + defectCount; i++) {
+                defects.add(newMergedDefect(i));
+            }
+            snapshotDefects.put(snapshotId, defects);
+        }
 
-                // set default attribute values for filtering
-                defectDataObj.getDefectStateAttributeValues().add(newAttribute("Action", "Undecided"));
-                defectDataObj.getDefectStateAttributeValues().add(newAttribute("Classification", "Unclassified"));
-                defectDataObj.getDefectStateAttributeValues().add(newAttribute("Severity", "Unspecified"));
-                defectDataObj.setDisplayImpact("Low");
-                defectDataObj.setComponentName("Default.Other");
+        private MergedDefectDataObj newMergedDefect(long cid) throws ParseException, DatatypeConfigurationException {
+            MergedDefectDataObj defectDataObj = new MergedDefectDataObj();
+            defectDataObj.setCid(cid);
+            defectDataObj.setMergeKey("MK_" + cid);
+            defectDataObj.setCheckerName("TEST_CHECKER");
+            defectDataObj.setFilePathname("/defect/file/test." + cid + ".java");
+            defectDataObj.setFunctionDisplayName("defect_function_" + cid + "()");
 
+            // set default attribute values for filtering
+            defectDataObj.getDefectStateAttributeValues().add(newAttribute("Action", "Undecided"));
+            defectDataObj.getDefectStateAttributeValues().add(newAttribute("Classification", "Unclassified"));
+            defectDataObj.getDefectStateAttributeValues().add(newAttribute("Severity", "Unspecified"));
+            defectDataObj.setDisplayImpact("Low");
+            defectDataObj.setComponentName("Default.Other");
 
-                GregorianCalendar calender = new GregorianCalendar();
-                calender.setTime(new SimpleDateFormat("yyyy-MM-dd").parse("2017-02-01"));
-                defectDataObj.setFirstDetected(DatatypeFactory.newInstance().newXMLGregorianCalendar(calender));
 
-                mergedDefects.add(defectDataObj);
-            }
+            GregorianCalendar calender = new GregorianCalendar();
+            calender.setTime(new SimpleDateFormat("yyyy-MM-dd").parse("2017-02-01"));
+            defectDataObj.setFirstDetected(DatatypeFactory.newInstance().newXMLGregorianCalendar(calender));
+
+            return defectDataObj;
         }
 
         private DefectStateAttributeValueDataObj newAttribute(String name, String value){
@@ -797,22 +889,28 @@ public class TestWebServiceFactory extends WebServiceFactory {
 
         @Override
         public MergedDefectsPageDataObj getMergedDefectsForStreams(List<StreamIdDataObj> streamIds, MergedDefectFilterSpecDataObj filterSpec, PageSpecDataObj pageSpec, SnapshotScopeSpecDataObj snapshotScope) throws CovRemoteServiceException_Exception {
-            MergedDefectsPageDataObj mergedDefectsPageDataObj = new MergedDefectsPageDataObj();
+            beginRequest();
+            try {
+                MergedDefectsPageDataObj mergedDefectsPageDataObj = new MergedDefectsPageDataObj();
 
-            final int totalRecords = mergedDefects.size();
-            mergedDefectsPageDataObj.setTotalNumberOfRecords(totalRecords);
+                final int totalRecords = mergedDefects.size();
+                mergedDefectsPageDataObj.setTotalNumberOfRecords(totalRecords);
 
-            int toIndex = pageSpec.getStartIndex() + pageSpec.getPageSize();
-            if (toIndex > mergedDefects.size())
-                toIndex = mergedDefects.size();
+                int toIndex = pageSpec.getStartIndex() + pageSpec.getPageSize();
+                if (toIndex > mergedDefects.size())
+                    toIndex = mergedDefects.size();
 
-            List<MergedDefectIdDataObj> defectIds = mergedDefectIds.subList(pageSpec.getStartIndex(), toIndex);
-            mergedDefectsPageDataObj.getMergedDefectIds().addAll(defectIds);
+                List<MergedDefectIdDataObj> defectIds = mergedDefectIds.subList(pageSpec.getStartIndex(), toIndex);
+                mergedDefectsPageDataObj.getMergedDefectIds().addAll(defectIds);
 
-            List<MergedDefectDataObj> defects = mergedDefects.subList(pageSpec.getStartIndex(), toIndex);
-            mergedDefectsPageDataObj.getMergedDefects().addAll(defects);
+                List<MergedDefectDataObj> defects = mergedDefects.subList(pageSpec.getStartIndex(), toIndex);
+                mergedDefectsPageDataObj.getMergedDefects().addAll(defects);
+                requestedDefectCount.addAndGet(defects.size());
 
-            return mergedDefectsPageDataObj;
+                return mergedDefectsPageDataObj;
+            } finally {
+                endRequest();
+            }
         }
 
         @Override
@@ -847,7 +945,33 @@ public class TestWebServiceFactory extends WebServiceFactory {
 
         @Override
         public MergedDefectsPageDataObj getMergedDefectsForSnapshotScope(ProjectIdDataObj projectId, SnapshotScopeDefectFilterSpecDataObj filterSpec, PageSpecDataObj pageSpec, SnapshotScopeSpecDataObj snapshotScope) throws CovRemoteServiceException_Exception {
-            throw new NotImplementedException();
+            // only comparisons of two snapshots by id are supported
+            List<MergedDefectDataObj> shownDefects = snapshotDefects.get(Long.valueOf(snapshotScope.getShowSelector()));
+            List<MergedDefectDataObj> comparedDefects = snapshotDefects.get(Long.valueOf(snapshotScope.getCompareSelector()));
+            if (shownDefects == null || comparedDefects == null || !"ABSENT".equals(filterSpec.getIssueComparison())) {
+                throw new NotImplementedException();
+            }
+
+            Set<Long> comparedCids = new HashSet<>();
+            for (MergedDefectDataObj defect : comparedDefects) {
+                comparedCids.add(defect.getCid());
+            }
+            List<MergedDefectDataObj> matchingDefects = new ArrayList<>();
+            for (MergedDefectDataObj defect : shownDefects) {
+                if (!comparedCids.contains(defect.getCid())) {
+                    matchingDefects.add(defect);
+                }
+            }
+
+            MergedDefectsPageDataObj mergedDefectsPageDataObj = new MergedDefectsPageDataObj();
+            mergedDefectsPageDataObj.setTotalNumberOfRecords(matchingDefects.size());
+
+            int toIndex = Math.min(pageSpec.getStartIndex() + pageSpec.getPageSize(), matchingDefects.size());
+            List<MergedDefectDataObj> defects = matchingDefects.subList(pageSpec.getStartIndex(), toIndex);
+            mergedDefectsPageDataObj.getMergedDefects().addAll(defects);
+            requestedDefectCount.addAndGet(defects.size());
+
+            return mergedDefectsPageDataObj;
         }
 
         @Override
@@ -13,6 +13,16 @@ package jenkins.plugins.coverity.ws;
 import java.io.IOException;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.util.Collections;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.xml.ws.BindingProvider;
 
 import com.cloudbees.plugins.credentials.CredentialsMatchers;
 import com.cloudbees.plugins.credentials.CredentialsProvider;
@@ -126,4 +136,171 @@ public class WebServiceFactoryTest {
         Assert.assertTrue(result2 instanceof TestConfigurationService);
         Assert.assertEquals(getExpectedUrl(cimInstance, WebServiceFactory.CONFIGURATION_SERVICE_V9_WSDL), ((TestConfigurationService)result2).getUrl());
     }
+
+    @Test
+    public void getEndpointURL_returnsServiceUrlWithoutWsdlQuery() throws MalformedURLException {
+        WebServiceFactory factory = new TestWebServiceFactory();
+
+        Assert.assertEquals(new URL("http://cim-host:8080/ws/v9/defectservice"),
+            factory.getEndpointURL(cimInstance, WebServiceFactory.WebServiceType.DefectService));
+        Assert.assertEquals(new URL("http://cim-host:8080/ws/v9/configurationservice"),
+            factory.getEndpointURL(cimInstance, WebServiceFactory.WebServiceType.ConfigurationService));
+    }
+
+    @Test
+    public void createServices_buildPortsWithoutWsdl() throws IOException {
+        // the host does not exist, so requesting a WSDL would fail
+        CredentialUtil.setCredentialManager("test-user", "password");
+        WebServiceFactory factory = new WebServiceFactory();
+
+        BindingProvider defectService = (BindingProvider)factory.createDefectService(cimInstance);
+        BindingProvider configurationService = (BindingProvider)factory.createConfigurationService(cimInstance);
+
+        Assert.assertEquals("http://cim-host:8080/ws/v9/defectservice",
+            defectService.getRequestContext().get(BindingProvider.ENDPOINT_ADDRESS_PROPERTY));
+        Assert.assertEquals("http://cim-host:8080/ws/v9/configurationservice",
+            configurationService.getRequestContext().get(BindingProvider.ENDPOINT_ADDRESS_PROPERTY));
+        Assert.assertEquals(3, defectService.getBinding().getHandlerChain().size());
+    }
+
+    @Test
+    public void getConnectionPool_isSharedPerInstance() {
+        WebServiceFactory factory = new TestWebServiceFactory();
+        CIMInstance otherInstance = new CIMInstanceBuilder().withName("test instance 2").withHost("other-cim-host").withPort(8443)
+                .withUseSSL(true).withDefaultCredentialId().build();
+
+        ConnectionPool pool = factory.getConnectionPool(cimInstance);
+
+        Assert.assertSame(pool, factory.getConnectionPool(cimInstance));
+        Assert.assertNotSame(pool, factory.getConnectionPool(otherInstance));
+        Assert.assertEquals(cimInstance.getName(), pool.getName());
+    }
+
+    @Test
+    public void getConnectionPool_isSharedByCopiesWithSameCredential() throws IOException {
+        TestWebServiceFactory factory = new TestWebServiceFactory();
+        CIMInstance streamInstance = cimInstance.cloneWithCredential("stream-credential");
+
+        ConnectionPool pool = factory.getConnectionPool(streamInstance);
+        factory.getDefectService(streamInstance);
+
+        CIMInstance nextBuildInstance = cimInstance.cloneWithCredential("stream-credential");
+        Assert.assertSame(pool, factory.getConnectionPool(nextBuildInstance));
+        Assert.assertSame(factory.getPager(streamInstance), factory.getPager(nextBuildInstance));
+        Assert.assertNotSame(pool, factory.getConnectionPool(cimInstance));
+
+        factory.getDefectService(nextBuildInstance);
+        Assert.assertEquals(1, factory.getCheckWsResponseCount());
+    }
+
+    @Test
+    public void retainInstances_removesUnconfiguredInstances() {
+        WebServiceFactory factory = new TestWebServiceFactory();
+        CIMInstance otherInstance = new CIMInstanceBuilder().withName("test instance 2").withHost("other-cim-host").withPort(8443)
+                .withUseSSL(true).withDefaultCredentialId().build();
+        ConnectionPool pool = factory.getConnectionPool(cimInstance);
+        ConnectionPool streamPool = factory.getConnectionPool(cimInstance.cloneWithCredential("stream-credential"));
+        ConnectionPool otherPool = factory.getConnectionPool(otherInstance);
+
+        factory.retainInstances(Collections.singletonList(cimInstance));
+
+        Assert.assertSame(pool, factory.getConnectionPool(cimInstance));
+        Assert.assertSame(streamPool, factory.getConnectionPool(cimInstance.cloneWithCredential("stream-credential")));
+        Assert.assertNotSame(otherPool, factory.getConnectionPool(otherInstance));
+    }
+
+    @Test
+    public void getDefectService_usesCachedHealthCheck() throws IOException {
+        TestWebServiceFactory factory = new TestWebServiceFactory();
+
+        factory.getDefectService(cimInstance);
+        factory.getDefectService(cimInstance);
+        factory.getConfigurationService(cimInstance);
+
+        Assert.assertEquals(1, factory.getCheckWsResponseCount());
+        Assert.assertEquals(1, factory.getHealthCache().getMissCount());
+        Assert.assertEquals(2, factory.getHealthCache().getHitCount());
+    }
+
+    @Test
+    public void getDefectService_checksConnectionAgainAfterInvalidation() throws IOException {
+        TestWebServiceFactory factory = new TestWebServiceFactory();
+
+        factory.getDefectService(cimInstance);
+        factory.invalidateConnection(cimInstance);
+        factory.getDefectService(cimInstance);
+
+        Assert.assertEquals(2, factory.getCheckWsResponseCount());
+        Assert.assertEquals(2, factory.getHealthCache().getMissCount());
+        Assert.assertEquals(0, factory.getHealthCache().getHitCount());
+    }
+
+    @Test
+    public void getDefectService_doesNotCacheFailedHealthCheck() throws IOException {
+        TestWebServiceFactory factory = new TestWebServiceFactory();
+        factory.setWSResponseCode(404, "Not Found");
+
+        factory.getDefectService(cimInstance);
+        factory.getDefectService(cimInstance);
+
+        Assert.assertEquals(2, factory.getCheckWsResponseCount());
+        Assert.assertEquals(0, factory.getHealthCache().getHitCount());
+    }
+
+    @Test
+    public void getDefectService_initializesInstancesInParallel() throws Exception {
+        final CIMInstance slowInstance = new CIMInstanceBuilder().withName("slow instance").withHost("slow-cim-host").withPort(8080)
+                .withUseSSL(false).withDefaultCredentialId().build();
+        final CountDownLatch slowCreationStarted = new CountDownLatch(1);
+        final CountDownLatch releaseSlowCreation = new CountDownLatch(1);
+        final AtomicInteger slowCreationCount = new AtomicInteger();
+
+        final WebServiceFactory factory = new TestWebServiceFactory() {
+            @Override
+            protected DefectService createDefectService(CIMInstance instance) throws MalformedURLException {
+                if (instance == slowInstance) {
+                    slowCreationCount.incrementAndGet();
+                    slowCreationStarted.countDown();
+                    try {
+                        releaseSlowCreation.await();
+                    } catch (InterruptedException e) {
+                        throw new IllegalStateException(e);
+                    }
+                }
+                return super.createDefectService(instance);
+            }
+        };
+
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            Future<DefectService> slowResult = executor.submit(getDefectServiceTask(factory, slowInstance));
+            Assert.assertTrue(slowCreationStarted.await(10, TimeUnit.SECONDS));
+            Future<DefectService> secondSlowResult = executor.submit(getDefectServiceTask(factory, slowInstance));
+
+            // the other instance initializes while the slow instance is still blocked
+            DefectService result = executor.submit(getDefectServiceTask(factory, cimInstance)).get(10, TimeUnit.SECONDS);
+            Assert.assertNotNull(result);
+            Assert.assertFalse(slowResult.isDone());
+            Assert.assertFalse(secondSlowResult.isDone());
+
+            releaseSlowCreation.countDown();
+
+            DefectService slowService = slowResult.get(10, TimeUnit.SECONDS);
+            Assert.assertNotNull(slowService);
+            Assert.assertSame(slowService, secondSlowResult.get(10, TimeUnit.SECONDS));
+            Assert.assertEquals(1, slowCreationCount.get());
+        } finally {
+            releaseSlowCreation.countDown();
+            executor.shutdownNow();
+        }
+    }
+
+    private Callable<DefectService> getDefectServiceTask(final WebServiceFactory factory, final CIMInstance instance) {
+        return new Callable<DefectService>() {
+            @Override
+            public DefectService call() throws Exception {
+                return factory.getDefectService(instance);
+            }
+        };
+    }
 }